@@ -0,0 +1,149 @@
+package com.jslib.tiny.plugin.csv.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run benchmarks with allocation profiling and compare results with baseline. Command line arguments are standard JMH
+ * options, e.g. benchmarks include pattern. GC profiler is always enabled so that every benchmark reports normalized
+ * allocation rate, in bytes per operation, besides its primary score.
+ * <p>
+ * Baseline is a properties file, default <code>baseline.properties</code> from current directory, that can be changed via
+ * <code>baseline</code> system property. If baseline file does not exist or <code>baseline.update</code> system property
+ * is true, results are stored as new baseline. Otherwise every result is compared with its baseline and results worse by
+ * more than <code>baseline.threshold</code>, default 0.1, that is, 10%, are reported as regressions; in this case runner
+ * exits with status 1.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public final class BenchmarkRunner {
+	/** Secondary result reported by GC profiler for allocated bytes per operation. */
+	private static final String ALLOCATION_RATE = "gc.alloc.rate.norm";
+
+	private static final String HIGHER_IS_BETTER = "higher";
+	private static final String LOWER_IS_BETTER = "lower";
+
+	public static void main(String... args) throws Exception {
+		Options options = new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build();
+		Collection<RunResult> results = new Runner(options).run();
+		Map<String, String> scores = scores(results);
+
+		File baselineFile = new File(System.getProperty("baseline", "baseline.properties"));
+		if (!baselineFile.exists() || Boolean.getBoolean("baseline.update")) {
+			store(baselineFile, scores);
+			System.out.printf("Baseline stored to %s.%n", baselineFile);
+			return;
+		}
+
+		double threshold = Double.parseDouble(System.getProperty("baseline.threshold", "0.1"));
+		int regressions = compare(load(baselineFile), scores, threshold);
+		if (regressions > 0) {
+			System.out.printf("%d regression(s) against baseline %s.%n", regressions, baselineFile);
+			System.exit(1);
+		}
+		System.out.printf("No regressions against baseline %s.%n", baselineFile);
+	}
+
+	/**
+	 * Get scores from benchmark results, mapped by benchmark key. Key is benchmark name followed by parameters; allocation
+	 * rate key has <code>:alloc</code> suffix. Score value is the score followed by its direction, that is, if higher or
+	 * lower is better.
+	 * 
+	 * @param results benchmark results.
+	 * @return scores map.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static Map<String, String> scores(Collection<RunResult> results) {
+		Map<String, String> scores = new TreeMap<>();
+		for (RunResult result : results) {
+			BenchmarkParams params = result.getParams();
+			StringBuilder key = new StringBuilder(params.getBenchmark());
+			key.append('[');
+			for (String name : params.getParamsKeys()) {
+				if (key.charAt(key.length() - 1) != '[') {
+					key.append(',');
+				}
+				key.append(name).append('=').append(params.getParam(name));
+			}
+			key.append(']');
+
+			String direction = params.getMode() == Mode.Throughput ? HIGHER_IS_BETTER : LOWER_IS_BETTER;
+			scores.put(key.toString(), result.getPrimaryResult().getScore() + " " + direction);
+
+			for (Map.Entry<String, Result> secondary : result.getSecondaryResults().entrySet()) {
+				if (secondary.getKey().endsWith(ALLOCATION_RATE)) {
+					scores.put(key + ":alloc", secondary.getValue().getScore() + " " + LOWER_IS_BETTER);
+				}
+			}
+		}
+		return scores;
+	}
+
+	private static int compare(Map<String, String> baseline, Map<String, String> scores, double threshold) {
+		int regressions = 0;
+		for (Map.Entry<String, String> entry : scores.entrySet()) {
+			String baselineValue = baseline.get(entry.getKey());
+			if (baselineValue == null) {
+				System.out.printf("NEW        %s %s%n", entry.getKey(), entry.getValue());
+				continue;
+			}
+			double expected = Double.parseDouble(baselineValue.split(" ")[0]);
+			String[] value = entry.getValue().split(" ");
+			double actual = Double.parseDouble(value[0]);
+
+			// relative change, positive if worse
+			double change = expected == 0 ? 0 : (actual - expected) / expected;
+			if (HIGHER_IS_BETTER.equals(value[1])) {
+				change = -change;
+			}
+			boolean regression = change > threshold;
+			if (regression) {
+				++regressions;
+			}
+			System.out.printf("%-10s %s %.3f -> %.3f (%+.1f%% worse)%n", regression ? "REGRESSION" : "OK", entry.getKey(), expected, actual, 100 * change);
+		}
+		return regressions;
+	}
+
+	private static Map<String, String> load(File baselineFile) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(baselineFile.toPath(), StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+		Map<String, String> baseline = new TreeMap<>();
+		for (String name : properties.stringPropertyNames()) {
+			baseline.put(name, properties.getProperty(name));
+		}
+		return baseline;
+	}
+
+	private static void store(File baselineFile, Map<String, String> scores) throws IOException {
+		Properties properties = new Properties();
+		properties.putAll(scores);
+		try (Writer writer = Files.newBufferedWriter(baselineFile.toPath(), StandardCharsets.UTF_8)) {
+			properties.store(writer, "CSV plugin benchmarks baseline: score followed by direction, higher or lower is better");
+		}
+	}
+
+	private BenchmarkRunner() {
+	}
+}
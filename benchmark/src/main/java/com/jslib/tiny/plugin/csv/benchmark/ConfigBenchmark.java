@@ -0,0 +1,93 @@
+package com.jslib.tiny.plugin.csv.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jslib.api.csv.CsvDescriptor;
+import com.jslib.lang.Config;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+
+/**
+ * Configuration loading benchmark for {@link CsvConfig#config(Config)}: repository indexing, with and without persisted
+ * index snapshot, and descriptor parsing on first request.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigBenchmark {
+	/** Number of templates in indexed repository. */
+	@Param({ "200" })
+	private int templates;
+
+	private Config repositoryConfig;
+	private Config indexedConfig;
+	private Config descriptorConfig;
+
+	@Setup
+	public void setup() throws Exception {
+		// indexing does not resolve template types so large repository can use fake type names
+		File repository = Files.createTempDirectory("csv-benchmark").toFile();
+		repository.deleteOnExit();
+		for (int i = 0; i < templates; ++i) {
+			Fixtures.writeTemplate(repository, "template" + i + ".xml", "com.jslib.tiny.plugin.csv.benchmark.Type" + i, Wide.FIELDS);
+		}
+		File indexFile = new File(repository, "index.tsv");
+		indexFile.deleteOnExit();
+
+		repositoryConfig = config("<csv><repository path='%s' files-pattern='*.xml' /></csv>", repository);
+		indexedConfig = config("<csv><repository path='%s' files-pattern='*.xml' index='%s' /></csv>", repository, indexFile);
+		descriptorConfig = config("<csv><repository path='%s' files-pattern='wide.xml' /></csv>", Fixtures.createRepository());
+
+		// first configuration creates index snapshot
+		new CsvConfig().config(indexedConfig);
+	}
+
+	@Benchmark
+	public CsvConfig index() throws Exception {
+		CsvConfig config = new CsvConfig();
+		config.config(repositoryConfig);
+		return config;
+	}
+
+	@Benchmark
+	public CsvConfig indexFromSnapshot() throws Exception {
+		CsvConfig config = new CsvConfig();
+		config.config(indexedConfig);
+		return config;
+	}
+
+	@Benchmark
+	public CsvDescriptor<Wide> loadDescriptor() throws Exception {
+		CsvConfig config = new CsvConfig();
+		config.config(descriptorConfig);
+		return config.getDescriptor(Wide.class);
+	}
+
+	private static Config config(String format, Object... files) throws Exception {
+		Object[] paths = new Object[files.length];
+		for (int i = 0; i < files.length; ++i) {
+			paths[i] = ((File) files[i]).getAbsolutePath();
+		}
+		return new ConfigBuilder(String.format(format, paths)).build();
+	}
+}
@@ -0,0 +1,103 @@
+package com.jslib.tiny.plugin.csv.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jslib.container.mvc.AbstractView;
+import com.jslib.container.mvc.ViewMeta;
+import com.jslib.tiny.plugin.csv.CsvView;
+import com.jslib.util.Classes;
+
+/**
+ * Export benchmark for {@link CsvView#serialize(OutputStream)} with in memory list model. Output is discarded; only bytes
+ * count is kept so that JIT cannot eliminate encoding.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+	/** Rows shape: narrow plain values, narrow quote heavy values or wide mixed types. */
+	@Param({ "narrow", "quoted", "wide" })
+	private String shape;
+
+	@Param({ "10000" })
+	private int rows;
+
+	private CsvView view;
+	private List<?> model;
+
+	@Setup
+	public void setup() throws Exception {
+		File repository = Fixtures.createRepository();
+		File template;
+		switch (shape) {
+		case "narrow":
+			template = new File(repository, "narrow.xml");
+			model = Fixtures.narrowRows(rows);
+			break;
+
+		case "quoted":
+			template = new File(repository, "narrow.xml");
+			model = Fixtures.quotedRows(rows);
+			break;
+
+		case "wide":
+			template = new File(repository, "wide.xml");
+			model = Fixtures.wideRows(rows);
+			break;
+
+		default:
+			throw new IllegalStateException("Unknown rows shape: " + shape);
+		}
+
+		view = new CsvView();
+		Classes.invoke(view, AbstractView.class, "setMeta", new ViewMeta(template, CsvView.class, new Properties()));
+	}
+
+	@Benchmark
+	public long serialize() throws IOException {
+		CountingOutputStream stream = new CountingOutputStream();
+		view.setModel(model);
+		view.serialize(stream);
+		return stream.count;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Output stream counting and discarding written bytes. */
+	private static final class CountingOutputStream extends OutputStream {
+		long count;
+
+		@Override
+		public void write(int b) {
+			++count;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) {
+			count += length;
+		}
+	}
+}
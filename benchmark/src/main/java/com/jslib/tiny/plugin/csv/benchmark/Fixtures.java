@@ -0,0 +1,159 @@
+package com.jslib.tiny.plugin.csv.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark fixtures: CSV templates written to a temporary repository directory, in memory rows and CSV content. CSV
+ * content is generated or replicated from plugin fixtures, whose directory is configurable via <code>csv.fixture</code>
+ * system property, default <code>../fixture</code>, that is, benchmarks are expected to run from benchmark module directory.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class Fixtures {
+	/** Plugin fixtures directory. */
+	private static final File FIXTURE_DIR = new File(System.getProperty("csv.fixture", "../fixture"));
+
+	/** Names of values with delimiters and quotes, for quote heavy rows. */
+	private static final String[] QUOTED_NAMES = { "John Doe, Sr.", "Lion, \"The Little Cat\"", "\"Quoted\"", "Grand Doe, \"Elder\"" };
+
+	/**
+	 * Create temporary templates repository with templates for narrow and wide rows. Repository is deleted on JVM exit.
+	 * 
+	 * @return repository directory.
+	 * @throws IOException if repository creation fails.
+	 */
+	public static File createRepository() throws IOException {
+		File repository = Files.createTempDirectory("csv-benchmark").toFile();
+		repository.deleteOnExit();
+		writeTemplate(repository, "narrow.xml", Narrow.class, "name", "age");
+		writeTemplate(repository, "wide.xml", Wide.class, Wide.FIELDS);
+		return repository;
+	}
+
+	/**
+	 * Write CSV template with header and given columns.
+	 * 
+	 * @param repository repository directory,
+	 * @param fileName template file name,
+	 * @param type template type,
+	 * @param fields columns fields.
+	 * @return template file.
+	 * @throws IOException if template writing fails.
+	 */
+	public static File writeTemplate(File repository, String fileName, Class<?> type, String... fields) throws IOException {
+		return writeTemplate(repository, fileName, type.getName(), fields);
+	}
+
+	public static File writeTemplate(File repository, String fileName, String typeName, String... fields) throws IOException {
+		File template = new File(repository, fileName);
+		template.deleteOnExit();
+		try (Writer writer = Files.newBufferedWriter(template.toPath(), StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
+			writer.write(String.format("<csv class=\"%s\" header=\"true\" delimiter=\",\" null-value=\"null\">\r\n", typeName));
+			for (String field : fields) {
+				writer.write(String.format("\t<column field=\"%s\" />\r\n", field));
+			}
+			writer.write("</csv>\r\n");
+		}
+		return template;
+	}
+
+	/**
+	 * Create narrow rows with plain values.
+	 * 
+	 * @param count rows count.
+	 * @return narrow rows.
+	 */
+	public static List<Narrow> narrowRows(int count) {
+		List<Narrow> rows = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i) {
+			rows.add(new Narrow("Person " + i, i % 100));
+		}
+		return rows;
+	}
+
+	/**
+	 * Create narrow rows with values containing delimiters and quotes, like <code>persons.csv</code> fixture.
+	 * 
+	 * @param count rows count.
+	 * @return quote heavy narrow rows.
+	 */
+	public static List<Narrow> quotedRows(int count) {
+		List<Narrow> rows = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i) {
+			rows.add(new Narrow(QUOTED_NAMES[i % QUOTED_NAMES.length] + " " + i, i % 100));
+		}
+		return rows;
+	}
+
+	public static List<Wide> wideRows(int count) {
+		List<Wide> rows = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i) {
+			rows.add(new Wide(i));
+		}
+		return rows;
+	}
+
+	/**
+	 * Create CSV content by replicating data lines of a plugin fixture. Fixture header line is kept only once.
+	 * 
+	 * @param fixtureName fixture file name,
+	 * @param minLength minimum content length, in bytes.
+	 * @return CSV content.
+	 * @throws IOException if fixture reading fails.
+	 */
+	public static byte[] replicate(String fixtureName, int minLength) throws IOException {
+		String fixture = new String(Files.readAllBytes(new File(FIXTURE_DIR, fixtureName).toPath()), StandardCharsets.UTF_8);
+		int headerEnd = fixture.indexOf('\n') + 1;
+		String data = fixture.substring(headerEnd);
+		if (!data.endsWith("\n")) {
+			data += "\r\n";
+		}
+
+		ByteArrayOutputStream content = new ByteArrayOutputStream(minLength + fixture.length());
+		byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
+		content.write(fixture.substring(0, headerEnd).getBytes(StandardCharsets.UTF_8));
+		while (content.size() < minLength) {
+			content.write(dataBytes);
+		}
+		return content.toByteArray();
+	}
+
+	/**
+	 * Create CSV content for wide rows.
+	 * 
+	 * @param minLength minimum content length, in characters.
+	 * @return CSV content.
+	 */
+	public static byte[] wideContent(int minLength) {
+		StringBuilder content = new StringBuilder(minLength + 512);
+		content.append(String.join(",", Wide.FIELDS)).append("\r\n");
+		for (int i = 0; content.length() < minLength; ++i) {
+			for (int j = 0; j < 8; ++j) {
+				content.append("\"text ").append(j).append(" of row ").append(i).append("\",");
+			}
+			for (int j = 1; j <= 8; ++j) {
+				content.append(i * j).append(',');
+			}
+			for (int j = 1; j <= 4; ++j) {
+				content.append(i * 1000003L * j).append(',');
+			}
+			for (int j = 0; j < 4; ++j) {
+				content.append((i & (1 << j)) != 0).append(j < 3 ? ',' : '\r');
+			}
+			content.append('\n');
+		}
+		return content.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private Fixtures() {
+	}
+}
@@ -0,0 +1,110 @@
+package com.jslib.tiny.plugin.csv.benchmark;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jslib.api.csv.CsvReader;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.CsvMultipartFormArgumentsReader;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpRequest;
+
+/**
+ * Import benchmark for {@link CsvMultipartFormArgumentsReader}. Multipart upload is replayed from memory, see
+ * {@link MockHttpRequest} from plugin tests JAR, and all imported objects are consumed before reader is cleaned.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImportBenchmark {
+	/**
+	 * Uploaded content: replicated <code>persons.csv</code> fixture, quote heavy, replicated
+	 * <code>escape-new-line.csv</code> fixture, with multi-line values, or generated wide rows.
+	 */
+	@Param({ "persons", "escape-new-line", "wide" })
+	private String content;
+
+	/** Approximated uploaded content size, in bytes. */
+	@Param({ "1048576" })
+	private int size;
+
+	private CsvMultipartFormArgumentsReader reader;
+	private Type[] formalParameters;
+	private MockHttpRequest request;
+
+	@Setup
+	public void setup() throws Exception {
+		File repository = Fixtures.createRepository();
+		CsvConfig config = new CsvConfig();
+		config.config(new ConfigBuilder(String.format("<csv><repository path='%s' files-pattern='*.xml' /></csv>", repository.getAbsolutePath())).build());
+		reader = new CsvMultipartFormArgumentsReader(config);
+
+		byte[] csv;
+		switch (content) {
+		case "persons":
+			csv = Fixtures.replicate("persons.csv", size);
+			formalParameters = parameters("narrow");
+			break;
+
+		case "escape-new-line":
+			csv = Fixtures.replicate("escape-new-line.csv", size);
+			formalParameters = parameters("narrow");
+			break;
+
+		case "wide":
+			csv = Fixtures.wideContent(size);
+			formalParameters = parameters("wide");
+			break;
+
+		default:
+			throw new IllegalStateException("Unknown content: " + content);
+		}
+		request = MockHttpRequest.multipart(MockHttpRequest.multipartBody(csv));
+	}
+
+	@Benchmark
+	public void read(Blackhole blackhole) throws Exception {
+		Object[] arguments = reader.read(request.proxy(), formalParameters);
+		try {
+			for (Object object : (CsvReader<?>) arguments[0]) {
+				blackhole.consume(object);
+			}
+		} finally {
+			reader.clean();
+		}
+	}
+
+	private static Type[] parameters(String methodName) throws NoSuchMethodException {
+		return Methods.class.getDeclaredMethod(methodName, CsvReader.class).getGenericParameterTypes();
+	}
+
+	/** Resource methods prototypes, used only for their generic formal parameters. */
+	@SuppressWarnings("unused")
+	private static final class Methods {
+		void narrow(CsvReader<Narrow> reader) {
+		}
+
+		void wide(CsvReader<Wide> reader) {
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package com.jslib.tiny.plugin.csv.benchmark;
+
+/**
+ * Narrow row with two columns, same shape as <code>persons.csv</code> fixture.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public class Narrow {
+	private String name;
+	private int age;
+
+	public Narrow() {
+	}
+
+	public Narrow(String name, int age) {
+		this.name = name;
+		this.age = age;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getAge() {
+		return age;
+	}
+}
@@ -0,0 +1,72 @@
+package com.jslib.tiny.plugin.csv.benchmark;
+
+/**
+ * Wide row with 24 columns of mixed types: strings, integers, longs and booleans.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public class Wide {
+	/** Names of all fields, in columns order. */
+	static final String[] FIELDS = { "text0", "text1", "text2", "text3", "text4", "text5", "text6", "text7", "int0", "int1", "int2", "int3", "int4", "int5", "int6", "int7", "long0", "long1", "long2", "long3", "flag0", "flag1", "flag2", "flag3" };
+
+	private String text0;
+	private String text1;
+	private String text2;
+	private String text3;
+	private String text4;
+	private String text5;
+	private String text6;
+	private String text7;
+	private int int0;
+	private int int1;
+	private int int2;
+	private int int3;
+	private int int4;
+	private int int5;
+	private int int6;
+	private int int7;
+	private long long0;
+	private long long1;
+	private long long2;
+	private long long3;
+	private boolean flag0;
+	private boolean flag1;
+	private boolean flag2;
+	private boolean flag3;
+
+	public Wide() {
+	}
+
+	/**
+	 * Create row with deterministic values derived from given seed.
+	 * 
+	 * @param seed values seed, usually row index.
+	 */
+	public Wide(int seed) {
+		text0 = "text 0 of row " + seed;
+		text1 = "text 1 of row " + seed;
+		text2 = "text 2 of row " + seed;
+		text3 = "text 3 of row " + seed;
+		text4 = "text 4 of row " + seed;
+		text5 = "text 5 of row " + seed;
+		text6 = "text 6 of row " + seed;
+		text7 = "text 7 of row " + seed;
+		int0 = seed * 1;
+		int1 = seed * 2;
+		int2 = seed * 3;
+		int3 = seed * 4;
+		int4 = seed * 5;
+		int5 = seed * 6;
+		int6 = seed * 7;
+		int7 = seed * 8;
+		long0 = seed * 1000003L * 1;
+		long1 = seed * 1000003L * 2;
+		long2 = seed * 1000003L * 3;
+		long3 = seed * 1000003L * 4;
+		flag0 = (seed & 1) != 0;
+		flag1 = (seed & 2) != 0;
+		flag2 = (seed & 4) != 0;
+		flag3 = (seed & 8) != 0;
+	}
+}
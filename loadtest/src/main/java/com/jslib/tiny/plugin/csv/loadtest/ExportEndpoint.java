@@ -0,0 +1,54 @@
+package com.jslib.tiny.plugin.csv.loadtest;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+
+import com.jslib.container.mvc.AbstractView;
+import com.jslib.container.mvc.ViewMeta;
+import com.jslib.tiny.plugin.csv.CsvView;
+import com.jslib.util.Classes;
+
+/**
+ * Export endpoint: serializes synthetic rows with a new {@link CsvView} per request, as container does, into an in memory
+ * response, see {@link InMemoryResponse}. Every response length is checked against synthetic CSV content length.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class ExportEndpoint implements InProcessContainer.Endpoint {
+	/**
+	 * Create CSV view for given template, with default view properties.
+	 *
+	 * @param template CSV template file.
+	 * @return CSV view.
+	 * @throws Exception if view meta injection fails.
+	 */
+	public static CsvView createView(File template) throws Exception {
+		CsvView view = new CsvView();
+		Classes.invoke(view, AbstractView.class, "setMeta", new ViewMeta(template, CsvView.class, new Properties()));
+		return view;
+	}
+
+	private final File template;
+	private final List<Object> rows;
+	private final long expectedBytes;
+
+	public ExportEndpoint(SyntheticData data) {
+		this.template = data.template;
+		this.rows = data.rows;
+		this.expectedBytes = data.csv.length;
+	}
+
+	@Override
+	public long handle() throws Exception {
+		CsvView view = createView(template);
+		view.setModel(rows);
+		InMemoryResponse response = new InMemoryResponse();
+		view.serialize(response.getResponse());
+		if (response.getBytes() != expectedBytes) {
+			throw new IllegalStateException("Invalid export length. Expected " + expectedBytes + " but got " + response.getBytes() + ".");
+		}
+		return response.getBytes();
+	}
+}
@@ -0,0 +1,82 @@
+package com.jslib.tiny.plugin.csv.loadtest;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import com.jslib.api.csv.CsvReader;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.CsvMultipartFormArgumentsReader;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpRequest;
+
+/**
+ * Import endpoint: replays synthetic CSV content as multipart upload, see {@link MockHttpRequest} from plugin tests JAR,
+ * through a shared {@link CsvMultipartFormArgumentsReader}, as container does for a resource method with a
+ * <code>CsvReader</code> parameter. All imported objects are consumed and their count checked against synthetic rows count.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class ImportEndpoint implements InProcessContainer.Endpoint {
+	private final CsvMultipartFormArgumentsReader reader;
+	private final Type[] formalParameters;
+	private final MockHttpRequest request;
+	private final int bodyLength;
+	private final int expectedRows;
+
+	public ImportEndpoint(SyntheticData data) throws Exception {
+		CsvConfig config = new CsvConfig();
+		config.config(new ConfigBuilder(String.format("<csv><repository path='%s' files-pattern='*.xml' /></csv>", data.repository.getAbsolutePath())).build());
+		this.reader = new CsvMultipartFormArgumentsReader(config);
+		this.formalParameters = new Type[] { new ReaderType(data.type) };
+		byte[] body = MockHttpRequest.multipartBody(data.csv);
+		this.request = MockHttpRequest.multipart(body);
+		this.bodyLength = body.length;
+		this.expectedRows = data.rows.size();
+	}
+
+	@Override
+	public long handle() throws Exception {
+		Object[] arguments = reader.read(request.proxy(), formalParameters);
+		int rows = 0;
+		try {
+			for (Object object : (CsvReader<?>) arguments[0]) {
+				if (object != null) {
+					++rows;
+				}
+			}
+		} finally {
+			reader.clean();
+		}
+		if (rows != expectedRows) {
+			throw new IllegalStateException("Invalid import rows count. Expected " + expectedRows + " but got " + rows + ".");
+		}
+		return bodyLength;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Formal parameter type <code>CsvReader&lt;T&gt;</code> for a type known only at runtime. */
+	private static final class ReaderType implements ParameterizedType {
+		private final Type[] typeArguments;
+
+		ReaderType(Class<?> type) {
+			this.typeArguments = new Type[] { type };
+		}
+
+		@Override
+		public Type[] getActualTypeArguments() {
+			return typeArguments.clone();
+		}
+
+		@Override
+		public Type getRawType() {
+			return CsvReader.class;
+		}
+
+		@Override
+		public Type getOwnerType() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.jslib.tiny.plugin.csv.loadtest;
+
+import java.lang.reflect.Proxy;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * In memory HTTP response stand-in, counting and discarding response body. Response is a dynamic proxy that implements
+ * only body stream, status and committed state; headers are ignored and other methods return null, false or zero.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class InMemoryResponse {
+	private final BodyStream stream = new BodyStream();
+	private final HttpServletResponse response;
+
+	public InMemoryResponse() {
+		response = (HttpServletResponse) Proxy.newProxyInstance(InMemoryResponse.class.getClassLoader(), new Class<?>[] { HttpServletResponse.class }, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "getOutputStream":
+				return stream;
+			case "getStatus":
+				return HttpServletResponse.SC_OK;
+			case "isCommitted":
+				return stream.count > 0;
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "equals":
+				return proxy == args[0];
+			case "toString":
+				return "InMemoryResponse";
+			default:
+				return defaultValue(method.getReturnType());
+			}
+		});
+	}
+
+	public HttpServletResponse getResponse() {
+		return response;
+	}
+
+	/**
+	 * Get the number of response body bytes written so far.
+	 *
+	 * @return response body bytes count.
+	 */
+	public long getBytes() {
+		return stream.count;
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (type == boolean.class) {
+			return false;
+		}
+		if (type == int.class) {
+			return 0;
+		}
+		if (type == long.class) {
+			return 0L;
+		}
+		return null;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Servlet output stream counting and discarding written bytes. */
+	private static final class BodyStream extends ServletOutputStream {
+		long count;
+
+		@Override
+		public void write(int b) {
+			++count;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) {
+			count += length;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
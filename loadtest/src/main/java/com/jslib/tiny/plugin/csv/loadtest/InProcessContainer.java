@@ -0,0 +1,108 @@
+package com.jslib.tiny.plugin.csv.loadtest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-process servlet container stand-in driving an endpoint from concurrent clients. Every client has its own thread, like
+ * a container request thread, and sends its requests in a closed loop, that is, next request is sent as soon as previous
+ * response completes; endpoint instance is shared by all clients, like a servlet.
+ * <p>
+ * A run has a warm up phase, not measured, followed by measured requests. All clients start together and every request
+ * latency is recorded, failed requests included. Garbage collections and heap usage are monitored during measured phase,
+ * see {@link JvmMonitor}.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class InProcessContainer {
+	/** Request handler shared by all clients. */
+	@FunctionalInterface
+	interface Endpoint {
+		/**
+		 * Handle one request.
+		 *
+		 * @return request or response body bytes count.
+		 * @throws Exception if request processing fails.
+		 */
+		long handle() throws Exception;
+	}
+
+	private final JvmMonitor monitor = new JvmMonitor();
+
+	/**
+	 * Run endpoint load test with given number of concurrent clients.
+	 *
+	 * @param operation operation name, for report,
+	 * @param endpoint tested endpoint,
+	 * @param clients concurrent clients count,
+	 * @param warmup warm up requests per client,
+	 * @param requests measured requests per client.
+	 * @return load test result.
+	 * @throws InterruptedException if current thread is interrupted while waiting for clients.
+	 */
+	public LoadResult run(String operation, Endpoint endpoint, int clients, int warmup, int requests) throws InterruptedException {
+		if (warmup > 0) {
+			execute(endpoint, clients, new long[clients][warmup]);
+		}
+		// do not charge measured phase with garbage left by warm up
+		System.gc();
+
+		monitor.start();
+		long[][] latencies = new long[clients][requests];
+		Run run = execute(endpoint, clients, latencies);
+		JvmMonitor.Snapshot jvm = monitor.stop();
+		return new LoadResult(operation, clients, latencies, run.elapsed, run.bytes.get(), run.errors.get(), run.error.get(), jvm);
+	}
+
+	private static Run execute(Endpoint endpoint, int clients, long[][] latencies) throws InterruptedException {
+		Run run = new Run();
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[clients];
+		for (int i = 0; i < clients; ++i) {
+			long[] clientLatencies = latencies[i];
+			threads[i] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				long bytes = 0;
+				for (int request = 0; request < clientLatencies.length; ++request) {
+					long timestamp = System.nanoTime();
+					try {
+						bytes += endpoint.handle();
+					} catch (Throwable throwable) {
+						run.errors.incrementAndGet();
+						run.error.compareAndSet(null, throwable);
+					}
+					clientLatencies[request] = System.nanoTime() - timestamp;
+				}
+				run.bytes.addAndGet(bytes);
+			}, "csv-client-" + i);
+			threads[i].start();
+		}
+
+		long timestamp = System.nanoTime();
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		run.elapsed = System.nanoTime() - timestamp;
+		return run;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Clients execution outcome. */
+	private static final class Run {
+		final AtomicLong bytes = new AtomicLong();
+		final AtomicInteger errors = new AtomicInteger();
+		/** First request failure, null if all requests succeeded. */
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+		long elapsed;
+	}
+}
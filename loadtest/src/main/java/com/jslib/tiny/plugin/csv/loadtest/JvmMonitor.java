@@ -0,0 +1,94 @@
+package com.jslib.tiny.plugin.csv.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Garbage collections and heap usage monitor. Collections are recorded from collectors notifications, with duration as
+ * reported by collector; for mostly concurrent collectors, e.g. ZGC cycles, reported duration is not entirely a pause.
+ * Peak heap is the sum of heap memory pools peak usage, that is, an upper bound, since pools do not necessarily peak at
+ * the same moment.
+ * <p>
+ * Collection notifications are delivered asynchronously so that a collection ending right before monitor is stopped may
+ * not be counted.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class JvmMonitor {
+	private final AtomicLong gcCount = new AtomicLong();
+	private final AtomicLong gcTime = new AtomicLong();
+	private final AtomicLong gcMaxPause = new AtomicLong();
+
+	public JvmMonitor() {
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (collector instanceof NotificationEmitter) {
+				((NotificationEmitter) collector).addNotificationListener(this::onNotification, null, null);
+			}
+		}
+	}
+
+	/** Reset collections counters and heap pools peak usage. */
+	public void start() {
+		gcCount.set(0);
+		gcTime.set(0);
+		gcMaxPause.set(0);
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	/**
+	 * Get collections and peak heap recorded since monitor start.
+	 *
+	 * @return monitor snapshot.
+	 */
+	public Snapshot stop() {
+		long peakHeap = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+		return new Snapshot(gcCount.get(), gcTime.get(), gcMaxPause.get(), peakHeap);
+	}
+
+	private void onNotification(Notification notification, Object handback) {
+		if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+			return;
+		}
+		GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+		long duration = info.getGcInfo().getDuration();
+		gcCount.incrementAndGet();
+		gcTime.addAndGet(duration);
+		gcMaxPause.accumulateAndGet(duration, Math::max);
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Monitor snapshot: collections count, total and maximum duration, in milliseconds, and peak heap, in bytes. */
+	static final class Snapshot {
+		final long gcCount;
+		final long gcTime;
+		final long gcMaxPause;
+		final long peakHeap;
+
+		Snapshot(long gcCount, long gcTime, long gcMaxPause, long peakHeap) {
+			this.gcCount = gcCount;
+			this.gcTime = gcTime;
+			this.gcMaxPause = gcMaxPause;
+			this.peakHeap = peakHeap;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.jslib.tiny.plugin.csv.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Load test run result: throughput, latency percentiles, garbage collections and peak heap. Result is formatted as a
+ * report table row, see {@link #header()}.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class LoadResult {
+	private static final String FORMAT = "%-8s %7s %8s %9s %9s %9s %9s %9s %6s %8s %8s %9s %6s";
+
+	/**
+	 * Get report table header.
+	 *
+	 * @return report header.
+	 */
+	public static String header() {
+		return String.format(FORMAT, "op", "clients", "requests", "req/s", "MB/s", "p50 ms", "p99 ms", "max ms", "gc", "gc ms", "pause ms", "heap MB", "errors");
+	}
+
+	private final String operation;
+	private final int clients;
+	/** All requests latencies, in nanoseconds, sorted. */
+	private final long[] latencies;
+	private final long elapsed;
+	private final long bytes;
+	private final int errors;
+	private final Throwable error;
+	private final JvmMonitor.Snapshot jvm;
+
+	public LoadResult(String operation, int clients, long[][] latencies, long elapsed, long bytes, int errors, Throwable error, JvmMonitor.Snapshot jvm) {
+		this.operation = operation;
+		this.clients = clients;
+		this.latencies = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+		this.elapsed = elapsed;
+		this.bytes = bytes;
+		this.errors = errors;
+		this.error = error;
+		this.jvm = jvm;
+	}
+
+	/**
+	 * Get first request failure or null if all requests succeeded.
+	 *
+	 * @return request failure, possible null.
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * Get latency percentile, using nearest rank method.
+	 *
+	 * @param percentile percentile, from 0 to 1.
+	 * @return latency, in milliseconds.
+	 */
+	public double latency(double percentile) {
+		int index = Math.max(0, (int) Math.ceil(percentile * latencies.length) - 1);
+		return latencies[index] / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		double seconds = elapsed / 1e9;
+		return String.format(FORMAT, operation, clients, latencies.length, //
+				String.format("%.1f", latencies.length / seconds), //
+				String.format("%.1f", bytes / seconds / (1024 * 1024)), //
+				String.format("%.2f", latency(0.5)), //
+				String.format("%.2f", latency(0.99)), //
+				String.format("%.2f", latency(1)), //
+				jvm.gcCount, jvm.gcTime, jvm.gcMaxPause, //
+				jvm.peakHeap / (1024 * 1024), errors);
+	}
+}
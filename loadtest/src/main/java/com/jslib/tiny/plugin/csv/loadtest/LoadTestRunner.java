@@ -0,0 +1,45 @@
+package com.jslib.tiny.plugin.csv.loadtest;
+
+/**
+ * Load test entry point. Runs every configured operation, import and export, with every configured concurrent clients
+ * count, see {@link Settings}, and prints a report row per run. Endpoints check responses, so that a run with failed
+ * requests is reported with errors count and the first failure stack trace; in this case runner exits with status 1.
+ *
+ * <pre>
+ * java -Dclients=1,4,16 -Drows=100000 -jar target/loadtest.jar
+ * </pre>
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public final class LoadTestRunner {
+	public static void main(String... args) throws Exception {
+		Settings settings = Settings.load();
+		SyntheticData data = SyntheticData.create(settings);
+		System.out.printf("CSV load test: %s.%n", settings);
+		System.out.printf("Template %s for %s, %d bytes per request, max heap %d MB.%n%n", data.template.getName(), data.type.getName(), data.csv.length, Runtime.getRuntime().maxMemory() / (1024 * 1024));
+
+		InProcessContainer container = new InProcessContainer();
+		System.out.println(LoadResult.header());
+		int failures = 0;
+		for (String operation : settings.operations) {
+			InProcessContainer.Endpoint endpoint = operation.equals("import") ? new ImportEndpoint(data) : new ExportEndpoint(data);
+			for (int clients : settings.clients) {
+				LoadResult result = container.run(operation, endpoint, clients, settings.warmup, settings.requests);
+				System.out.println(result);
+				if (result.getError() != null) {
+					++failures;
+					result.getError().printStackTrace();
+				}
+			}
+		}
+
+		if (failures > 0) {
+			System.out.printf("%d run(s) with failed requests.%n", failures);
+			System.exit(1);
+		}
+	}
+
+	private LoadTestRunner() {
+	}
+}
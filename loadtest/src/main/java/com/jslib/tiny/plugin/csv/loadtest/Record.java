@@ -0,0 +1,49 @@
+package com.jslib.tiny.plugin.csv.loadtest;
+
+/**
+ * Synthetic row with up to 32 string columns. Generated template uses the first columns, in {@link #FIELDS} order; values
+ * are set by {@link SyntheticData}, via reflection.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public class Record {
+	/** Names of all fields, in columns order. */
+	static final String[] FIELDS = { "c0", "c1", "c2", "c3", "c4", "c5", "c6", "c7", "c8", "c9", "c10", "c11", "c12", "c13", "c14", "c15", "c16", "c17", "c18", "c19", "c20", "c21", "c22", "c23", "c24", "c25", "c26", "c27", "c28", "c29", "c30", "c31" };
+
+	private String c0;
+	private String c1;
+	private String c2;
+	private String c3;
+	private String c4;
+	private String c5;
+	private String c6;
+	private String c7;
+	private String c8;
+	private String c9;
+	private String c10;
+	private String c11;
+	private String c12;
+	private String c13;
+	private String c14;
+	private String c15;
+	private String c16;
+	private String c17;
+	private String c18;
+	private String c19;
+	private String c20;
+	private String c21;
+	private String c22;
+	private String c23;
+	private String c24;
+	private String c25;
+	private String c26;
+	private String c27;
+	private String c28;
+	private String c29;
+	private String c30;
+	private String c31;
+
+	public Record() {
+	}
+}
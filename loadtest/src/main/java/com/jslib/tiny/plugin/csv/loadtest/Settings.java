@@ -0,0 +1,108 @@
+package com.jslib.tiny.plugin.csv.loadtest;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Load test settings loaded from system properties. All properties are optional:
+ * <ul>
+ * <li><code>operations</code> - comma separated operations to run, <code>import</code> and <code>export</code>, default
+ * both,
+ * <li><code>clients</code> - comma separated concurrent clients counts, one run per count, default
+ * <code>1,2,4,8</code>,
+ * <li><code>requests</code> - measured requests per client, default 20,
+ * <li><code>warmup</code> - warm up requests per client, not measured, default 5,
+ * <li><code>rows</code> - rows per request, default 10000,
+ * <li><code>template</code> - CSV template file, e.g. <code>../fixture/person.xml</code>; if missing, a template with
+ * synthetic string columns is generated,
+ * <li><code>columns</code> - synthetic template columns count, from 1 to {@link Record#FIELDS} length, default 8,
+ * <li><code>field.width</code> - generated string values length, in characters, default 16,
+ * <li><code>quote.density</code> - probability of a string value to contain quotes and delimiters, default 0.1,
+ * <li><code>crlf.density</code> - probability of a string value to contain line breaks, default 0.01,
+ * <li><code>seed</code> - random values seed, default 1.
+ * </ul>
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class Settings {
+	public static Settings load() {
+		return new Settings();
+	}
+
+	final List<String> operations;
+	final int[] clients;
+	final int requests;
+	final int warmup;
+	final int rows;
+	final File template;
+	final int columns;
+	final int fieldWidth;
+	final double quoteDensity;
+	final double crlfDensity;
+	final long seed;
+
+	private Settings() {
+		operations = Arrays.asList(System.getProperty("operations", "import,export").split("\\s*,\\s*"));
+		for (String operation : operations) {
+			if (!operation.equals("import") && !operation.equals("export")) {
+				throw new IllegalArgumentException("Unknown operation: " + operation);
+			}
+		}
+		clients = Arrays.stream(System.getProperty("clients", "1,2,4,8").split("\\s*,\\s*")).mapToInt(Integer::parseInt).toArray();
+		for (int count : clients) {
+			positive("clients", count);
+		}
+		requests = positive("requests", Integer.getInteger("requests", 20));
+		warmup = Integer.getInteger("warmup", 5);
+		rows = positive("rows", Integer.getInteger("rows", 10000));
+
+		String templatePath = System.getProperty("template");
+		template = templatePath != null ? new File(templatePath) : null;
+		if (template != null && !template.isFile()) {
+			throw new IllegalArgumentException("Missing template file: " + template);
+		}
+		columns = positive("columns", Integer.getInteger("columns", 8));
+		if (columns > Record.FIELDS.length) {
+			throw new IllegalArgumentException("Too many columns: " + columns + ". Maximum is " + Record.FIELDS.length + ".");
+		}
+		fieldWidth = positive("field.width", Integer.getInteger("field.width", 16));
+		quoteDensity = density("quote.density", 0.1);
+		crlfDensity = density("crlf.density", 0.01);
+		seed = Long.getLong("seed", 1);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("rows=").append(rows);
+		if (template != null) {
+			builder.append(", template=").append(template);
+		}
+		else {
+			builder.append(", columns=").append(columns);
+		}
+		builder.append(", field.width=").append(fieldWidth);
+		builder.append(", quote.density=").append(quoteDensity);
+		builder.append(", crlf.density=").append(crlfDensity);
+		builder.append(", requests=").append(requests);
+		builder.append(", warmup=").append(warmup);
+		return builder.toString();
+	}
+
+	private static int positive(String name, int value) {
+		if (value <= 0) {
+			throw new IllegalArgumentException("Invalid " + name + ": " + value + ". Expected positive value.");
+		}
+		return value;
+	}
+
+	private static double density(String name, double defaultValue) {
+		double value = Double.parseDouble(System.getProperty(name, Double.toString(defaultValue)));
+		if (value < 0 || value > 1) {
+			throw new IllegalArgumentException("Invalid " + name + ": " + value + ". Expected value between 0 and 1.");
+		}
+		return value;
+	}
+}
@@ -0,0 +1,178 @@
+package com.jslib.tiny.plugin.csv.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.jslib.lang.Config;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.tiny.plugin.csv.CsvView;
+
+/**
+ * Synthetic load test data: CSV template in a temporary repository directory, in memory rows for exports and CSV content
+ * for imports. Template is either a copy of a user supplied template, e.g. <code>fixture/person.xml</code>, or generated
+ * with the configured number of {@link Record} string columns; in both cases template class should be on class path.
+ * <p>
+ * Rows are generated from template columns, with values based on field types: strings of configured width, containing
+ * quotes, delimiters and line breaks with configured densities, random numbers and booleans. Fields of other types are
+ * left null, so templates with such fields should declare a null value. CSV content is produced by encoding generated rows
+ * with {@link CsvView}, so that imported content always matches template format.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class SyntheticData {
+	/** Characters used for string values. */
+	private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 ";
+
+	/**
+	 * Create load test data as configured by settings. Repository is deleted on JVM exit.
+	 *
+	 * @param settings load test settings.
+	 * @return load test data.
+	 * @throws Exception if template loading or rows generation fails.
+	 */
+	public static SyntheticData create(Settings settings) throws Exception {
+		File repository = Files.createTempDirectory("csv-loadtest").toFile();
+		repository.deleteOnExit();
+		File template;
+		if (settings.template != null) {
+			template = new File(repository, settings.template.getName());
+			Files.copy(settings.template.toPath(), template.toPath());
+		}
+		else {
+			template = writeTemplate(repository, Arrays.copyOf(Record.FIELDS, settings.columns));
+		}
+		template.deleteOnExit();
+		return new SyntheticData(settings, repository, template);
+	}
+
+	private final Settings settings;
+	private final Random random;
+
+	/** Templates repository directory. */
+	final File repository;
+	final File template;
+	/** Template class. */
+	final Class<?> type;
+	final List<Object> rows;
+	/** Generated rows encoded as CSV. */
+	final byte[] csv;
+
+	private SyntheticData(Settings settings, File repository, File template) throws Exception {
+		this.settings = settings;
+		this.random = new Random(settings.seed);
+		this.repository = repository;
+		this.template = template;
+
+		Config config = new ConfigBuilder(template).build();
+		String className = config.getAttribute("class");
+		try {
+			this.type = Class.forName(className);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("Template class " + className + " is not on class path.");
+		}
+		List<Field> fields = new ArrayList<>();
+		for (Config column : config.findChildren("column")) {
+			fields.add(field(type, column.getAttribute("field")));
+		}
+
+		Constructor<?> constructor = type.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		this.rows = new ArrayList<>(settings.rows);
+		for (int i = 0; i < settings.rows; ++i) {
+			Object row = constructor.newInstance();
+			for (Field field : fields) {
+				Object value = value(field.getType());
+				if (value != null) {
+					field.set(row, value);
+				}
+			}
+			rows.add(row);
+		}
+
+		CsvView view = ExportEndpoint.createView(template);
+		view.setModel(rows);
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		view.serialize(stream);
+		this.csv = stream.toByteArray();
+	}
+
+	private Object value(Class<?> type) {
+		if (type == String.class) {
+			return text();
+		}
+		if (type == int.class || type == Integer.class) {
+			return random.nextInt(1000000);
+		}
+		if (type == long.class || type == Long.class) {
+			return random.nextLong();
+		}
+		if (type == double.class || type == Double.class) {
+			return random.nextDouble() * 1000000;
+		}
+		if (type == boolean.class || type == Boolean.class) {
+			return random.nextBoolean();
+		}
+		return null;
+	}
+
+	/**
+	 * Generate string value of configured width. Depending on configured densities, value contains a quote and a comma, a
+	 * CRLF line break, or both.
+	 *
+	 * @return string value.
+	 */
+	private String text() {
+		int width = settings.fieldWidth;
+		char[] chars = new char[width];
+		for (int i = 0; i < width; ++i) {
+			chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+		}
+		if (random.nextDouble() < settings.quoteDensity) {
+			chars[random.nextInt(width)] = '"';
+			chars[random.nextInt(width)] = ',';
+		}
+		if (width > 1 && random.nextDouble() < settings.crlfDensity) {
+			int index = random.nextInt(width - 1);
+			chars[index] = '\r';
+			chars[index + 1] = '\n';
+		}
+		return new String(chars);
+	}
+
+	private static Field field(Class<?> type, String name) {
+		for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+			try {
+				Field field = clazz.getDeclaredField(name);
+				field.setAccessible(true);
+				return field;
+			} catch (NoSuchFieldException e) {
+				// field is declared by a superclass
+			}
+		}
+		throw new IllegalArgumentException("Missing field " + name + " from template class " + type.getName() + ".");
+	}
+
+	private static File writeTemplate(File repository, String... fields) throws IOException {
+		File template = new File(repository, "record.xml");
+		try (Writer writer = Files.newBufferedWriter(template.toPath(), StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
+			writer.write(String.format("<csv class=\"%s\" header=\"true\" delimiter=\",\" null-value=\"null\">\r\n", Record.class.getName()));
+			for (String field : fields) {
+				writer.write(String.format("\t<column field=\"%s\" />\r\n", field));
+			}
+			writer.write("</csv>\r\n");
+		}
+		return template;
+	}
+}
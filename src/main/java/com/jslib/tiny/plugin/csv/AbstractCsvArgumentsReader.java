@@ -0,0 +1,502 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import com.jslib.api.csv.CsvDescriptor;
+import com.jslib.api.csv.CsvFactory;
+import com.jslib.api.csv.CsvReader;
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+import com.jslib.container.http.encoder.ArgumentsReader;
+import com.jslib.container.spi.Factory;
+import com.jslib.lang.Config;
+import com.jslib.lang.IllegalArgumentException;
+import com.jslib.util.Classes;
+import com.jslib.util.Files;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Base for arguments readers creating CSV reader argument from HTTP request. Subclasses should only provide the stream
+ * carrying CSV content.
+ * <p>
+ * Argument type is selected by formal parameter raw type: {@link CsvReader} for sequential parsing on container thread and
+ * {@link ParallelCsvReader} for parallel parsing, see {@link CsvConfig} for parallel import configuration. For bulk
+ * processing use {@link CsvBatchReader} that delivers imported objects in batches. Asynchronous import is supported by
+ * {@link Flow.Publisher} argument, see {@link CsvPublisher}. All arguments bind records with template compiled binder, if
+ * available, see {@link CsvBinder}, and with reference CSV reader otherwise.
+ * <p>
+ * Subclasses supporting requests with multiple CSV parts, see {@link #readParts(HttpServletRequest, Type[], PartHandler)},
+ * accept methods with multiple CSV reader parameters, every parameter with its own element type. Parts are matched to
+ * parameters by name: part name is declared by <code>part</code> attribute of template root element and defaults to
+ * element type simple name, compared case insensitive. Every part is spooled to a temporary file, as it is read from
+ * request, and its parsing starts as soon as request is fully read so that parts are parsed concurrently on import
+ * executor; a {@link CsvReader} or {@link CsvBatchReader} parameter is backed by an ordered {@link ParallelCsvReader}.
+ * <p>
+ * Templates with <code>delta="true"</code> root attribute are imported in delta mode, see {@link CsvDelta}: only records
+ * new or changed since previous import of the same type are bound and delivered. Delta mode applies to {@link CsvReader}
+ * and {@link CsvBatchReader} arguments read from a single CSV stream and requires a compiled template, see
+ * {@link CsvBinder}; otherwise all records are imported. Delta import is committed only if controller commits the
+ * argument after persisting records, see {@link DeltaImport}.
+ * 
+ * <pre>
+ * public void importCatalog(CsvReader&lt;Product&gt; products, ParallelCsvReader&lt;Price&gt; prices) {
+ * 	...
+ * }
+ * </pre>
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public abstract class AbstractCsvArgumentsReader implements ArgumentsReader {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(AbstractCsvArgumentsReader.class);
+
+	/**
+	 * Store import operation, if any, so that to be able to close stream argument and record import statistics after method
+	 * execution. Do not store stream argument as field of this arguments reader since instance is reused and cannot have
+	 * state.
+	 */
+	private final ThreadLocal<List<ImportOperation>> threadLocal = new ThreadLocal<>();
+
+	protected final CsvFactory csvFactory;
+
+	/** CSV plugin configuration, null if configuration is retrieved from container on every read. */
+	private final CsvConfig config;
+
+	protected AbstractCsvArgumentsReader() {
+		this(null);
+	}
+
+	/**
+	 * Create arguments reader with given CSV plugin configuration, for use outside container, e.g. benchmarks.
+	 * 
+	 * @param config CSV plugin configuration, null to retrieve it from container.
+	 */
+	protected AbstractCsvArgumentsReader(CsvConfig config) {
+		this.csvFactory = Classes.loadService(CsvFactory.class);
+		this.config = config;
+	}
+
+	/**
+	 * Read CSV stream from HTTP request.
+	 * 
+	 * @param httpRequest HTTP request,
+	 * @param formalParameters requested formal parameters.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Override
+	public Object[] read(HttpServletRequest httpRequest, Type[] formalParameters) throws IOException, IllegalArgumentException {
+		if (formalParameters.length == 0) {
+			log.error("Bad parameters count for CSV stream. Method must have at least one formal parameter.");
+			throw new IllegalArgumentException(formalParameters);
+		}
+		if (formalParameters.length > 1) {
+			return readMultipleParts(httpRequest, formalParameters);
+		}
+		if (!(formalParameters[0] instanceof ParameterizedType)) {
+			throw new IllegalArgumentException("Expect parameterized formal parameter but got |%s|.", formalParameters[0]);
+		}
+
+		ParameterizedType parameterizedType = (ParameterizedType) formalParameters[0];
+		Class typeArgument = (Class) parameterizedType.getActualTypeArguments()[0];
+
+		CsvConfig config = this.config != null ? this.config : Factory.getInstance(CsvConfig.class);
+		CsvDescriptor descriptor = config.getDescriptor(typeArgument);
+
+		CsvStats stats = CsvMetrics.typeImport(typeArgument);
+		long start = stats.begin();
+		CountingInputStream stream = null;
+		Object[] arguments = new Object[1];
+		try {
+			stream = new CountingInputStream(getInputStream(httpRequest, formalParameters));
+			arguments[0] = createArgument((Class<?>) parameterizedType.getRawType(), config, descriptor, stream);
+		} catch (IOException | RuntimeException e) {
+			stats.end(start, 0, stream != null ? stream.count : 0, true);
+			throw e;
+		}
+		threadLocal.set(Collections.singletonList(new ImportOperation((Closeable) arguments[0], stats, start, stream)));
+		return arguments;
+	}
+
+	/**
+	 * Read multiple CSV parts from HTTP request, one per formal parameter. Parts are spooled while request is read, then CSV
+	 * reader arguments are created on spooled parts.
+	 * 
+	 * @param httpRequest HTTP request,
+	 * @param formalParameters requested formal parameters.
+	 * @return CSV reader arguments.
+	 * @throws IOException if request reading or parts spooling fails.
+	 * @throws IllegalArgumentException if request does not carry a part for every formal parameter.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Object[] readMultipleParts(HttpServletRequest httpRequest, Type[] formalParameters) throws IOException, IllegalArgumentException {
+		CsvConfig config = this.config != null ? this.config : Factory.getInstance(CsvConfig.class);
+
+		Part[] parts = new Part[formalParameters.length];
+		for (int i = 0; i < formalParameters.length; ++i) {
+			if (!(formalParameters[i] instanceof ParameterizedType)) {
+				throw new IllegalArgumentException("Expect parameterized formal parameter but got |%s|.", formalParameters[i]);
+			}
+			ParameterizedType parameterizedType = (ParameterizedType) formalParameters[i];
+			Class<?> typeArgument = (Class<?>) parameterizedType.getActualTypeArguments()[0];
+			CsvDescriptor descriptor = config.getDescriptor(typeArgument);
+			if (descriptor == null) {
+				throw new IllegalArgumentException("Missing CSV template for type |%s|.", typeArgument);
+			}
+			parts[i] = new Part(partName(config, typeArgument), (Class<?>) parameterizedType.getRawType(), descriptor);
+		}
+
+		List<ImportOperation> operations = new ArrayList<>();
+		Object[] arguments = new Object[formalParameters.length];
+		try {
+			readParts(httpRequest, formalParameters, (name, stream) -> {
+				Part part = null;
+				for (Part candidate : parts) {
+					if (candidate.name.equalsIgnoreCase(name)) {
+						part = candidate;
+						break;
+					}
+				}
+				if (part == null) {
+					log.warn("Unexpected CSV part |{part}|. Ignore it.", name);
+					return;
+				}
+				if (part.spool != null) {
+					throw new IllegalArgumentException("Duplicated CSV part |%s|.", name);
+				}
+
+				part.stats = CsvMetrics.typeImport(part.descriptor.type());
+				part.start = part.stats.begin();
+				part.stream = new CountingInputStream(stream);
+				try {
+					if (part.type == Flow.Publisher.class) {
+						part.spool = CsvSpool.create(part.stream, Long.MAX_VALUE, false, delimiter(config, part.descriptor.type()), config.getImportSpoolDir());
+					}
+					else {
+						part.spool = CsvSpool.create(part.stream, config.getImportChunkSize(), hasHeader(config, part.descriptor.type()), delimiter(config, part.descriptor.type()), config.getImportSpoolDir());
+					}
+				} finally {
+					part.stream.close();
+				}
+			});
+
+			for (Part part : parts) {
+				if (part.spool == null) {
+					throw new IllegalArgumentException("Missing CSV part |%s|.", part.name);
+				}
+			}
+			for (int i = 0; i < parts.length; ++i) {
+				Part part = parts[i];
+				arguments[i] = createArgument(part.type, config, part.descriptor, part.spool);
+				operations.add(new ImportOperation((Closeable) arguments[i], part.stats, part.start, part.stream));
+			}
+		} catch (IOException | RuntimeException e) {
+			for (ImportOperation operation : operations) {
+				operation.close();
+			}
+			for (int i = operations.size(); i < parts.length; ++i) {
+				Part part = parts[i];
+				if (part.spool != null) {
+					part.spool.close();
+				}
+				if (part.stats != null) {
+					part.stats.end(part.start, 0, part.stream.count, true);
+				}
+			}
+			throw e;
+		}
+
+		threadLocal.set(operations);
+		log.debug("Read |{parts_count}| CSV parts.", parts.length);
+		return arguments;
+	}
+
+	/**
+	 * Read CSV parts carried by HTTP request, passing them in request order to given handler. Part stream is valid only while
+	 * handler is executing. This hook is used only for methods with multiple formal parameters; default implementation
+	 * rejects them since request carries a single CSV stream.
+	 * 
+	 * @param httpRequest HTTP request,
+	 * @param formalParameters requested formal parameters, for error reporting,
+	 * @param handler parts handler.
+	 * @throws IOException if request reading fails.
+	 * @throws IllegalArgumentException if HTTP request does not carry valid CSV parts.
+	 */
+	protected void readParts(HttpServletRequest httpRequest, Type[] formalParameters, PartHandler handler) throws IOException, IllegalArgumentException {
+		log.error("Bad parameters count for CSV stream. Method must have exactly one formal parameter but has |{parameters_length}|.", formalParameters.length);
+		throw new IllegalArgumentException(formalParameters);
+	}
+
+	/**
+	 * Close CSV reader argument after method execution. Asynchronous arguments, e.g. {@link CsvPublisher}, are closed only
+	 * if not consumed by method; otherwise they release resources themselves when processing completes.
+	 */
+	@Override
+	public void clean() {
+		List<ImportOperation> operations = threadLocal.get();
+		threadLocal.remove();
+		if (operations != null) {
+			for (ImportOperation operation : operations) {
+				operation.close();
+			}
+		}
+	}
+
+	/**
+	 * Create CSV reader argument of requested type.
+	 * 
+	 * @param type formal parameter raw type,
+	 * @param config CSV plugin configuration,
+	 * @param descriptor CSV descriptor for formal parameter type argument,
+	 * @param stream CSV content stream.
+	 * @return CSV reader argument.
+	 * @throws IOException if CSV stream reading fails.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Closeable createArgument(Class<?> type, CsvConfig config, CsvDescriptor descriptor, InputStream stream) throws IOException {
+		if (isDelta(config, descriptor.type())) {
+			CsvSource source = openDelta(type, config, descriptor, stream);
+			if (source != null) {
+				return type == CsvBatchReader.class ? new CsvBatchReader(source, config.getBatchSize(descriptor.type())) : source;
+			}
+		}
+		if (type == ParallelCsvReader.class) {
+			CsvSpool spool;
+			try {
+				spool = CsvSpool.create(stream, config.getImportChunkSize(), hasHeader(config, descriptor.type()), delimiter(config, descriptor.type()), config.getImportSpoolDir());
+			} finally {
+				stream.close();
+			}
+			return createArgument(type, config, descriptor, spool);
+		}
+		if (type == Flow.Publisher.class) {
+			CsvSpool spool;
+			try {
+				spool = CsvSpool.create(stream, Long.MAX_VALUE, false, delimiter(config, descriptor.type()), config.getImportSpoolDir());
+			} finally {
+				stream.close();
+			}
+			return createArgument(type, config, descriptor, spool);
+		}
+		if (type == CsvBatchReader.class) {
+			return new CsvBatchReader(CsvSource.open(csvFactory, descriptor, config.getBinder(descriptor.type()), stream), config.getBatchSize(descriptor.type()));
+		}
+		return CsvSource.open(csvFactory, descriptor, config.getBinder(descriptor.type()), stream);
+	}
+
+	/**
+	 * Create CSV reader argument of requested type on spooled CSV stream. Sequential readers are backed by an ordered
+	 * parallel reader whose parsing is started immediately, so that parts of a multiple parts request are parsed
+	 * concurrently.
+	 * 
+	 * @param type formal parameter raw type,
+	 * @param config CSV plugin configuration,
+	 * @param descriptor CSV descriptor for formal parameter type argument,
+	 * @param spool spooled CSV stream, closed by returned argument.
+	 * @return CSV reader argument.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Closeable createArgument(Class<?> type, CsvConfig config, CsvDescriptor descriptor, CsvSpool spool) {
+		if (isDelta(config, descriptor.type())) {
+			log.warn("Delta import not supported for CSV part of type |{type}|. Import all records.", descriptor.type());
+		}
+		CsvBinder binder = config.getBinder(descriptor.type());
+		if (type == Flow.Publisher.class) {
+			return new CsvPublisher(csvFactory, descriptor, binder, spool, config.getImportExecutor());
+		}
+		if (type == ParallelCsvReader.class) {
+			return new ParallelCsvReader(csvFactory, descriptor, binder, spool, config.getImportExecutor(), config.getImportParallelism(), config.isImportOrdered());
+		}
+		ParallelCsvReader reader = new ParallelCsvReader(csvFactory, descriptor, binder, spool, config.getImportExecutor(), config.getImportParallelism(), true);
+		reader.prefetch();
+		if (type == CsvBatchReader.class) {
+			return new CsvBatchReader(new SpooledReader(reader), config.getBatchSize(descriptor.type()));
+		}
+		return new SpooledReader(reader);
+	}
+
+	/**
+	 * Open delta import source, see {@link CsvDelta}, that delivers only records new or changed since previous import of the
+	 * same type. Returns null if delta import is not supported for requested argument type or if template cannot be
+	 * compiled, in which case all records are imported.
+	 * 
+	 * @param type formal parameter raw type,
+	 * @param config CSV plugin configuration,
+	 * @param descriptor CSV descriptor for formal parameter type argument,
+	 * @param stream CSV content stream.
+	 * @return delta import source or null.
+	 * @throws IOException if fingerprints files opening fails.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static CsvSource openDelta(Class<?> type, CsvConfig config, CsvDescriptor descriptor, InputStream stream) throws IOException {
+		if (type != CsvReader.class && type != CsvBatchReader.class) {
+			log.warn("Delta import not supported for |{argument_type}| argument. Import all records of |{type}|.", type, descriptor.type());
+			return null;
+		}
+		CsvBinder binder = config.getBinder(descriptor.type());
+		if (binder == null) {
+			log.warn("Delta import requires compiled template. Import all records of |{type}|.", descriptor.type());
+			return null;
+		}
+		CsvDelta delta = CsvDelta.open(config.getImportDeltaDir(), descriptor.type());
+		return new MeteredReader(new CompiledCsvReader(binder, binder.createDictionary(), stream, delta), CsvMetrics.typeImport(descriptor.type()));
+	}
+
+	private static boolean isDelta(CsvConfig config, Class<?> type) {
+		Config templateConfig = config.getTemplateConfig(type);
+		return templateConfig != null && Boolean.parseBoolean(templateConfig.getAttribute("delta"));
+	}
+
+	private static String partName(CsvConfig config, Class<?> type) {
+		Config templateConfig = config.getTemplateConfig(type);
+		String part = templateConfig != null ? templateConfig.getAttribute("part") : null;
+		return part != null ? part : type.getSimpleName();
+	}
+
+	private static boolean hasHeader(CsvConfig config, Class<?> type) {
+		Config templateConfig = config.getTemplateConfig(type);
+		return templateConfig != null && Boolean.parseBoolean(templateConfig.getAttribute("header"));
+	}
+
+	private static char delimiter(CsvConfig config, Class<?> type) {
+		Config templateConfig = config.getTemplateConfig(type);
+		return CsvBinder.delimiter(templateConfig != null ? templateConfig.getAttribute("delimiter") : null);
+	}
+
+	/**
+	 * Get the stream carrying CSV content from HTTP request.
+	 * 
+	 * @param httpRequest HTTP request,
+	 * @param formalParameters requested formal parameters, for error reporting.
+	 * @return CSV content stream.
+	 * @throws IOException if stream opening fails.
+	 * @throws IllegalArgumentException if HTTP request does not carry valid CSV content.
+	 */
+	protected abstract InputStream getInputStream(HttpServletRequest httpRequest, Type[] formalParameters) throws IOException, IllegalArgumentException;
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Handler for CSV parts carried by HTTP request, see {@link #readParts(HttpServletRequest, Type[], PartHandler)}. */
+	@FunctionalInterface
+	protected interface PartHandler {
+		/**
+		 * Handle CSV part. Part stream should be consumed before returning; caller takes care to close it.
+		 * 
+		 * @param name part name, e.g. multipart form field name,
+		 * @param stream part content stream.
+		 * @throws IOException if part stream reading fails.
+		 */
+		void handle(String name, InputStream stream) throws IOException;
+	}
+
+	/** CSV part expected by a formal parameter, with its spooled content once read from request. */
+	private static final class Part {
+		final String name;
+		final Class<?> type;
+		@SuppressWarnings("rawtypes")
+		final CsvDescriptor descriptor;
+
+		CsvSpool spool;
+		CsvStats stats;
+		long start;
+		CountingInputStream stream;
+
+		@SuppressWarnings("rawtypes")
+		Part(String name, Class<?> type, CsvDescriptor descriptor) {
+			this.name = name;
+			this.type = type;
+			this.descriptor = descriptor;
+		}
+	}
+
+	/** Sequential reader argument for a spooled part, delegating to an ordered parallel reader. */
+	private static final class SpooledReader<T> implements CsvReader<T>, CsvSource<T> {
+		private final ParallelCsvReader<T> reader;
+
+		SpooledReader(ParallelCsvReader<T> reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return reader.iterator();
+		}
+
+		@Override
+		public void close() {
+			reader.close();
+		}
+	}
+
+	/** Import operation: stream argument and the state needed to record import statistics when it is closed. */
+	private static final class ImportOperation {
+		private final Closeable argument;
+		private final CsvStats stats;
+		private final long start;
+		private final CountingInputStream stream;
+
+		ImportOperation(Closeable argument, CsvStats stats, long start, CountingInputStream stream) {
+			this.argument = argument;
+			this.stats = stats;
+			this.start = start;
+			this.stream = stream;
+			if (argument instanceof CsvPublisher) {
+				// asynchronous import may outlive method execution; publisher records statistics when released
+				((CsvPublisher<?>) argument).setStats(stats, start, stream.count);
+			}
+		}
+
+		void close() {
+			Files.close(argument);
+			if (!(argument instanceof CsvPublisher)) {
+				// imported rows are recorded by argument reader itself, see MeteredReader
+				stats.end(start, 0, stream.count, false);
+			}
+		}
+	}
+
+	/** Input stream counting read bytes. */
+	private static final class CountingInputStream extends FilterInputStream {
+		long count;
+
+		CountingInputStream(InputStream stream) {
+			super(stream);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				++count;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int n = super.read(buffer, offset, length);
+			if (n > 0) {
+				count += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+}
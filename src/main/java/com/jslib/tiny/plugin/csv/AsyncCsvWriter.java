@@ -0,0 +1,112 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Date;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+import com.jslib.util.Files;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+/**
+ * Non-blocking CSV writer used by {@link CsvView} asynchronous export. Rows are encoded into buffer only when servlet
+ * output is ready so that no thread is blocked waiting for slow clients. Asynchronous context is completed and rows source
+ * is closed when all rows are written or on error.
+ * <p>
+ * Writer is also registered as asynchronous context listener so that resources are released if client stalls and context
+ * times out, or if container signals an error outside output operations; in both cases export is recorded as failed. If
+ * container completes context on its own, e.g. on client disconnect, resources are released without completing context.
+ * Write and asynchronous context callbacks can run on different container threads and are serialized on writer instance.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class AsyncCsvWriter implements WriteListener, AsyncListener {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(AsyncCsvWriter.class);
+
+	private final AsyncContext asyncContext;
+	private final ServletOutputStream outputStream;
+	private final RowsEncoder encoder;
+	private final Closeable rows;
+	private final int bufferSize;
+	private final CsvStats stats;
+	private final long start;
+	private final long timestamp;
+
+	private boolean done;
+
+	public AsyncCsvWriter(AsyncContext asyncContext, ServletOutputStream outputStream, RowsEncoder encoder, Closeable rows, int bufferSize, CsvStats stats) {
+		this.asyncContext = asyncContext;
+		this.outputStream = outputStream;
+		this.encoder = encoder;
+		this.rows = rows;
+		this.bufferSize = bufferSize;
+		this.stats = stats;
+		this.start = stats.begin();
+		this.timestamp = new Date().getTime();
+	}
+
+	@Override
+	public synchronized void onWritePossible() throws IOException {
+		while (!done && outputStream.isReady()) {
+			boolean more = encoder.encode(bufferSize);
+			encoder.writeTo(outputStream);
+			if (!more) {
+				complete(false);
+				log.info("Asynchronous CSV processing last {processing_time} msec.", new Date().getTime() - timestamp);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void onError(Throwable throwable) {
+		log.error("Asynchronous CSV export fail: {exception}", throwable);
+		complete(true);
+	}
+
+	@Override
+	public synchronized void onTimeout(AsyncEvent event) {
+		log.warn("Asynchronous CSV export timeout after {processing_time} msec. Client stalled.", new Date().getTime() - timestamp);
+		complete(true);
+	}
+
+	@Override
+	public synchronized void onError(AsyncEvent event) {
+		log.error("Asynchronous CSV export fail: {exception}", event.getThrowable());
+		complete(true);
+	}
+
+	@Override
+	public synchronized void onComplete(AsyncEvent event) {
+		if (!done) {
+			// context completed by container before all rows were written
+			done = true;
+			release(true);
+		}
+	}
+
+	@Override
+	public void onStartAsync(AsyncEvent event) {
+	}
+
+	private void complete(boolean failed) {
+		if (!done) {
+			done = true;
+			release(failed);
+			asyncContext.complete();
+		}
+	}
+
+	private void release(boolean failed) {
+		Files.close(encoder);
+		Files.close(rows);
+		stats.end(start, encoder.rows(), encoder.bytes(), failed);
+	}
+}
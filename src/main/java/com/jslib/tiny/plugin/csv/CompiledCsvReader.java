@@ -0,0 +1,142 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.jslib.lang.BugError;
+
+/**
+ * CSV reader using compiled row binder, see {@link CsvBinder}. Records are parsed by {@link CsvParser} and bound to objects
+ * directly from parser buffer.
+ * <p>
+ * If template declares header, first record is used to map columns by name, see {@link CsvBinder#project}, so that columns
+ * order from stream can differ from template and columns not declared by template are scanned without being copied. If
+ * header has no recognized column name, columns are mapped by position. Header with more cells matching the same column or
+ * header missing some, but not all, template columns is rejected and reading fails on first record.
+ * <p>
+ * Dictionary for template low cardinality columns, if any, is provided by caller and is shared by all readers of the same
+ * import, e.g. chunk readers of a parallel import, see {@link CsvDictionary}.
+ * <p>
+ * On delta import, see {@link CsvDelta}, records already imported are skipped before binding. Delta session is committed
+ * only by explicit {@link #commit()}, after controller persisted all records, and is discarded on close otherwise; reading
+ * all records does not imply that controller succeeded.
+ * 
+ * @param <T> type of decoded objects.
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class CompiledCsvReader<T> implements CsvSource<T> {
+	private final CsvBinder<T> binder;
+	private final InputStream stream;
+	private final CsvParser parser;
+
+	/** Record cells indices, by binder column index, null for positional mapping. */
+	private int[] cells;
+
+	/** Dictionary for low cardinality columns, null if template has none. */
+	private final CsvDictionary dictionary;
+
+	/** Delta import session, null if all records are imported. */
+	private final CsvDelta delta;
+	/** True if all records were read. */
+	private boolean completed;
+
+	public CompiledCsvReader(CsvBinder<T> binder, CsvDictionary dictionary, InputStream stream) {
+		this(binder, dictionary, stream, null);
+	}
+
+	public CompiledCsvReader(CsvBinder<T> binder, CsvDictionary dictionary, InputStream stream, CsvDelta delta) {
+		this.binder = binder;
+		this.stream = stream;
+		this.parser = new CsvParser(new InputStreamReader(stream, StandardCharsets.UTF_8), binder.delimiter());
+		this.dictionary = dictionary;
+		this.delta = delta;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private boolean headerLoaded = !binder.hasHeader();
+			private boolean fetched;
+			private boolean available;
+
+			@Override
+			public boolean hasNext() {
+				if (!fetched) {
+					try {
+						available = parser.next();
+						if (available && !headerLoaded) {
+							headerLoaded = true;
+							project();
+							available = parser.next();
+						}
+						while (available && delta != null && !delta.accept(parser.fingerprint())) {
+							available = parser.next();
+						}
+						completed = !available;
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					fetched = true;
+				}
+				return available;
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				fetched = false;
+				return binder.decode(parser.buffer(), parser.starts(), parser.ends(), parser.cellsCount(), cells, dictionary);
+			}
+		};
+	}
+
+	/** Map binder columns to header cells and restrict parser to mapped cells. Current parser record should be the header. */
+	private void project() {
+		cells = binder.project(parser.buffer(), parser.starts(), parser.ends(), parser.cellsCount());
+		if (cells == null) {
+			return;
+		}
+		int cellsCount = 0;
+		for (int cell : cells) {
+			cellsCount = Math.max(cellsCount, cell + 1);
+		}
+		boolean[] projection = new boolean[cellsCount];
+		for (int cell : cells) {
+			if (cell >= 0) {
+				projection[cell] = true;
+			}
+		}
+		parser.project(projection);
+	}
+
+	@Override
+	public void commit() throws IOException {
+		if (delta == null) {
+			return;
+		}
+		if (!completed) {
+			throw new BugError("Attempt to commit CSV delta import before reading all records.");
+		}
+		delta.commit();
+	}
+
+	/** Close CSV stream and discard delta session, if any and not committed. */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (delta != null) {
+				delta.close();
+			}
+		} finally {
+			stream.close();
+		}
+	}
+}
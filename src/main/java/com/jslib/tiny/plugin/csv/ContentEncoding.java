@@ -0,0 +1,128 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP content encodings supported for compressed CSV responses. Includes negotiation against <code>Accept-Encoding</code>
+ * request header and factory for compressing output streams.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+enum ContentEncoding {
+	/** GZIP file format, RFC 1952. */
+	GZIP("gzip"),
+	/** ZLIB data format, RFC 1950. */
+	DEFLATE("deflate");
+
+	private final String value;
+
+	private ContentEncoding(String value) {
+		this.value = value;
+	}
+
+	/**
+	 * Get encoding value, suitable for <code>Content-Encoding</code> response header.
+	 * 
+	 * @return encoding value.
+	 */
+	public String value() {
+		return value;
+	}
+
+	/**
+	 * Create output stream compressing data written to given target stream.
+	 * 
+	 * @param outputStream target output stream,
+	 * @param level compression level, see {@link Deflater},
+	 * @param bufferSize compressor output buffer size,
+	 * @param syncFlush if true, compressor flushes pending output on stream flush.
+	 * @return compressing output stream.
+	 * @throws IOException if compressing stream creation fails.
+	 */
+	public OutputStream wrap(OutputStream outputStream, int level, int bufferSize, boolean syncFlush) throws IOException {
+		switch (this) {
+		case GZIP:
+			return new GZIPOutputStream(outputStream, bufferSize, syncFlush) {
+				{
+					def.setLevel(level);
+				}
+			};
+
+		case DEFLATE:
+			return new DeflaterOutputStream(outputStream, new Deflater(level), bufferSize, syncFlush) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						// deflater is not the default one and is not released by super close
+						def.end();
+					}
+				}
+			};
+
+		default:
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * Select preferred content encoding accepted by client, with GZIP preferred over deflate. Returns null if client does
+	 * not accept any supported encoding or if accept encoding header is missing.
+	 * 
+	 * @param acceptEncoding value of <code>Accept-Encoding</code> request header, possible null.
+	 * @return selected content encoding or null.
+	 */
+	public static ContentEncoding negotiate(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+		// null means coding is not mentioned by header
+		Boolean gzip = null;
+		Boolean deflate = null;
+		boolean any = false;
+		for (String item : acceptEncoding.split(",")) {
+			String[] parts = item.split(";");
+			String coding = parts[0].trim().toLowerCase();
+			boolean accepted = true;
+			for (int i = 1; i < parts.length; ++i) {
+				String parameter = parts[i].trim();
+				if (parameter.startsWith("q=")) {
+					try {
+						accepted = Double.parseDouble(parameter.substring(2)) > 0;
+					} catch (NumberFormatException e) {
+						accepted = false;
+					}
+				}
+			}
+			switch (coding) {
+			case "gzip":
+			case "x-gzip":
+				gzip = accepted;
+				break;
+
+			case "deflate":
+				deflate = accepted;
+				break;
+
+			case "*":
+				any = accepted;
+				break;
+
+			default:
+			}
+		}
+		if (gzip != null ? gzip : any) {
+			return GZIP;
+		}
+		if (deflate != null ? deflate : any) {
+			return DEFLATE;
+		}
+		return null;
+	}
+}
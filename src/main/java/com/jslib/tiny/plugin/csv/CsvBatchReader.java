@@ -0,0 +1,113 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.jslib.lang.BugError;
+
+/**
+ * CSV reader argument delivering imported objects in batches, convenient for bulk persistence. Batch size is configured per
+ * descriptor, via <code>batch-size</code> attribute of the CSV template root element, with fallback to
+ * <code>batch-size</code> attribute of the <code>import</code> configuration section.
+ * <p>
+ * Batch list instance is reused: every iteration step returns the same list, cleared and refilled by the iterator
+ * <code>hasNext()</code> that precedes it; after iteration completes the list is empty. Consequently a batch is valid only
+ * till next iteration step and client code should not retain batch list reference, nor store it into collections or pass
+ * it to asynchronous processing, but copy its items if necessary. Client code may modify batch list, e.g. remove items
+ * already persisted, since it is cleared anyway on next step. Last batch may be smaller than configured batch size. This
+ * reader can be iterated only once. On delta import, controller should commit batch reader after all batches are
+ * persisted, see {@link DeltaImport}.
+ * 
+ * <pre>
+ * public void importPersons(CsvBatchReader&lt;Person&gt; batches) {
+ * 	for (List&lt;Person&gt; batch : batches) {
+ * 		dao.insertAll(batch);
+ * 	}
+ * }
+ * </pre>
+ * 
+ * @param <T> type of imported objects.
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public final class CsvBatchReader<T> implements Iterable<List<T>>, Closeable, DeltaImport {
+	private final CsvSource<T> reader;
+	private final int batchSize;
+	private final List<T> batch;
+
+	private boolean iterated;
+
+	CsvBatchReader(CsvSource<T> reader, int batchSize) {
+		this.reader = reader;
+		this.batchSize = batchSize;
+		this.batch = new ArrayList<>(batchSize);
+	}
+
+	/**
+	 * Get configured batch size.
+	 * 
+	 * @return batch size.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	@Override
+	public Iterator<List<T>> iterator() {
+		if (iterated) {
+			throw new BugError("Attempt to iterate CSV batch reader twice.");
+		}
+		iterated = true;
+		return new BatchIterator(reader.iterator());
+	}
+
+	@Override
+	public void commit() throws IOException {
+		reader.commit();
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private final class BatchIterator implements Iterator<List<T>> {
+		private final Iterator<T> objects;
+		private boolean filled;
+
+		public BatchIterator(Iterator<T> objects) {
+			this.objects = objects;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (!filled) {
+				batch.clear();
+				while (batch.size() < batchSize && objects.hasNext()) {
+					batch.add(objects.next());
+				}
+				filled = true;
+			}
+			return !batch.isEmpty();
+		}
+
+		/**
+		 * Get next batch. Returned list is the same instance on every call and its content is replaced on next
+		 * {@link #hasNext()}.
+		 */
+		@Override
+		public List<T> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			filled = false;
+			return batch;
+		}
+	}
+}
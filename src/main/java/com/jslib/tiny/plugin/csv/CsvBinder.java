@@ -0,0 +1,644 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+import com.jslib.lang.Config;
+import com.jslib.lang.ConfigException;
+
+/**
+ * Row binder compiled from CSV template. Binder uses method handles resolved once per type, instead of generic reflective
+ * field access, to read field values when encoding and to create and populate objects when decoding. Primitive fields are
+ * accessed through exact typed method handles so that values are not boxed.
+ * <p>
+ * Not all templates can be compiled; {@link #compile(Class, Config)} returns null if template uses features not supported
+ * by compiled binder, in which case reference CSV reader and writer are used. Supported templates have only direct field
+ * columns, without format, of type string, primitive or primitive wrapper, excluding floating point numbers whose text
+ * representation is formatter specific. Also type should have a no-arguments constructor.
+ * <p>
+ * Encoding follows reference writer conventions: all values are quoted, embedded quotes are doubled and records end with
+ * CRLF. Records are encoded straight to UTF-8 bytes, with separators pre-encoded and numbers formatted without
+ * intermediate strings. Decoding follows reference reader conventions: empty cells are mapped to empty string or zero, blank lines and lines
+ * starting with hash are ignored. When stream has header, columns can be mapped by name instead of position, see
+ * {@link #project(char[], int[], int[], int)}.
+ * <p>
+ * String columns marked with <code>dictionary="true"</code> attribute are low cardinality columns and are decoded through a
+ * per-import dictionary, see {@link CsvDictionary}, that returns canonical strings. Dictionary capacity is set by template
+ * <code>dictionary-size</code> attribute and defaults to {@link CsvDictionary#DEFAULT_CAPACITY}.
+ * 
+ * @param <T> bound type.
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class CsvBinder<T> {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(CsvBinder.class);
+
+	private static final byte[] RECORD_START = { '"' };
+	private static final byte[] RECORD_END = { '"', '\r', '\n' };
+	private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+	private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+
+	/**
+	 * Compile row binder for given type and template, returning null if template is not supported by compiled binder.
+	 * 
+	 * @param type bound type, as declared by template descriptor,
+	 * @param templateConfig template configuration object, possible null.
+	 * @return compiled binder or null.
+	 * @param <T> bound type.
+	 * @throws ConfigException if template has invalid binder attributes.
+	 */
+	public static <T> CsvBinder<T> compile(Class<T> type, Config templateConfig) throws ConfigException {
+		if (templateConfig == null) {
+			return null;
+		}
+		// invalid attributes are template errors, not reasons to fallback to reflective binder
+		int dictionaryCapacity = CsvDictionary.DEFAULT_CAPACITY;
+		String dictionarySize = templateConfig.getAttribute("dictionary-size");
+		if (dictionarySize != null) {
+			try {
+				dictionaryCapacity = Integer.parseInt(dictionarySize.trim());
+			} catch (NumberFormatException e) {
+				throw new ConfigException("Invalid <dictionary-size> attribute |%s|. Expected numeric value.", dictionarySize);
+			}
+			if (dictionaryCapacity <= 0) {
+				throw new ConfigException("Invalid dictionary size for CSV type |%s|. Dictionary size should be positive.", type);
+			}
+		}
+
+		try {
+			char delimiter = delimiter(templateConfig.getAttribute("delimiter"));
+			if (delimiter == 0) {
+				log.debug("Not supported delimiter for compiled binder. Use reflective binder for |{type}|.", type);
+				return null;
+			}
+
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			Constructor<T> constructor = type.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			MethodHandle factory = lookup.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+
+			List<Config> columnConfigs = templateConfig.findChildren("column");
+			Column[] columns = new Column[columnConfigs.size()];
+			boolean dictionary = false;
+			for (int i = 0; i < columns.length; ++i) {
+				Config columnConfig = columnConfigs.get(i);
+				String fieldName = columnConfig.getAttribute("field");
+				if (fieldName == null || fieldName.indexOf('.') != -1 || columnConfig.getAttribute("format") != null) {
+					log.debug("Not supported column |{field}| for compiled binder. Use reflective binder for |{type}|.", fieldName, type);
+					return null;
+				}
+				Field field = field(type, fieldName);
+				Kind kind = field != null ? Kind.of(field.getType()) : null;
+				if (kind == null) {
+					log.debug("Not supported field |{field}| for compiled binder. Use reflective binder for |{type}|.", fieldName, type);
+					return null;
+				}
+				field.setAccessible(true);
+				MethodHandle getter = lookup.unreflectGetter(field);
+				MethodHandle setter = lookup.unreflectSetter(field);
+				getter = getter.asType(MethodType.methodType(kind.handleType, Object.class));
+				setter = setter.asType(MethodType.methodType(void.class, Object.class, kind.handleType));
+				boolean columnDictionary = Boolean.parseBoolean(columnConfig.getAttribute("dictionary"));
+				if (columnDictionary && kind != Kind.STRING) {
+					log.warn("Dictionary not supported on not string field |{field}| from |{type}|. Ignore it.", fieldName, type);
+					columnDictionary = false;
+				}
+				dictionary |= columnDictionary;
+				columns[i] = new Column(fieldName, kind, field.getType(), getter, setter, columnDictionary);
+			}
+
+			boolean header = Boolean.parseBoolean(templateConfig.getAttribute("header"));
+			return new CsvBinder<>(type, factory, columns, delimiter, header, templateConfig.getAttribute("null-value"), dictionary ? dictionaryCapacity : 0);
+		} catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+			log.debug("Cannot compile binder for |{type}|: {exception}. Use reflective binder.", type, e);
+			return null;
+		}
+	}
+
+	private final Class<T> type;
+	private final MethodHandle factory;
+	private final Column[] columns;
+	private final char delimiter;
+	private final boolean header;
+	private final String nullValue;
+	/** Capacity of per-import dictionary, zero if no column uses dictionary. */
+	private final int dictionaryCapacity;
+
+	/** Pre-encoded values separator, that is, closing quote, delimiter and opening quote. */
+	private final byte[] separator;
+	/** Pre-encoded and escaped null value, null if template has no null value. */
+	private final byte[] nullValueBytes;
+	/** Pre-encoded header line, lazily captured from reference writer. */
+	private volatile byte[] headerBytes;
+
+	private CsvBinder(Class<T> type, MethodHandle factory, Column[] columns, char delimiter, boolean header, String nullValue, int dictionaryCapacity) {
+		this.type = type;
+		this.factory = factory;
+		this.columns = columns;
+		this.delimiter = delimiter;
+		this.header = header;
+		this.nullValue = nullValue;
+		this.dictionaryCapacity = dictionaryCapacity;
+		this.separator = ("\"" + delimiter + "\"").getBytes(StandardCharsets.UTF_8);
+		if (nullValue != null) {
+			Utf8Buffer buffer = new Utf8Buffer(3 * nullValue.length());
+			buffer.appendEscaped(nullValue);
+			this.nullValueBytes = buffer.toByteArray();
+		}
+		else {
+			this.nullValueBytes = null;
+		}
+	}
+
+	public Class<T> type() {
+		return type;
+	}
+
+	public char delimiter() {
+		return delimiter;
+	}
+
+	public boolean hasHeader() {
+		return header;
+	}
+
+	/**
+	 * Create dictionary for low cardinality columns, to be used for a single import, possible shared by concurrent chunk
+	 * readers. Returns null if template has no column marked as dictionary.
+	 * 
+	 * @return newly created dictionary or null.
+	 */
+	public CsvDictionary createDictionary() {
+		return dictionaryCapacity > 0 ? new CsvDictionary(dictionaryCapacity) : null;
+	}
+
+	/**
+	 * Encode row as UTF-8 CSV record, including record end, and append it to given buffer. Row can be an instance of a
+	 * binder type subclass, e.g. a proxy. Returns false if row cannot be encoded by compiled binder, that is, row is null,
+	 * is not an instance of binder type or has a null field and template does not declare null value; in this case buffer
+	 * content is not defined and caller should truncate it and fallback to reference writer.
+	 * 
+	 * @param row row object, possible null,
+	 * @param buffer target buffer.
+	 * @return true if row was encoded.
+	 */
+	public boolean encode(Object row, Utf8Buffer buffer) {
+		if (!type.isInstance(row)) {
+			return false;
+		}
+		try {
+			buffer.append(RECORD_START);
+			for (int i = 0; i < columns.length; ++i) {
+				if (i > 0) {
+					buffer.append(separator);
+				}
+				if (!columns[i].encode(row, buffer, nullValueBytes)) {
+					return false;
+				}
+			}
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+		buffer.append(RECORD_END);
+		return true;
+	}
+
+	/**
+	 * Get header line encoded as UTF-8, including line end, or null if not yet known. Header line is captured from reference
+	 * writer output, see {@link #headerBytes(byte[])}.
+	 * 
+	 * @return header line bytes, possible null.
+	 */
+	public byte[] headerBytes() {
+		return headerBytes;
+	}
+
+	public void headerBytes(byte[] headerBytes) {
+		this.headerBytes = headerBytes;
+	}
+
+	/**
+	 * Map template columns to header record cells, by name. Header cell matches a column if it equals column field name,
+	 * ignoring case and characters that are not letters or digits, so that <code>First Name</code> or
+	 * <code>first_name</code> matches <code>firstName</code> field. Header cells order can differ from columns order and
+	 * header cells not matching any column are ignored. If more header cells match the same column, for example
+	 * <code>name</code> and <code>Name</code>, header is ambiguous and is rejected.
+	 * <p>
+	 * Returns null if no header cell matches a column, in which case caller should map columns by position; this way headers
+	 * with arbitrary labels keep working as before. Otherwise every column should be matched: a header matching only part
+	 * of the columns is most likely a misspelled label and is rejected, rather than silently importing empty values.
+	 * 
+	 * @param buffer characters buffer,
+	 * @param starts header cells start offsets,
+	 * @param ends header cells end offsets,
+	 * @param cellsCount the number of header cells.
+	 * @return cells indices, by column index, or null if header has no recognized column name.
+	 * @throws IllegalArgumentException if more header cells match the same column or if header matches only part of the
+	 *         columns.
+	 */
+	public int[] project(char[] buffer, int[] starts, int[] ends, int cellsCount) {
+		int[] cells = new int[columns.length];
+		Arrays.fill(cells, -1);
+		boolean matched = false;
+		for (int cell = 0; cell < cellsCount; ++cell) {
+			String name = key(buffer, starts[cell], ends[cell]);
+			for (int i = 0; i < columns.length; ++i) {
+				if (columns[i].key.equals(name)) {
+					if (cells[i] != -1) {
+						throw new IllegalArgumentException(String.format("Ambiguous CSV header for |%s|. Cells |%d| and |%d| both match column |%s|.", type, cells[i], cell, columns[i].field));
+					}
+					cells[i] = cell;
+					matched = true;
+					break;
+				}
+			}
+		}
+		if (!matched) {
+			return null;
+		}
+		for (int i = 0; i < columns.length; ++i) {
+			if (cells[i] == -1) {
+				throw new IllegalArgumentException(String.format("Incomplete CSV header for |%s|. Column |%s| not found.", type, columns[i].field));
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * Create object from CSV record cells. Cells are ranges into a characters buffer; missing trailing cells are handled as
+	 * empty.
+	 * 
+	 * @param buffer characters buffer,
+	 * @param starts cells start offsets,
+	 * @param ends cells end offsets,
+	 * @param cellsCount the number of cells in record.
+	 * @return newly created object.
+	 * @throws IllegalArgumentException if a cell value cannot be converted to field type.
+	 */
+	public T decode(char[] buffer, int[] starts, int[] ends, int cellsCount) {
+		return decode(buffer, starts, ends, cellsCount, null, null);
+	}
+
+	/**
+	 * Create object from CSV record cells mapped to columns by given cells indices, as returned by
+	 * {@link #project(char[], int[], int[], int)}. Columns mapped to missing cells are handled as empty. Record cells not
+	 * mapped to a column are not read. Values of dictionary columns are taken from given dictionary, if not null.
+	 * 
+	 * @param buffer characters buffer,
+	 * @param starts cells start offsets,
+	 * @param ends cells end offsets,
+	 * @param cellsCount the number of cells in record,
+	 * @param cells cells indices, by column index, null for positional mapping,
+	 * @param dictionary import dictionary, see {@link #createDictionary()}, possible null.
+	 * @return newly created object.
+	 * @throws IllegalArgumentException if a cell value cannot be converted to field type.
+	 */
+	@SuppressWarnings("unchecked")
+	public T decode(char[] buffer, int[] starts, int[] ends, int cellsCount, int[] cells, CsvDictionary dictionary) {
+		try {
+			Object object = (Object) factory.invokeExact();
+			for (int i = 0; i < columns.length; ++i) {
+				int cell = cells != null ? cells[i] : i;
+				if (cell >= 0 && cell < cellsCount) {
+					columns[i].decode(object, buffer, starts[cell], ends[cell], nullValue, dictionary);
+				}
+				else {
+					columns[i].decode(object, buffer, 0, 0, nullValue, dictionary);
+				}
+			}
+			return (T) object;
+		} catch (IllegalArgumentException e) {
+			throw e;
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private static RuntimeException rethrow(Throwable t) {
+		if (t instanceof RuntimeException) {
+			return (RuntimeException) t;
+		}
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		return new IllegalStateException(t);
+	}
+
+	private static Field field(Class<?> type, String name) {
+		for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+			try {
+				Field field = clazz.getDeclaredField(name);
+				return Modifier.isStatic(field.getModifiers()) ? null : field;
+			} catch (NoSuchFieldException e) {
+				// continue with super class
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get delimiter character from template attribute value. Returns zero if delimiter is not recognized.
+	 * 
+	 * @param value delimiter attribute value, null for default comma.
+	 * @return delimiter character or zero.
+	 */
+	static char delimiter(String value) {
+		if (value == null) {
+			return ',';
+		}
+		switch (value.toLowerCase()) {
+		case "comma":
+			return ',';
+		case "semicolon":
+			return ';';
+		case "colon":
+			return ':';
+		case "tab":
+			return '\t';
+		case "space":
+			return ' ';
+		case "pipe":
+			return '|';
+		default:
+			return value.length() == 1 && value.charAt(0) != '"' ? value.charAt(0) : 0;
+		}
+	}
+
+	/**
+	 * Get column matching key from characters range: letters and digits only, lower case.
+	 * 
+	 * @param buffer characters buffer,
+	 * @param start range start offset,
+	 * @param end range end offset, exclusive.
+	 * @return matching key, possible empty.
+	 */
+	private static String key(char[] buffer, int start, int end) {
+		StringBuilder key = new StringBuilder(end - start);
+		for (int i = start; i < end; ++i) {
+			if (Character.isLetterOrDigit(buffer[i])) {
+				key.append(Character.toLowerCase(buffer[i]));
+			}
+		}
+		return key.toString();
+	}
+
+	private static boolean isNull(char[] buffer, int start, int end, String nullValue) {
+		if (nullValue == null || end - start != nullValue.length()) {
+			return false;
+		}
+		for (int i = start, j = 0; i < end; ++i, ++j) {
+			if (buffer[i] != nullValue.charAt(j)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parse decimal integer from characters range, without creating intermediate string.
+	 * 
+	 * @param buffer characters buffer,
+	 * @param start range start offset,
+	 * @param end range end offset, exclusive,
+	 * @param min minimum accepted value,
+	 * @param max maximum accepted value.
+	 * @return parsed value.
+	 * @throws NumberFormatException if characters range is not a decimal integer in accepted range.
+	 */
+	private static long parse(char[] buffer, int start, int end, long min, long max) {
+		long value;
+		int i = start;
+		boolean negative = buffer[i] == '-';
+		if (negative || buffer[i] == '+') {
+			++i;
+		}
+		if (i == end || end - i > 18) {
+			// no digits or possible long overflow; let standard parser validate
+			value = Long.parseLong(new String(buffer, start, end - start));
+		}
+		else {
+			value = 0;
+			for (; i < end; ++i) {
+				int digit = buffer[i] - '0';
+				if (digit < 0 || digit > 9) {
+					throw new NumberFormatException();
+				}
+				value = value * 10 + digit;
+			}
+			if (negative) {
+				value = -value;
+			}
+		}
+		if (value < min || value > max) {
+			throw new NumberFormatException();
+		}
+		return value;
+	}
+
+	/** Supported field kinds. Wrapper kinds are nullable and use object method handles. */
+	private enum Kind {
+		STRING(String.class), BOOLEAN(boolean.class), CHAR(char.class), BYTE(byte.class), SHORT(short.class), INT(int.class), LONG(long.class), WRAPPER(Object.class);
+
+		final Class<?> handleType;
+
+		private Kind(Class<?> handleType) {
+			this.handleType = handleType;
+		}
+
+		static Kind of(Class<?> type) {
+			if (type == String.class) {
+				return STRING;
+			}
+			if (type == boolean.class) {
+				return BOOLEAN;
+			}
+			if (type == char.class) {
+				return CHAR;
+			}
+			if (type == byte.class) {
+				return BYTE;
+			}
+			if (type == short.class) {
+				return SHORT;
+			}
+			if (type == int.class) {
+				return INT;
+			}
+			if (type == long.class) {
+				return LONG;
+			}
+			if (type == Boolean.class || type == Character.class || type == Byte.class || type == Short.class || type == Integer.class || type == Long.class) {
+				return WRAPPER;
+			}
+			return null;
+		}
+	}
+
+	/** Compiled column. */
+	private static final class Column {
+		final String field;
+		/** Header matching key, see {@link CsvBinder#key(char[], int, int)}. */
+		final String key;
+		final Kind kind;
+		final MethodHandle getter;
+		final MethodHandle setter;
+		/** Wrapper class, used only for wrapper kind. */
+		final Class<?> wrapperType;
+		/** Low cardinality string column, decoded through import dictionary. */
+		final boolean dictionary;
+
+		Column(String field, Kind kind, Class<?> fieldType, MethodHandle getter, MethodHandle setter, boolean dictionary) {
+			this.field = field;
+			this.key = key(field.toCharArray(), 0, field.length());
+			this.kind = kind;
+			this.getter = getter;
+			this.setter = setter;
+			this.wrapperType = kind == Kind.WRAPPER ? fieldType : null;
+			this.dictionary = dictionary;
+		}
+
+		boolean encode(Object row, Utf8Buffer buffer, byte[] nullValue) throws Throwable {
+			switch (kind) {
+			case STRING:
+				String string = (String) getter.invokeExact(row);
+				if (string == null) {
+					return appendNull(buffer, nullValue);
+				}
+				buffer.appendEscaped(string);
+				return true;
+
+			case BOOLEAN:
+				buffer.append((boolean) getter.invokeExact(row) ? TRUE : FALSE);
+				return true;
+
+			case CHAR:
+				buffer.appendEscaped((char) getter.invokeExact(row));
+				return true;
+
+			case BYTE:
+				buffer.append((byte) getter.invokeExact(row));
+				return true;
+
+			case SHORT:
+				buffer.append((short) getter.invokeExact(row));
+				return true;
+
+			case INT:
+				buffer.append((int) getter.invokeExact(row));
+				return true;
+
+			case LONG:
+				buffer.append((long) getter.invokeExact(row));
+				return true;
+
+			case WRAPPER:
+				Object value = (Object) getter.invokeExact(row);
+				if (value == null) {
+					return appendNull(buffer, nullValue);
+				}
+				if (value instanceof Boolean) {
+					buffer.append((Boolean) value ? TRUE : FALSE);
+				}
+				else if (value instanceof Character) {
+					buffer.appendEscaped((Character) value);
+				}
+				else {
+					buffer.append(((Number) value).longValue());
+				}
+				return true;
+
+			default:
+				throw new IllegalStateException();
+			}
+		}
+
+		private static boolean appendNull(Utf8Buffer buffer, byte[] nullValue) {
+			if (nullValue == null) {
+				return false;
+			}
+			buffer.append(nullValue);
+			return true;
+		}
+
+		void decode(Object object, char[] buffer, int start, int end, String nullValue, CsvDictionary dictionary) throws Throwable {
+			if (isNull(buffer, start, end, nullValue)) {
+				if (kind == Kind.STRING || kind == Kind.WRAPPER) {
+					setter.invoke(object, (Object) null);
+				}
+				return;
+			}
+			try {
+				switch (kind) {
+				case STRING:
+					String string = this.dictionary && dictionary != null ? dictionary.get(buffer, start, end) : new String(buffer, start, end - start);
+					setter.invokeExact(object, string);
+					break;
+
+				case BOOLEAN:
+					setter.invokeExact(object, end > start && Boolean.parseBoolean(new String(buffer, start, end - start)));
+					break;
+
+				case CHAR:
+					setter.invokeExact(object, end > start ? buffer[start] : (char) 0);
+					break;
+
+				case BYTE:
+					setter.invokeExact(object, end > start ? (byte) parse(buffer, start, end, Byte.MIN_VALUE, Byte.MAX_VALUE) : (byte) 0);
+					break;
+
+				case SHORT:
+					setter.invokeExact(object, end > start ? (short) parse(buffer, start, end, Short.MIN_VALUE, Short.MAX_VALUE) : (short) 0);
+					break;
+
+				case INT:
+					setter.invokeExact(object, end > start ? (int) parse(buffer, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE) : 0);
+					break;
+
+				case LONG:
+					setter.invokeExact(object, end > start ? parse(buffer, start, end, Long.MIN_VALUE, Long.MAX_VALUE) : 0L);
+					break;
+
+				case WRAPPER:
+					setter.invokeExact(object, end > start ? wrapper(new String(buffer, start, end - start)) : (Object) null);
+					break;
+
+				default:
+					throw new IllegalStateException();
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(String.format("Invalid CSV value |%s| for field |%s|.", new String(buffer, start, end - start), field));
+			}
+		}
+
+		private Object wrapper(String value) {
+			if (wrapperType == Boolean.class) {
+				return Boolean.valueOf(value);
+			}
+			if (wrapperType == Character.class) {
+				return value.charAt(0);
+			}
+			if (wrapperType == Byte.class) {
+				return Byte.valueOf(value);
+			}
+			if (wrapperType == Short.class) {
+				return Short.valueOf(value);
+			}
+			if (wrapperType == Integer.class) {
+				return Integer.valueOf(value);
+			}
+			return Long.valueOf(value);
+		}
+	}
+}
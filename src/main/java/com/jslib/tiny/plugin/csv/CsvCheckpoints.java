@@ -0,0 +1,113 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rows to bytes offsets checkpoints of resumable exports, see {@link CsvView}. Exports are identified by response entity
+ * tag so that checkpoints recorded by an export are used only to resume the same template and model version. Checkpoints
+ * are recorded while export progresses, every configured number of rows, so that they survive export failure; response
+ * length is known only after an export completes.
+ * <p>
+ * Process wide registry keeps checkpoints of a bounded number of exports, evicting least recently used. Registry and
+ * checkpoints are thread safe.
+ * <p>
+ * Checkpoints live only in process memory: they are lost on restart and on eviction and are not shared by cluster nodes.
+ * This affects only resume performance and range support, not response content; without checkpoints a resumed export
+ * is rendered from first row and range requests are answered with the whole response, see {@link CsvView}.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class CsvCheckpoints {
+	/** Maximum number of exports with recorded checkpoints. */
+	private static final int MAX_EXPORTS = 1024;
+
+	/** Process wide checkpoints registry. */
+	private static final CsvCheckpoints instance = new CsvCheckpoints();
+
+	public static CsvCheckpoints instance() {
+		return instance;
+	}
+
+	private final Map<String, Checkpoints> exports = new LinkedHashMap<String, Checkpoints>(16, 0.75F, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Checkpoints> eldest) {
+			return size() > MAX_EXPORTS;
+		}
+	};
+
+	private CsvCheckpoints() {
+	}
+
+	/**
+	 * Get checkpoints for export with given entity tag, creating them if missing.
+	 *
+	 * @param etag export entity tag.
+	 * @return export checkpoints.
+	 */
+	public synchronized Checkpoints get(String etag) {
+		return exports.computeIfAbsent(etag, key -> new Checkpoints());
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Checkpoints of one export, ordered by row index. First checkpoint is always the body start. */
+	static final class Checkpoints {
+		private long[] rows = new long[16];
+		private long[] offsets = new long[16];
+		private int count = 1;
+		/** Response body length, negative if not known. */
+		private long length = -1;
+
+		/**
+		 * Record checkpoint: byte offset where given row starts. Checkpoints not beyond last recorded one are ignored, as
+		 * recorded by a concurrent or resumed export of the same response.
+		 *
+		 * @param row row index,
+		 * @param offset row start offset into response body.
+		 */
+		public synchronized void record(long row, long offset) {
+			if (row <= rows[count - 1]) {
+				return;
+			}
+			if (count == rows.length) {
+				rows = Arrays.copyOf(rows, 2 * count);
+				offsets = Arrays.copyOf(offsets, 2 * count);
+			}
+			rows[count] = row;
+			offsets[count] = offset;
+			++count;
+		}
+
+		public synchronized void complete(long length) {
+			this.length = length;
+		}
+
+		/**
+		 * Get response body length or negative value if no export completed.
+		 *
+		 * @return response length, possible negative.
+		 */
+		public synchronized long length() {
+			return length;
+		}
+
+		/**
+		 * Get the last checkpoint at or before given byte offset.
+		 *
+		 * @param offset byte offset into response body.
+		 * @return checkpoint as array with row index and byte offset.
+		 */
+		public synchronized long[] floor(long offset) {
+			int index = Arrays.binarySearch(offsets, 0, count, offset);
+			if (index < 0) {
+				index = -index - 2;
+			}
+			return new long[] { rows[index], offsets[index] };
+		}
+	}
+}
@@ -1,13 +1,20 @@
 package com.jslib.tiny.plugin.csv;
 
-import java.io.FileNotFoundException;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 import com.jslib.api.csv.CsvDescriptor;
 import com.jslib.api.csv.CsvFactory;
 import com.jslib.api.log.Log;
 import com.jslib.api.log.LogFactory;
+import com.jslib.lang.BugError;
 import com.jslib.lang.Config;
 import com.jslib.lang.ConfigBuilder;
 import com.jslib.lang.ConfigException;
@@ -15,20 +22,75 @@ import com.jslib.util.Classes;
 import com.jslib.util.I18nFile;
 import com.jslib.util.I18nRepository;
 
-public class CsvConfig {
+/**
+ * CSV plugin configuration: templates repository, import and metrics settings and resources shared by all requests. Plugin
+ * configuration is closed on application shutdown, see {@link #close()}.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public class CsvConfig implements Closeable {
 	private static final Log log = LogFactory.getLog(CsvConfig.class);
 
-	private final Map<Class<?>, CsvDescriptor<?>> descriptors = new HashMap<>();
+	/** Default chunk size, in bytes, for parallel import. */
+	private static final long DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+	/** Default objects count per batch for batch import. */
+	private static final int DEFAULT_BATCH_SIZE = 1000;
 
-	private final CsvFactory csvFactory;
+	/** Templates registry, mapped by descriptor type. Templates are indexed on configuration and parsed on first request. */
+	private final CsvRegistry registry;
+
+	private int importParallelism = Runtime.getRuntime().availableProcessors();
+	private long importChunkSize = DEFAULT_CHUNK_SIZE;
+	private boolean importOrdered = true;
+	private int importBatchSize = DEFAULT_BATCH_SIZE;
+	private File importSpoolDir;
+	private File importDeltaDir = new File(System.getProperty("java.io.tmpdir"), "csv-delta");
+
+	private ExecutorService importExecutor;
+
+	/** True if this configuration registered templates MBean and should unregister it on close. */
+	private boolean templatesMBean;
+
+	/** JVM shutdown hook closing this configuration, if container does not close it, null till configured. */
+	private Thread shutdownHook;
 
 	public CsvConfig() {
 		log.trace("CsvConfigImpl()");
-		csvFactory = Classes.loadService(CsvFactory.class);
+		registry = new CsvRegistry(Classes.loadService(CsvFactory.class));
 	}
 
 	public void config(Config config) throws Exception {
 		log.trace("config(Config)");
+		// import section is validated first so that invalid configuration is rejected before templates watcher, MBean and
+		// shutdown hook are installed
+		int parallelism = importParallelism;
+		long chunkSize = importChunkSize;
+		int batchSize = importBatchSize;
+		for (Config importSection : config.findChildren("import")) {
+			parallelism = (int) getAttribute(importSection, "parallelism", parallelism);
+			chunkSize = getAttribute(importSection, "chunk-size", chunkSize);
+			batchSize = (int) getAttribute(importSection, "batch-size", batchSize);
+			String ordered = importSection.getAttribute("ordered");
+			if (ordered != null) {
+				importOrdered = Boolean.parseBoolean(ordered);
+			}
+			String spoolDir = importSection.getAttribute("spool-dir");
+			if (spoolDir != null) {
+				importSpoolDir = new File(spoolDir);
+			}
+			String deltaDir = importSection.getAttribute("delta-dir");
+			if (deltaDir != null) {
+				importDeltaDir = new File(deltaDir);
+			}
+		}
+		if (parallelism <= 0 || chunkSize <= 0 || batchSize <= 0) {
+			throw new ConfigException("Invalid import configuration. Parallelism, chunk size and batch size should be positive.");
+		}
+		importParallelism = parallelism;
+		importChunkSize = chunkSize;
+		importBatchSize = batchSize;
+
 		for (Config repositorySection : config.findChildren("repository")) {
 			// load repository directory and files pattern and create I18N repository instance
 
@@ -42,23 +104,226 @@ public class CsvConfig {
 				throw new ConfigException("Invalid views repository configuration. Missing <files-pattern> attribute.");
 			}
 
-			ConfigBuilder builder = new I18nRepository.ConfigBuilder(repositoryDir, filesPattern);
-			Iterable<I18nFile> repository = new I18nRepository(builder.build());
+			// templates are only indexed here; descriptors are parsed on first request
+			// if repository index snapshot is configured and valid, repository is not walked and templates are not read
 
-			for (I18nFile template : repository) {
-				try {
-					builder = new ConfigBuilder(template.getFile());
-				} catch (FileNotFoundException e) {	
-					throw new ConfigException(e);
+			String indexPath = repositorySection.getAttribute("index");
+			File indexFile = indexPath != null ? new File(indexPath) : null;
+			List<CsvIndex.Entry> snapshot = indexFile != null ? CsvIndex.load(indexFile, repositoryDir, filesPattern) : null;
+			boolean snapshotChanged = indexFile != null && snapshot == null;
+
+			Set<File> directories = new HashSet<>();
+			directories.add(new File(repositoryDir).getAbsoluteFile());
+			List<CsvIndex.Entry> entries = new ArrayList<>();
+			if (snapshot != null) {
+				for (CsvIndex.Entry entry : snapshot) {
+					if (entry.isStale()) {
+						log.debug("Stale CSV index entry for template |{template_file}|.", entry.file);
+						entry = index(entry.file);
+						snapshotChanged = true;
+					}
+					else {
+						registry.index(entry.file, entry.type);
+					}
+					entries.add(entry);
+					directories.add(entry.file.getParentFile());
+				}
+			}
+			else {
+				ConfigBuilder builder = new I18nRepository.ConfigBuilder(repositoryDir, filesPattern);
+				for (I18nFile template : new I18nRepository(builder.build())) {
+					CsvIndex.Entry entry = index(template.getFile());
+					entries.add(entry);
+					directories.add(entry.file.getParentFile());
 				}
-				CsvDescriptor<?> descriptor = csvFactory.getDescriptor(builder.build());
-				descriptors.put(descriptor.type(), descriptor);
+			}
+			if (snapshotChanged) {
+				CsvIndex.save(indexFile, repositoryDir, filesPattern, directories, entries);
+			}
+
+			// optional fail fast: parse all templates now instead of on first request
+			if (Boolean.parseBoolean(repositorySection.getAttribute("validate"))) {
+				registry.validate();
+			}
+
+			if (Boolean.parseBoolean(repositorySection.getAttribute("watch"))) {
+				for (File directory : directories) {
+					registry.watch(directory, filesPattern);
+				}
+			}
+		}
+
+		for (Config metricsSection : config.findChildren("metrics")) {
+			long rowSampling = getAttribute(metricsSection, "row-sampling", 0);
+			if (rowSampling < 0 || rowSampling > Integer.MAX_VALUE) {
+				throw new ConfigException("Invalid metrics configuration. Row sampling should be positive or zero, to disable it.");
+			}
+			CsvMetrics.setRowSampling((int) rowSampling);
+		}
+		for (Config cacheSection : config.findChildren("cache")) {
+			String directory = cacheSection.getAttribute("directory");
+			long maxSize = getAttribute(cacheSection, "max-size", 0);
+			if (maxSize <= 0) {
+				throw new ConfigException("Invalid cache configuration. Max size should be positive.");
+			}
+			CsvResponseCache.instance().configure(directory != null ? new File(directory) : null, maxSize);
+		}
+		synchronized (this) {
+			// configuration can be invoked more than once; templates MBean is registered once per application
+			if (!templatesMBean) {
+				templatesMBean = CsvMetrics.registerSingleton("Templates", registry, CsvTemplatesMBean.class);
+			}
+			if (shutdownHook == null) {
+				shutdownHook = new Thread(this::close, "csv-config-shutdown");
+				Runtime.getRuntime().addShutdownHook(shutdownHook);
 			}
 		}
 	}
 
+	/**
+	 * Release plugin resources on application shutdown: stop templates watcher thread and parallel import executor and
+	 * unregister templates MBean, if registered by this configuration. If not closed by container, configuration is closed
+	 * by a JVM shutdown hook. It is safe to close configuration more than once.
+	 */
+	@Override
+	public void close() {
+		log.trace("close()");
+		Thread shutdownHook;
+		ExecutorService importExecutor;
+		boolean templatesMBean;
+		synchronized (this) {
+			templatesMBean = this.templatesMBean;
+			this.templatesMBean = false;
+			shutdownHook = this.shutdownHook;
+			this.shutdownHook = null;
+			importExecutor = this.importExecutor;
+			this.importExecutor = null;
+		}
+		if (shutdownHook != null && shutdownHook != Thread.currentThread()) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException e) {
+				// JVM shutdown is in progress
+			}
+		}
+		try {
+			registry.close();
+		} catch (IOException e) {
+			log.error("Fail to close CSV templates registry: {exception}", e);
+		}
+		if (importExecutor != null) {
+			importExecutor.shutdown();
+		}
+		if (templatesMBean) {
+			CsvMetrics.unregister("Templates");
+		}
+	}
+
+	private CsvIndex.Entry index(File templateFile) throws ConfigException {
+		long lastModified = templateFile.lastModified();
+		String type = registry.index(templateFile);
+		return new CsvIndex.Entry(templateFile, lastModified, type);
+	}
+
+	/**
+	 * Get descriptor for given type, parsing its template on first request.
+	 * 
+	 * @param type descriptor type.
+	 * @return CSV descriptor or null if there is no template for requested type.
+	 * @param <T> descriptor type.
+	 * @throws BugError if template for requested type is not valid.
+	 */
 	@SuppressWarnings("unchecked")
 	public <T> CsvDescriptor<T> getDescriptor(Class<T> type) {
-		return (CsvDescriptor<T>) descriptors.get(type);
+		CsvDescriptorCache.Template template = registry.getTemplate(type);
+		return template != null ? (CsvDescriptor<T>) template.descriptor : null;
+	}
+
+	/**
+	 * Get configuration object of the template from which descriptor for given type was loaded.
+	 * 
+	 * @param type descriptor type.
+	 * @return template configuration object or null if there is no template for requested type.
+	 */
+	Config getTemplateConfig(Class<?> type) {
+		CsvDescriptorCache.Template template = registry.getTemplate(type);
+		return template != null ? template.config : null;
+	}
+
+	/**
+	 * Get row binder compiled from template of given type.
+	 * 
+	 * @param type descriptor type.
+	 * @return compiled row binder or null if template cannot be compiled or there is no template for requested type.
+	 * @param <T> descriptor type.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> CsvBinder<T> getBinder(Class<T> type) {
+		CsvDescriptorCache.Template template = registry.getTemplate(type);
+		return template != null ? (CsvBinder<T>) template.binder : null;
+	}
+
+	public int getImportParallelism() {
+		return importParallelism;
+	}
+
+	public long getImportChunkSize() {
+		return importChunkSize;
+	}
+
+	public boolean isImportOrdered() {
+		return importOrdered;
+	}
+
+	/**
+	 * Get batch size for batch import of given type. Returns batch size declared by type template, if any, otherwise import
+	 * default batch size.
+	 * 
+	 * @param type imported objects type.
+	 * @return batch size, always positive.
+	 */
+	public int getBatchSize(Class<?> type) {
+		Integer batchSize = registry.getBatchSize(type);
+		return batchSize != null ? batchSize : importBatchSize;
+	}
+
+	public File getImportSpoolDir() {
+		return importSpoolDir;
+	}
+
+	/**
+	 * Get directory for delta import fingerprints, see {@link CsvDelta}. Fingerprints should survive restarts so production
+	 * configuration should declare <code>delta-dir</code> attribute of <code>import</code> section; default is a
+	 * subdirectory of system temporary directory.
+	 * 
+	 * @return delta import directory.
+	 */
+	public File getImportDeltaDir() {
+		return importDeltaDir;
+	}
+
+	/**
+	 * Get executor for parallel import workers. Executor is a fork-join pool with configured parallelism and is created on
+	 * first use.
+	 * 
+	 * @return parallel import executor.
+	 */
+	public synchronized ExecutorService getImportExecutor() {
+		if (importExecutor == null) {
+			importExecutor = new ForkJoinPool(importParallelism);
+		}
+		return importExecutor;
+	}
+
+	private static long getAttribute(Config section, String name, long defaultValue) throws ConfigException {
+		String value = section.getAttribute(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			throw new ConfigException("Invalid <%s> attribute |%s|. Expected numeric value.", name, value);
+		}
 	}
 }
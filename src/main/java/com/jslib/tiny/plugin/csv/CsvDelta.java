@@ -0,0 +1,140 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+
+/**
+ * Delta import session. Every imported record fingerprint is checked against fingerprints of previous import of the same
+ * type; records already imported are skipped and only new or changed records are bound and delivered to application.
+ * <p>
+ * Fingerprints of all records from current import, skipped or not, are collected into next generation fingerprints file,
+ * that replaces previous one on {@link #commit()}. Session should be committed only if import completes, that is, all
+ * records were delivered and persisted by controller, see {@link DeltaImport}; otherwise it is discarded and next import
+ * is compared against the same previous fingerprints.
+ * This way rows removed from partner files do not accumulate and fingerprints file size follows imported file size.
+ * <p>
+ * Fingerprints are kept per descriptor type in delta directory, see {@link CsvConfig#getImportDeltaDir()}, in memory
+ * mapped files, see {@link CsvFingerprints}. If concurrent imports of the same type are committed, the last one wins.
+ * <p>
+ * Next generation is created with room for previous import records, so that imports of similar size do not grow it.
+ * Fingerprints count is limited to {@link CsvFingerprints#MAX_SIZE}; an import with more distinct records fails when the
+ * table is full, after records already delivered, and is not committed. Record count is not known before parsing, and
+ * request content length bounds it only from above, so the limit cannot be checked before import starts.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class CsvDelta implements Closeable {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(CsvDelta.class);
+
+	/**
+	 * Open delta import session for given type.
+	 *
+	 * @param deltaDir fingerprints directory, created if missing,
+	 * @param type imported objects type.
+	 * @return delta import session.
+	 * @throws IOException if fingerprints files opening fails.
+	 */
+	public static CsvDelta open(File deltaDir, Class<?> type) throws IOException {
+		if (!deltaDir.exists() && !deltaDir.mkdirs() && !deltaDir.exists()) {
+			throw new IOException("Cannot create CSV delta directory " + deltaDir);
+		}
+		File file = new File(deltaDir, type.getName() + ".fp");
+		CsvFingerprints previous = CsvFingerprints.open(file);
+		File nextFile = null;
+		try {
+			// next generation is sized from previous one to avoid growing it on imports of similar size
+			nextFile = File.createTempFile(type.getName(), ".fp", deltaDir);
+			CsvFingerprints next = CsvFingerprints.create(nextFile, previous != null ? previous.size() : 0);
+			return new CsvDelta(type, file, previous, next);
+		} catch (IOException e) {
+			if (previous != null) {
+				previous.close();
+			}
+			if (nextFile != null) {
+				nextFile.delete();
+			}
+			throw new IOException(String.format("Cannot open CSV delta import of |%s|: %s", type.getName(), e.getMessage()), e);
+		}
+	}
+
+	private final Class<?> type;
+	private final File file;
+	private final CsvFingerprints previous;
+	private final CsvFingerprints next;
+
+	private long records;
+	private long changedRecords;
+	private boolean closed;
+
+	private CsvDelta(Class<?> type, File file, CsvFingerprints previous, CsvFingerprints next) {
+		this.type = type;
+		this.file = file;
+		this.previous = previous;
+		this.next = next;
+	}
+
+	/**
+	 * Record fingerprint and test if its record is new or changed since previous import. Duplicated records from the same
+	 * import are delivered only once.
+	 *
+	 * @param fingerprint record fingerprint.
+	 * @return true if record should be delivered.
+	 * @throws IOException if fingerprints file growing fails.
+	 */
+	public boolean accept(long fingerprint) throws IOException {
+		++records;
+		if (!next.add(fingerprint)) {
+			return false;
+		}
+		if (previous != null && previous.contains(fingerprint)) {
+			return false;
+		}
+		++changedRecords;
+		return true;
+	}
+
+	/**
+	 * Replace previous fingerprints with fingerprints of this import and close session.
+	 *
+	 * @throws IOException if fingerprints file replacing fails.
+	 */
+	public void commit() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		next.force();
+		File nextFile = next.file();
+		next.close();
+		if (previous != null) {
+			previous.close();
+		}
+		Files.move(nextFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		log.debug("Delta import of |{type}|: |{changed_records}| of |{records}| records new or changed.", type, changedRecords, records);
+	}
+
+	/** Discard fingerprints of this import, if not committed. */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		File nextFile = next.file();
+		next.close();
+		if (previous != null) {
+			previous.close();
+		}
+		if (!nextFile.delete()) {
+			log.warn("Fail to delete CSV delta fingerprints file |{file}|.", nextFile);
+		}
+	}
+}
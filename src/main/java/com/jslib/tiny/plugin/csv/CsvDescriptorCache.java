@@ -0,0 +1,169 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jslib.api.csv.CsvDescriptor;
+import com.jslib.api.csv.CsvFactory;
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+import com.jslib.lang.Config;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.lang.ConfigException;
+import com.jslib.util.Classes;
+
+/**
+ * Shared cache for CSV descriptors compiled from template files. Descriptors are keyed by template file absolute path and
+ * are reloaded when template file modification time changes. Cache is populated by {@link CsvConfig} with descriptors
+ * loaded from configured repositories and lazily by {@link CsvView} for templates not already known.
+ * <p>
+ * Cache is thread safe and keeps hit and miss counters, useful for monitoring.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public final class CsvDescriptorCache {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(CsvDescriptorCache.class);
+
+	/** Process wide cache instance. */
+	private static final CsvDescriptorCache instance = new CsvDescriptorCache();
+
+	/**
+	 * Get process wide CSV descriptors cache.
+	 *
+	 * @return descriptors cache instance.
+	 */
+	public static CsvDescriptorCache instance() {
+		return instance;
+	}
+
+	private final ConcurrentMap<File, Template> entries = new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	private final CsvFactory csvFactory;
+
+	private CsvDescriptorCache() {
+		log.trace("CsvDescriptorCache()");
+		csvFactory = Classes.loadService(CsvFactory.class);
+	}
+
+	/**
+	 * Get descriptor for given template file, loading it if not already cached or if template file was changed since
+	 * descriptor was cached.
+	 *
+	 * @param templateFile template file.
+	 * @return CSV descriptor.
+	 * @throws FileNotFoundException if template file does not exist.
+	 * @throws ConfigException if template file is not a valid CSV descriptor.
+	 */
+	public CsvDescriptor<?> getDescriptor(File templateFile) throws FileNotFoundException, ConfigException {
+		return getTemplate(templateFile).descriptor;
+	}
+
+	/**
+	 * Get cached template for given template file, loading it if not cached or changed. Template keeps both descriptor and
+	 * template configuration object, the latter used for template attributes not handled by descriptor itself.
+	 *
+	 * @param templateFile template file.
+	 * @return cached template.
+	 * @throws FileNotFoundException if template file does not exist.
+	 * @throws ConfigException if template file is not a valid CSV descriptor.
+	 */
+	Template getTemplate(File templateFile) throws FileNotFoundException, ConfigException {
+		File key = templateFile.getAbsoluteFile();
+		long lastModified = key.lastModified();
+
+		Template entry = entries.get(key);
+		if (entry != null && entry.lastModified == lastModified) {
+			hits.incrementAndGet();
+			return entry;
+		}
+
+		misses.incrementAndGet();
+		if (entry != null) {
+			log.debug("Reload changed CSV template |{template_file}|.", key);
+		}
+		ConfigBuilder builder = new ConfigBuilder(key);
+		Config config = builder.build();
+		entry = new Template(csvFactory.getDescriptor(config), config, lastModified);
+		entries.put(key, entry);
+		return entry;
+	}
+
+	/**
+	 * Store descriptor already loaded from given template file. Caller should take template file modification time before
+	 * loading the descriptor so that template changes occurring while loading are detected on next retrieval.
+	 *
+	 * @param templateFile template file,
+	 * @param lastModified template file modification time, at descriptor loading,
+	 * @param descriptor descriptor loaded from template file,
+	 * @param config template configuration object.
+	 * @return cached template.
+	 * @throws ConfigException if template has invalid binder attributes.
+	 */
+	Template put(File templateFile, long lastModified, CsvDescriptor<?> descriptor, Config config) throws ConfigException {
+		Template template = new Template(descriptor, config, lastModified);
+		entries.put(templateFile.getAbsoluteFile(), template);
+		return template;
+	}
+
+	/** Remove all cached descriptors and reset counters. */
+	public void clear() {
+		entries.clear();
+		hits.set(0);
+		misses.set(0);
+	}
+
+	/**
+	 * Get the number of cached descriptors.
+	 *
+	 * @return cached descriptors count.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Get the number of descriptor retrievals served from cache.
+	 *
+	 * @return cache hits count.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Get the number of descriptor retrievals that required template file loading.
+	 *
+	 * @return cache misses count.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Cached template: descriptor and configuration object loaded from template file and row binder compiled from template,
+	 * null if template cannot be compiled.
+	 */
+	static final class Template {
+		final CsvDescriptor<?> descriptor;
+		final Config config;
+		final CsvBinder<?> binder;
+		final long lastModified;
+
+		Template(CsvDescriptor<?> descriptor, Config config, long lastModified) throws ConfigException {
+			this.descriptor = descriptor;
+			this.config = config;
+			this.binder = CsvBinder.compile(descriptor.type(), config);
+			this.lastModified = lastModified;
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded strings dictionary used to deduplicate values of low cardinality columns, like country, status or currency. A
+ * dictionary is created per import and returns canonical string instances for cells with the same characters, so that rows
+ * buffered by controllers share a single string per distinct value.
+ * <p>
+ * Lookup hashes and compares cell characters straight from parser buffer; a string is created only the first time a value
+ * is seen. Dictionary stops growing when reaching its capacity; after that, values not already in dictionary are returned
+ * as new strings, so that a column wrongly marked as low cardinality does not make dictionary to grow unbounded. Values are
+ * never evicted: values stored before reaching capacity stay canonical till import end.
+ * <p>
+ * Dictionary is thread safe: the same instance is shared by all chunk readers of a parallel import, see
+ * {@link ParallelCsvReader}. Values are split on a fixed number of shards, by hash, and every shard is guarded by its own
+ * lock, so that concurrent readers contend only when looking up values from the same shard. Capacity is global, not per
+ * shard.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class CsvDictionary {
+	/** Default maximum number of distinct values stored by a dictionary. */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/** Number of shards, should be kept in sync with shard selection bits, see {@link #get(char[], int, int)}. */
+	private static final int SHARDS = 16;
+
+	private final int capacity;
+	private final Shard[] shards;
+	private final AtomicInteger size = new AtomicInteger();
+
+	public CsvDictionary(int capacity) {
+		this.capacity = capacity;
+		this.shards = new Shard[SHARDS];
+		for (int i = 0; i < SHARDS; ++i) {
+			shards[i] = new Shard();
+		}
+	}
+
+	/**
+	 * Get canonical string for given characters range, creating and storing it if not already in dictionary and there is
+	 * room for it.
+	 *
+	 * @param buffer characters buffer,
+	 * @param start range start offset,
+	 * @param end range end offset, exclusive.
+	 * @return string with range characters.
+	 */
+	public String get(char[] buffer, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; ++i) {
+			hash = 31 * hash + buffer[i];
+		}
+		int mixed = mix(hash);
+		// shard table index uses hash low bits so shard is selected by high bits of hash scrambled by golden ratio multiply
+		return shards[(mixed * 0x9E3779B9) >>> 28].get(buffer, start, end, hash, mixed);
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Open addressing hash table, with power of two length and load factor at most one half. */
+	private final class Shard {
+		private String[] values = new String[16];
+		private int[] hashes = new int[16];
+		private int count;
+
+		synchronized String get(char[] buffer, int start, int end, int hash, int mixed) {
+			int mask = values.length - 1;
+			int index = mixed & mask;
+			for (String value = values[index]; value != null; value = values[index]) {
+				if (hashes[index] == hash && matches(value, buffer, start, end)) {
+					return value;
+				}
+				index = (index + 1) & mask;
+			}
+
+			String value = new String(buffer, start, end - start);
+			if (reserve()) {
+				values[index] = value;
+				hashes[index] = hash;
+				if (++count > values.length / 2) {
+					rehash();
+				}
+			}
+			return value;
+		}
+
+		private void rehash() {
+			String[] oldValues = values;
+			int[] oldHashes = hashes;
+			values = new String[2 * oldValues.length];
+			hashes = new int[2 * oldHashes.length];
+
+			int mask = values.length - 1;
+			for (int i = 0; i < oldValues.length; ++i) {
+				if (oldValues[i] != null) {
+					int index = mix(oldHashes[i]) & mask;
+					while (values[index] != null) {
+						index = (index + 1) & mask;
+					}
+					values[index] = oldValues[i];
+					hashes[index] = oldHashes[i];
+				}
+			}
+		}
+	}
+
+	/** Reserve room for a new value, returning false if dictionary capacity is reached. */
+	private boolean reserve() {
+		for (;;) {
+			int current = size.get();
+			if (current >= capacity) {
+				return false;
+			}
+			if (size.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/** Spread hash high bits to low bits since table index uses only low bits. */
+	private static int mix(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean matches(String value, char[] buffer, int start, int end) {
+		if (value.length() != end - start) {
+			return false;
+		}
+		for (int i = start, j = 0; i < end; ++i, ++j) {
+			if (buffer[i] != value.charAt(j)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -1,8 +1,8 @@
 package com.jslib.tiny.plugin.csv;
 
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Flow;
 
 import com.jslib.api.csv.CsvReader;
 import com.jslib.container.http.ContentType;
@@ -12,22 +12,41 @@ import com.jslib.container.http.encoder.HttpEncoderProvider;
 import com.jslib.container.http.encoder.ValueWriter;
 
 /**
- * Server HTTP encoder provider for CSV types. Current implementation provides only arguments reader for {@link CsvReader}
- * transported as <code>multipart/form-data</code>.
+ * Server HTTP encoder provider for CSV types. Current implementation provides arguments reader for {@link CsvReader}
+ * transported as <code>multipart/form-data</code> or as raw <code>text/csv</code> and value writer for <code>text/csv</code> responses.
  * 
  * @author Iulian Rotaru
  * @version draft
  */
 public class CsvEncoderProvider implements HttpEncoderProvider {
+	/** Content type for CSV documents. */
+	static final ContentType TEXT_CSV = ContentType.valueOf("text/csv");
+
 	/** Registered CSV arguments readers. */
 	private static final Map<EncoderKey, ArgumentsReader> READERS = new HashMap<>();
 	static {
 		READERS.put(new EncoderKey(ContentType.MULTIPART_FORM, CsvReader.class), new CsvMultipartFormArgumentsReader());
+		READERS.put(new EncoderKey(TEXT_CSV, CsvReader.class), new CsvStreamArgumentsReader());
+		READERS.put(new EncoderKey(ContentType.MULTIPART_FORM, ParallelCsvReader.class), new CsvMultipartFormArgumentsReader());
+		READERS.put(new EncoderKey(TEXT_CSV, ParallelCsvReader.class), new CsvStreamArgumentsReader());
+		READERS.put(new EncoderKey(ContentType.MULTIPART_FORM, CsvBatchReader.class), new CsvMultipartFormArgumentsReader());
+		READERS.put(new EncoderKey(TEXT_CSV, CsvBatchReader.class), new CsvStreamArgumentsReader());
+		READERS.put(new EncoderKey(ContentType.MULTIPART_FORM, Flow.Publisher.class), new CsvMultipartFormArgumentsReader());
+		READERS.put(new EncoderKey(TEXT_CSV, Flow.Publisher.class), new CsvStreamArgumentsReader());
+	}
+
+	/** Registered CSV value writers. */
+	private static final Map<ContentType, ValueWriter> WRITERS = new HashMap<>();
+	static {
+		WRITERS.put(TEXT_CSV, new CsvValueWriter());
 	}
 
 	/**
 	 * Get HTTP request {@link ArgumentsReader} for CSV types. Current implementation uses
-	 * {@link CsvMultipartFormArgumentsReader} to read {@link CsvReader} stream encoded as <code>multipart/form-data</code>.
+	 * {@link CsvMultipartFormArgumentsReader} to read {@link CsvReader} stream encoded as <code>multipart/form-data</code> and
+	 * {@link CsvStreamArgumentsReader} for raw, possible compressed, <code>text/csv</code> request body. Both readers also
+	 * support {@link ParallelCsvReader} for parallel import, {@link CsvBatchReader} for batch import and
+	 * {@link Flow.Publisher} for asynchronous import.
 	 * 
 	 * @return CSV arguments readers.
 	 */
@@ -37,13 +56,13 @@ public class CsvEncoderProvider implements HttpEncoderProvider {
 	}
 
 	/**
-	 * Get HTTP response {@link ValueWriter} for CSV types. Current implementation does not support CSV value writers and always
-	 * returns empty map.
+	 * Get HTTP response {@link ValueWriter} for CSV types. Current implementation uses {@link CsvValueWriter} to write lists,
+	 * iterables and streams as <code>text/csv</code>.
 	 * 
-	 * @return CSV value writers, always empty.
+	 * @return CSV value writers.
 	 */
 	@Override
 	public Map<ContentType, ValueWriter> getValueWriters() {
-		return Collections.emptyMap();
+		return WRITERS;
 	}
 }
@@ -0,0 +1,274 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+
+/**
+ * Memory mapped hash set of 64 bits records fingerprints. Set is an open addressing table of longs stored in a file, so that
+ * fingerprints are kept off heap and survive restarts; zero marks an empty slot and zero fingerprint is stored as one.
+ * <p>
+ * File layout is a header with magic number, fingerprints count and table capacity, followed by table slots. Table capacity
+ * is a power of two and load factor is kept under one half; when exceeded, table is copied to a new file with double
+ * capacity that replaces current one. Mappings are released before files are replaced, see {@link #unmap(ByteBuffer)}, so
+ * that a mapped file is never renamed or overwritten.
+ * <p>
+ * Table fits a single mapped buffer so set holds at most {@link #MAX_SIZE} fingerprints. Creating a set for more expected
+ * fingerprints fails and adding fingerprints to a full set fails, see {@link CsvDelta} for import size limit.
+ * <p>
+ * Set is not thread safe.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class CsvFingerprints implements Closeable {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(CsvFingerprints.class);
+
+	private static final long MAGIC = 0x4353562D46505331L;
+	/** Header size, in longs: magic, size and capacity. */
+	private static final int HEADER = 3;
+	private static final int MIN_CAPACITY = 1024;
+	/** Maximum capacity so that table file fits a single mapped buffer. */
+	private static final int MAX_CAPACITY = 1 << 27;
+	/** Maximum fingerprints count, limited by maximum capacity and load factor. */
+	public static final long MAX_SIZE = MAX_CAPACITY / 2;
+
+	/** JDK internal unsafe instance and its cleaner method, both null if not available. */
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			log.debug("Mapped buffers unmapping not supported: {exception}", e);
+			unsafe = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	/**
+	 * Open existing fingerprints file, returning null if file is missing or is not a valid fingerprints file.
+	 *
+	 * @param file fingerprints file.
+	 * @return fingerprints set or null.
+	 * @throws IOException if file mapping fails.
+	 */
+	public static CsvFingerprints open(File file) throws IOException {
+		if (file.length() < HEADER * Long.BYTES) {
+			return null;
+		}
+		CsvFingerprints fingerprints = new CsvFingerprints(file, 0);
+		if (fingerprints.header.get(0) != MAGIC || Long.bitCount(fingerprints.capacity) != 1 || file.length() != (HEADER + fingerprints.capacity) * Long.BYTES) {
+			fingerprints.close();
+			return null;
+		}
+		return fingerprints;
+	}
+
+	/**
+	 * Create empty fingerprints file, replacing existing one, if any.
+	 *
+	 * @param file fingerprints file,
+	 * @param expectedSize expected fingerprints count, used to size the table.
+	 * @return newly created fingerprints set.
+	 * @throws IOException if expected size exceeds {@link #MAX_SIZE} or file creation or mapping fails.
+	 */
+	public static CsvFingerprints create(File file, long expectedSize) throws IOException {
+		if (expectedSize > MAX_SIZE) {
+			throw new IOException(String.format("Expected CSV fingerprints count %d exceeds maximum %d.", expectedSize, MAX_SIZE));
+		}
+		int capacity = MIN_CAPACITY;
+		while (capacity < MAX_CAPACITY && capacity < 2 * expectedSize) {
+			capacity <<= 1;
+		}
+		file.delete();
+		return new CsvFingerprints(file, capacity);
+	}
+
+	private File file;
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private LongBuffer header;
+	private LongBuffer table;
+	private int capacity;
+	private long size;
+
+	private CsvFingerprints(File file, int capacity) throws IOException {
+		map(file, capacity);
+	}
+
+	/**
+	 * Test if set contains given fingerprint.
+	 *
+	 * @param fingerprint record fingerprint.
+	 * @return true if fingerprint is in set.
+	 */
+	public boolean contains(long fingerprint) {
+		fingerprint = slotValue(fingerprint);
+		int mask = capacity - 1;
+		for (int index = index(fingerprint, mask);; index = (index + 1) & mask) {
+			long slot = table.get(index);
+			if (slot == 0) {
+				return false;
+			}
+			if (slot == fingerprint) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Add fingerprint to set, growing table if load factor exceeds one half.
+	 *
+	 * @param fingerprint record fingerprint.
+	 * @return true if fingerprint was added, false if already in set.
+	 * @throws IOException if table growing fails or set already holds {@link #MAX_SIZE} fingerprints.
+	 */
+	public boolean add(long fingerprint) throws IOException {
+		if (!insert(table, capacity, slotValue(fingerprint))) {
+			return false;
+		}
+		header.put(1, ++size);
+		if (2 * size > capacity) {
+			grow();
+		}
+		return true;
+	}
+
+	public long size() {
+		return size;
+	}
+
+	public File file() {
+		return file;
+	}
+
+	/** Write table changes to storage device. */
+	public void force() {
+		buffer.force();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+		unmap(buffer);
+		buffer = null;
+		header = null;
+		table = null;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private void map(File file, int capacity) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long length = capacity > 0 ? (HEADER + (long) capacity) * Long.BYTES : channel.size();
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+		this.header = buffer.asLongBuffer();
+		if (capacity > 0) {
+			header.put(0, MAGIC);
+			header.put(1, 0);
+			header.put(2, capacity);
+		}
+		this.size = header.get(1);
+		this.capacity = (int) header.get(2);
+		ByteBuffer tableBytes = buffer.duplicate();
+		tableBytes.position(HEADER * Long.BYTES);
+		this.table = tableBytes.slice().asLongBuffer();
+	}
+
+	private void grow() throws IOException {
+		if (capacity == MAX_CAPACITY) {
+			throw new IOException(String.format("CSV fingerprints table |%s| full. Maximum fingerprints count is %d.", file, MAX_SIZE));
+		}
+		File oldFile = file;
+		MappedByteBuffer oldBuffer = buffer;
+		LongBuffer oldTable = table;
+		int oldCapacity = capacity;
+		FileChannel oldChannel = channel;
+		long oldSize = size;
+
+		File growFile = new File(file.getPath() + ".grow");
+		growFile.delete();
+		map(growFile, 2 * oldCapacity);
+		for (int i = 0; i < oldCapacity; ++i) {
+			long slot = oldTable.get(i);
+			if (slot != 0) {
+				insert(table, capacity, slot);
+			}
+		}
+		size = oldSize;
+		header.put(1, size);
+		buffer.force();
+
+		// release both mappings before replacing old file, then map grown table under unchanged file name
+		oldChannel.close();
+		unmap(oldBuffer);
+		channel.close();
+		unmap(buffer);
+		buffer = null;
+		header = null;
+		table = null;
+		Files.move(growFile.toPath(), oldFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		map(oldFile, 0);
+	}
+
+	/**
+	 * Release buffer mapping without waiting for garbage collector. Buffer should not be used after this call. Mapping is
+	 * released through JDK internal cleaner, if available; otherwise it is released by garbage collector.
+	 *
+	 * @param buffer mapped buffer, possible null.
+	 */
+	private static void unmap(ByteBuffer buffer) {
+		if (buffer == null || UNSAFE == null) {
+			return;
+		}
+		try {
+			INVOKE_CLEANER.invoke(UNSAFE, buffer);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			log.debug("Cannot unmap CSV fingerprints buffer: {exception}", e);
+		}
+	}
+
+	private static boolean insert(LongBuffer table, int capacity, long value) {
+		int mask = capacity - 1;
+		for (int index = index(value, mask);; index = (index + 1) & mask) {
+			long slot = table.get(index);
+			if (slot == 0) {
+				table.put(index, value);
+				return true;
+			}
+			if (slot == value) {
+				return false;
+			}
+		}
+	}
+
+	private static long slotValue(long fingerprint) {
+		return fingerprint != 0 ? fingerprint : 1;
+	}
+
+	private static int index(long value, int mask) {
+		return (int) (value ^ (value >>> 32)) & mask;
+	}
+}
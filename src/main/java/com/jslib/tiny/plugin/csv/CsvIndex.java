@@ -0,0 +1,174 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+
+/**
+ * Persisted snapshot of a templates repository index: repository directories and, for every template file, its declared
+ * type name, both with modification time. Snapshot allows restoring templates index on startup without walking repository
+ * and without reading template files.
+ * <p>
+ * Snapshot is valid only if it was created for the same repository path and files pattern, none of repository
+ * directories was modified, that is, no template file was created or deleted, and all indexed template files still exist. A template file modified since snapshot was
+ * taken is stale and should be indexed again from template file; the rest of snapshot entries are still usable.
+ * <p>
+ * Snapshot is a UTF-8 text file with tab separated fields. It is created on first run and updated whenever it is found
+ * invalid or stale. File is replaced atomically so that concurrent starts sharing the same snapshot never read a partial
+ * file.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class CsvIndex {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(CsvIndex.class);
+
+	/** Snapshot file format signature. Snapshot with different signature is ignored. */
+	private static final String SIGNATURE = "#csv-index\t1";
+
+	private static final String REPOSITORY = "R";
+	private static final String DIRECTORY = "D";
+	private static final String TEMPLATE = "T";
+
+	/**
+	 * Load snapshot for given repository. Returns null if snapshot file does not exist, is not readable or is not valid for
+	 * repository.
+	 * 
+	 * @param indexFile snapshot file,
+	 * @param repositoryDir repository directory,
+	 * @param filesPattern template files pattern.
+	 * @return snapshot entries or null.
+	 */
+	public static List<Entry> load(File indexFile, String repositoryDir, String filesPattern) {
+		if (!indexFile.isFile()) {
+			return null;
+		}
+		List<Entry> entries = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+			if (!SIGNATURE.equals(reader.readLine())) {
+				log.debug("Ignore CSV index |{index_file}| with not supported format.", indexFile);
+				return null;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t");
+				switch (fields[0]) {
+				case REPOSITORY:
+					if (fields.length != 3 || !fields[1].equals(repositoryDir) || !fields[2].equals(filesPattern)) {
+						log.debug("Ignore CSV index |{index_file}| created for different repository.", indexFile);
+						return null;
+					}
+					break;
+
+				case DIRECTORY:
+					if (fields.length != 3 || new File(fields[2]).lastModified() != Long.parseLong(fields[1])) {
+						log.debug("Ignore CSV index |{index_file}|. Directory |{directory}| was changed.", indexFile, fields[fields.length - 1]);
+						return null;
+					}
+					break;
+
+				case TEMPLATE:
+					if (fields.length != 4) {
+						return null;
+					}
+					// directory modification time can have coarse granularity and miss a deleted template
+					File templateFile = new File(fields[3]);
+					if (!templateFile.isFile()) {
+						log.debug("Ignore CSV index |{index_file}|. Template |{template_file}| was deleted.", indexFile, templateFile);
+						return null;
+					}
+					entries.add(new Entry(templateFile, Long.parseLong(fields[1]), fields[2]));
+					break;
+
+				default:
+					return null;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			log.warn("Cannot read CSV index |{index_file}|: {exception}. Ignore it.", indexFile, e);
+			return null;
+		}
+		return entries;
+	}
+
+	/**
+	 * Save repository snapshot, replacing existing snapshot file, if any. Failing to save snapshot is not fatal; error is
+	 * logged and snapshot is simply not available on next start.
+	 * 
+	 * @param indexFile snapshot file,
+	 * @param repositoryDir repository directory,
+	 * @param filesPattern template files pattern,
+	 * @param directories repository directories, including repository directory,
+	 * @param entries template files entries.
+	 */
+	public static void save(File indexFile, String repositoryDir, String filesPattern, Collection<File> directories, Collection<Entry> entries) {
+		File directory = indexFile.getAbsoluteFile().getParentFile();
+		File tempFile = null;
+		try {
+			Files.createDirectories(directory.toPath());
+			tempFile = File.createTempFile(indexFile.getName(), ".tmp", directory);
+			try (BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+				writer.write(SIGNATURE);
+				writer.newLine();
+				writer.write(String.join("\t", REPOSITORY, repositoryDir, filesPattern));
+				writer.newLine();
+				for (File repositoryDirectory : directories) {
+					File file = repositoryDirectory.getAbsoluteFile();
+					writer.write(String.join("\t", DIRECTORY, Long.toString(file.lastModified()), file.getPath()));
+					writer.newLine();
+				}
+				for (Entry entry : entries) {
+					writer.write(String.join("\t", TEMPLATE, Long.toString(entry.lastModified), entry.type, entry.file.getPath()));
+					writer.newLine();
+				}
+			}
+			Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			log.debug("Save CSV index |{index_file}| with {templates_count} templates.", indexFile, entries.size());
+		} catch (IOException e) {
+			log.warn("Cannot save CSV index |{index_file}|: {exception}.", indexFile, e);
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	private CsvIndex() {
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Indexed template file. */
+	static final class Entry {
+		final File file;
+		/** Template file modification time when it was indexed. */
+		final long lastModified;
+		/** Type name declared by template. */
+		final String type;
+
+		Entry(File file, long lastModified, String type) {
+			this.file = file.getAbsoluteFile();
+			this.lastModified = lastModified;
+			this.type = type;
+		}
+
+		/**
+		 * Test if template file was modified since it was indexed.
+		 * 
+		 * @return true if this entry is stale.
+		 */
+		boolean isStale() {
+			return file.lastModified() != lastModified;
+		}
+	}
+}
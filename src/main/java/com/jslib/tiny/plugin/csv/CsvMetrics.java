@@ -0,0 +1,153 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+
+/**
+ * Process wide registry of CSV plugin statistics, exposed as MBeans on platform MBean server, under
+ * <code>com.jslib.csv</code> domain:
+ * <ul>
+ * <li><code>type=ViewExport,name=&lt;view&gt;</code> - export statistics for a CSV view,
+ * <li><code>type=TypeExport,name=&lt;class&gt;</code> - export statistics for CSV values returned by resource methods,
+ * <li><code>type=Import,name=&lt;class&gt;</code> - import statistics for a descriptor type,
+ * <li><code>type=Templates</code> - templates registry and descriptors cache statistics, registered once per application
+ * by plugin configuration and unregistered when configuration is closed.
+ * </ul>
+ * Statistics are created on first use. Per row timing is disabled by default; it can be enabled by plugin configuration
+ * that sets rows sampling interval, see {@link #setRowSampling(int)}.
+ * <p>
+ * Failing to register an MBean is not fatal: error is logged and statistics are still collected.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class CsvMetrics {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(CsvMetrics.class);
+
+	private static final String DOMAIN = "com.jslib.csv";
+
+	private static final ConcurrentMap<String, CsvStats> stats = new ConcurrentHashMap<>();
+
+	/** Rows sampling interval for per row timing, zero if per row timing is disabled. */
+	private static volatile int rowSampling;
+
+	public static CsvStats viewExport(String viewName) {
+		return stats("ViewExport", viewName);
+	}
+
+	public static CsvStats typeExport(Class<?> type) {
+		return stats("TypeExport", type.getName());
+	}
+
+	public static CsvStats typeImport(Class<?> type) {
+		return stats("Import", type.getName());
+	}
+
+	/**
+	 * Set rows sampling interval for per row timing: every n-th row of an operation is timed. Zero disables per row timing.
+	 * 
+	 * @param rowSampling rows sampling interval, not negative.
+	 */
+	public static void setRowSampling(int rowSampling) {
+		CsvMetrics.rowSampling = rowSampling;
+	}
+
+	public static int getRowSampling() {
+		return rowSampling;
+	}
+
+	/**
+	 * Register MBean with given type, replacing existing registration, if any.
+	 * 
+	 * @param type MBean type, part of object name,
+	 * @param name MBean name, part of object name, null if MBean is a singleton,
+	 * @param mbean MBean implementation,
+	 * @param mbeanInterface management interface.
+	 * @param <T> management interface.
+	 */
+	private static <T> void register(String type, String name, T mbean, Class<T> mbeanInterface) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = objectName(type, name);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(new StandardMBean(mbean, mbeanInterface), objectName);
+		} catch (JMException | RuntimeException e) {
+			log.error("Cannot register CSV MBean |{type}:{name}|: {exception}", type, name, e);
+		}
+	}
+
+	/**
+	 * Register singleton MBean with given type, unless an MBean with the same type is already registered. Registered MBean
+	 * should be unregistered by its owner, see {@link #unregister(String)}.
+	 * 
+	 * @param type MBean type, part of object name,
+	 * @param mbean MBean implementation,
+	 * @param mbeanInterface management interface.
+	 * @return true if MBean was registered, false if there is already an MBean with the same type or registration fails.
+	 * @param <T> management interface.
+	 */
+	public static <T> boolean registerSingleton(String type, T mbean, Class<T> mbeanInterface) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = objectName(type, null);
+			if (server.isRegistered(objectName)) {
+				log.debug("CSV MBean |{type}| already registered.", type);
+				return false;
+			}
+			server.registerMBean(new StandardMBean(mbean, mbeanInterface), objectName);
+			return true;
+		} catch (JMException | RuntimeException e) {
+			log.error("Cannot register CSV MBean |{type}|: {exception}", type, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Unregister singleton MBean with given type, if registered.
+	 * 
+	 * @param type MBean type, part of object name.
+	 */
+	public static void unregister(String type) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = objectName(type, null);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (JMException | RuntimeException e) {
+			log.error("Cannot unregister CSV MBean |{type}|: {exception}", type, e);
+		}
+	}
+
+	private static CsvStats stats(String type, String name) {
+		return stats.computeIfAbsent(type + ':' + name, key -> {
+			CsvStats stats = new CsvStats();
+			register(type, name, stats, CsvStatsMBean.class);
+			return stats;
+		});
+	}
+
+	private static ObjectName objectName(String type, String name) throws JMException {
+		StringBuilder objectName = new StringBuilder(DOMAIN);
+		objectName.append(":type=").append(type);
+		if (name != null) {
+			objectName.append(",name=").append(ObjectName.quote(name));
+		}
+		return new ObjectName(objectName.toString());
+	}
+
+	private CsvMetrics() {
+	}
+}
@@ -1,9 +1,7 @@
 package com.jslib.tiny.plugin.csv;
 
-import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 
 import org.apache.commons.fileupload.FileItemIterator;
@@ -11,77 +9,29 @@ import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 
-import com.jslib.api.csv.CsvFactory;
-import com.jslib.api.log.Log;
-import com.jslib.api.log.LogFactory;
-import com.jslib.container.http.encoder.ArgumentsReader;
-import com.jslib.container.spi.Factory;
 import com.jslib.lang.IllegalArgumentException;
-import com.jslib.util.Classes;
-import com.jslib.util.Files;
 
 import jakarta.servlet.http.HttpServletRequest;
 
 /**
- * CSV reader argument transported as <code>multipart/form-data</code>.
+ * CSV reader argument transported as <code>multipart/form-data</code>. For methods with a single CSV reader parameter, CSV
+ * content is the first request part. Methods with multiple CSV reader parameters get file parts matched by form field
+ * name, see {@link AbstractCsvArgumentsReader}; form fields are ignored.
  * 
  * @author Iulian Rotaru
  * @version draft
  */
-public class CsvMultipartFormArgumentsReader implements ArgumentsReader {
-	/** Class logger. */
-	private static final Log log = LogFactory.getLog(CsvMultipartFormArgumentsReader.class);
-
-	/**
-	 * Store stream argument, if any, so that to be able to close it after method execution. Do not store stream argument as
-	 * field of this arguments reader since instance is reused and cannot have state.
-	 */
-	private final ThreadLocal<Closeable> threadLocal = new ThreadLocal<>();
-
-	private final CsvFactory csvFactory;
-
+public class CsvMultipartFormArgumentsReader extends AbstractCsvArgumentsReader {
 	public CsvMultipartFormArgumentsReader() {
-		this.csvFactory = Classes.loadService(CsvFactory.class);
+		super();
 	}
 
-	/**
-	 * Read CSV stream from HTTP request.
-	 * 
-	 * @param httpRequest HTTP request,
-	 * @param formalParameters requested formal parameters.
-	 */
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	@Override
-	public Object[] read(HttpServletRequest httpRequest, Type[] formalParameters) throws IOException, IllegalArgumentException {
-		if (formalParameters.length != 1) {
-			log.error("Bad parameters count for multipart form. Method must have exactly one formal parameter but has |{parameters_length}|.", formalParameters.length);
-			throw new IllegalArgumentException(formalParameters);
-		}
-		if (!(formalParameters[0] instanceof ParameterizedType)) {
-			throw new IllegalArgumentException("Expect parameterized formal parameter but got |%s|.", formalParameters[0]);
-		}
-
-		ParameterizedType parameterizedType = (ParameterizedType) formalParameters[0];
-		Class typeArgument = (Class) parameterizedType.getActualTypeArguments()[0];
-
-		CsvConfig config = Factory.getInstance(CsvConfig.class);
-
-		Object[] arguments = new Object[1];
-		arguments[0] = csvFactory.getReader(config.getDescriptor(typeArgument), getUploadStream(httpRequest, formalParameters));
-		threadLocal.set((Closeable) (arguments[0]));
-		return arguments;
+	public CsvMultipartFormArgumentsReader(CsvConfig config) {
+		super(config);
 	}
 
 	@Override
-	public void clean() {
-		Files.close(threadLocal.get());
-		threadLocal.remove();
-	}
-
-	// --------------------------------------------------------------------------------------------
-	// UTILITY METHODS
-
-	private static InputStream getUploadStream(HttpServletRequest httpRequest, Type[] formalParameters) throws IOException {
+	protected InputStream getInputStream(HttpServletRequest httpRequest, Type[] formalParameters) throws IOException {
 		ServletFileUpload upload = new ServletFileUpload();
 		FileItemStream fileItemStream = null;
 		try {
@@ -95,4 +45,23 @@ public class CsvMultipartFormArgumentsReader implements ArgumentsReader {
 		}
 		return fileItemStream.openStream();
 	}
+
+	@Override
+	protected void readParts(HttpServletRequest httpRequest, Type[] formalParameters, PartHandler handler) throws IOException {
+		ServletFileUpload upload = new ServletFileUpload();
+		try {
+			FileItemIterator fileItemIterator = upload.getItemIterator(httpRequest);
+			while (fileItemIterator.hasNext()) {
+				FileItemStream fileItemStream = fileItemIterator.next();
+				if (fileItemStream.isFormField()) {
+					continue;
+				}
+				try (InputStream stream = fileItemStream.openStream()) {
+					handler.handle(fileItemStream.getFieldName(), stream);
+				}
+			}
+		} catch (FileUploadException e) {
+			throw new IllegalArgumentException(formalParameters);
+		}
+	}
 }
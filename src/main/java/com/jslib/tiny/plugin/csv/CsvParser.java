@@ -0,0 +1,226 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Characters level CSV parser used by compiled readers. Parser loads one record at a time into a reusable characters buffer
+ * and exposes record cells as offsets ranges so that cells are not copied into strings unless bound field requires it.
+ * Quoted cells can contain delimiters, doubled quotes and line breaks. Blank lines and lines starting with hash are
+ * ignored.
+ * <p>
+ * Parser can be restricted to a subset of cells, see {@link #project(boolean[])}. Cells not in projection are scanned for
+ * quotes and delimiters but their characters are not copied; they are exposed as empty ranges so that cells indices are not
+ * changed.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class CsvParser {
+	private static final int EOF = -1;
+
+	private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+	private static final long FNV_PRIME = 0x100000001B3L;
+
+	private final Reader reader;
+	private final char delimiter;
+
+	private final char[] input = new char[8192];
+	private int position;
+	private int limit;
+
+	private char[] record = new char[256];
+	private int length;
+
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private int cellsCount;
+
+	/** Cells to copy into record buffer, by cell index; null if all cells are copied. */
+	private boolean[] projection;
+
+	public CsvParser(Reader reader, char delimiter) {
+		this.reader = reader;
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * Restrict parser to given cells. Cells with index beyond projection array length are not copied, as are cells with false
+	 * flag. Null projection restores all cells copy. Takes effect starting with next record.
+	 * 
+	 * @param projection copied cells flags, by cell index, possible null.
+	 */
+	public void project(boolean[] projection) {
+		this.projection = projection;
+	}
+
+	/**
+	 * Load next record, skipping blank and comment lines.
+	 * 
+	 * @return true if a record was loaded, false on end of stream.
+	 * @throws IOException if stream reading fails.
+	 */
+	public boolean next() throws IOException {
+		length = 0;
+		cellsCount = 0;
+
+		int c;
+		for (;;) {
+			c = read();
+			if (c == EOF) {
+				return false;
+			}
+			if (c == '\r' || c == '\n') {
+				continue;
+			}
+			if (c == '#') {
+				while (c != EOF && c != '\n') {
+					c = read();
+				}
+				continue;
+			}
+			break;
+		}
+
+		for (;;) {
+			int start = length;
+			boolean copy = projection == null || (cellsCount < projection.length && projection[cellsCount]);
+			if (c == '"') {
+				for (;;) {
+					c = read();
+					if (c == EOF) {
+						break;
+					}
+					if (c == '"') {
+						c = read();
+						if (c != '"') {
+							break;
+						}
+					}
+					if (copy) {
+						append((char) c);
+					}
+				}
+				// characters after closing quote, if any, are kept as cell content
+				while (c != EOF && c != delimiter && c != '\r' && c != '\n') {
+					if (copy) {
+						append((char) c);
+					}
+					c = read();
+				}
+			}
+			else if (copy) {
+				while (c != EOF && c != delimiter && c != '\r' && c != '\n') {
+					append((char) c);
+					c = read();
+				}
+			}
+			else {
+				while (c != EOF && c != delimiter && c != '\r' && c != '\n') {
+					c = read();
+				}
+			}
+			addCell(start, length);
+
+			if (c == delimiter) {
+				c = read();
+				if (c == EOF || c == '\r' || c == '\n') {
+					// trailing delimiter denotes an empty last cell
+					addCell(length, length);
+				}
+				else {
+					continue;
+				}
+			}
+			if (c == '\r') {
+				c = read();
+				if (c != '\n' && c != EOF) {
+					unread();
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Get current record characters buffer. Buffer is reused and its content is valid only till next record is loaded.
+	 * 
+	 * @return record characters buffer.
+	 */
+	public char[] buffer() {
+		return record;
+	}
+
+	public int[] starts() {
+		return starts;
+	}
+
+	public int[] ends() {
+		return ends;
+	}
+
+	public int cellsCount() {
+		return cellsCount;
+	}
+
+	/**
+	 * Compute 64 bits fingerprint of current record cells. Cell lengths are part of the fingerprint so that moving
+	 * characters between cells changes it. Cells not in projection, see {@link #project(boolean[])}, are empty and do not
+	 * contribute to fingerprint.
+	 * 
+	 * @return record fingerprint.
+	 */
+	public long fingerprint() {
+		long hash = FNV_OFFSET;
+		for (int i = 0; i < cellsCount; ++i) {
+			// cell length is mixed as a value outside characters range, acting as cells separator
+			hash = (hash ^ (0x10000L + ends[i] - starts[i])) * FNV_PRIME;
+			for (int j = starts[i]; j < ends[i]; ++j) {
+				hash = (hash ^ record[j]) * FNV_PRIME;
+			}
+		}
+		// final avalanche, from MurmurHash3, so that all bits depend on all characters
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private int read() throws IOException {
+		if (position == limit) {
+			limit = reader.read(input, 0, input.length);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return EOF;
+			}
+		}
+		return input[position++];
+	}
+
+	private void unread() {
+		--position;
+	}
+
+	private void append(char c) {
+		if (length == record.length) {
+			record = Arrays.copyOf(record, 2 * record.length);
+		}
+		record[length++] = c;
+	}
+
+	private void addCell(int start, int end) {
+		if (cellsCount == starts.length) {
+			starts = Arrays.copyOf(starts, 2 * starts.length);
+			ends = Arrays.copyOf(ends, 2 * ends.length);
+		}
+		starts[cellsCount] = start;
+		ends[cellsCount] = end;
+		++cellsCount;
+	}
+}
@@ -0,0 +1,241 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jslib.api.csv.CsvDescriptor;
+import com.jslib.api.csv.CsvFactory;
+import com.jslib.util.Files;
+
+/**
+ * CSV reader argument published as {@link Flow.Publisher}. Uploaded CSV stream is spooled to a temporary file on container
+ * thread, then records are parsed and delivered to subscriber on import executor, see {@link CsvConfig#getImportExecutor()},
+ * only as subscriber demand allows. Controller method can subscribe and return; container thread is released while import
+ * processing continues asynchronously.
+ * <p>
+ * Note that only records processing is asynchronous: request body is read with blocking I/O, before controller method is
+ * invoked, so container thread is held for the whole upload duration, as with synchronous readers. Servlet non-blocking
+ * input is not used since arguments are read by container before method invocation and there is no asynchronous context
+ * at that point.
+ * <p>
+ * Publisher supports a single subscriber. Spool file is released when subscription terminates, that is, on completion, on
+ * error or on cancel. If controller method does not subscribe, spool file is released by arguments reader clean-up, after
+ * method returns, and late subscribers are signaled with error. Import statistics, if any, see
+ * {@link #setStats(CsvStats, long, long)}, are recorded on release, so that import duration and active streams count
+ * include asynchronous processing.
+ * 
+ * <pre>
+ * public void importPersons(Flow.Publisher&lt;Person&gt; persons) {
+ * 	persons.subscribe(new PersonsSubscriber());
+ * }
+ * </pre>
+ * 
+ * @param <T> type of imported objects.
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class CsvPublisher<T> implements Flow.Publisher<T>, Closeable {
+	private final CsvFactory csvFactory;
+	private final CsvDescriptor<T> descriptor;
+	private final CsvBinder<T> binder;
+	private final CsvSpool spool;
+	private final Executor executor;
+
+	/** Subscription state, set on first subscribe or when arguments reader clean-up happens before subscription. */
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+	private final AtomicBoolean released = new AtomicBoolean();
+
+	/** Import statistics, null if not recorded. */
+	private CsvStats stats;
+	private long start;
+	private long bytes;
+	/** Set if subscription terminates with error. */
+	private volatile boolean failed;
+
+	CsvPublisher(CsvFactory csvFactory, CsvDescriptor<T> descriptor, CsvBinder<T> binder, CsvSpool spool, Executor executor) {
+		this.csvFactory = csvFactory;
+		this.descriptor = descriptor;
+		this.binder = binder;
+		this.spool = spool;
+		this.executor = executor;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		Objects.requireNonNull(subscriber);
+		if (!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+				}
+
+				@Override
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("CSV publisher supports a single subscriber and can be subscribed only while controller method executes."));
+			return;
+		}
+		subscriber.onSubscribe(new CsvSubscription(subscriber));
+	}
+
+	/**
+	 * Record import operation end into given statistics when publisher is released. Should be invoked before publisher is
+	 * exposed to controller method.
+	 * 
+	 * @param stats import statistics,
+	 * @param start import start timestamp, see {@link CsvStats#begin()},
+	 * @param bytes uploaded bytes count.
+	 */
+	void setStats(CsvStats stats, long start, long bytes) {
+		this.stats = stats;
+		this.start = start;
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Invoked by arguments reader clean-up after controller method returns. If publisher was subscribed, spool file is owned
+	 * by subscription and this method does nothing; otherwise spool file is released.
+	 */
+	@Override
+	public void close() {
+		if (subscribed.compareAndSet(false, true)) {
+			release();
+		}
+	}
+
+	private void release() {
+		if (released.compareAndSet(false, true)) {
+			spool.close();
+			if (stats != null) {
+				// imported rows are recorded by records reader, see MeteredReader
+				stats.end(start, 0, bytes, failed);
+			}
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Subscription emitting records on executor. Emission is serialized by work-in-progress counter so that subscriber
+	 * signals never overlap.
+	 */
+	private final class CsvSubscription implements Flow.Subscription, Runnable {
+		private final Flow.Subscriber<? super T> subscriber;
+		private final AtomicLong demand = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+
+		private volatile boolean cancelled;
+		private volatile Throwable requestError;
+
+		// fields below are accessed only from serialized drain loop
+		private CsvSource<T> reader;
+		private Iterator<T> iterator;
+		private boolean done;
+
+		public CsvSubscription(Flow.Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				requestError = new IllegalArgumentException("Non-positive subscription request: " + n);
+			}
+			else {
+				demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			schedule();
+		}
+
+		private void schedule() {
+			if (wip.getAndIncrement() == 0) {
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				drain();
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void drain() {
+			if (done) {
+				return;
+			}
+			if (cancelled) {
+				terminate();
+				return;
+			}
+			if (requestError != null) {
+				failed = true;
+				terminate();
+				subscriber.onError(requestError);
+				return;
+			}
+
+			try {
+				if (iterator == null) {
+					if (spool.getChunksCount() == 0) {
+						terminate();
+						subscriber.onComplete();
+						return;
+					}
+					reader = CsvSource.open(csvFactory, descriptor, binder, spool.openChunk(0));
+					iterator = reader.iterator();
+				}
+
+				long requested = demand.get();
+				long emitted = 0;
+				for (;;) {
+					if (cancelled) {
+						terminate();
+						return;
+					}
+					if (!iterator.hasNext()) {
+						terminate();
+						subscriber.onComplete();
+						return;
+					}
+					if (emitted == requested) {
+						if (requested != Long.MAX_VALUE) {
+							requested = demand.addAndGet(-emitted);
+							emitted = 0;
+						}
+						if (requested == 0) {
+							return;
+						}
+					}
+					subscriber.onNext(iterator.next());
+					++emitted;
+				}
+			} catch (Throwable t) {
+				failed = true;
+				terminate();
+				subscriber.onError(t);
+			}
+		}
+
+		private void terminate() {
+			done = true;
+			Files.close(reader);
+			release();
+		}
+	}
+}
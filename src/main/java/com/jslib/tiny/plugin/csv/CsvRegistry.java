@@ -0,0 +1,413 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.jslib.api.csv.CsvDescriptor;
+import com.jslib.api.csv.CsvFactory;
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+import com.jslib.lang.BugError;
+import com.jslib.lang.Config;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.lang.ConfigException;
+
+/**
+ * Registry of CSV templates, mapped by descriptor type name. On configuration, templates are only indexed: registry reads
+ * the type name declared by template root element but does not parse the descriptor nor resolve the type; descriptor is
+ * parsed on first request and shared via {@link CsvDescriptorCache}. Index can also be restored from a persisted snapshot,
+ * see {@link CsvIndex}, in which case template files are not read at all.
+ * <p>
+ * Registry is a concurrent map of immutable entries, with loaded template published via a volatile field, so readers never
+ * lock once template is loaded. Repository directories can be watched for changes; a changed template is parsed on the
+ * watcher thread and its entry is replaced atomically, readers keep using the old descriptor till the new one is ready. If
+ * changed template is not valid, error is logged and old descriptor is preserved.
+ * <p>
+ * Templates are read with a StAX parser that does not support DTDs nor external entities; a template with document type
+ * declaration is rejected before its descriptor is parsed. Registry should be closed on application shutdown, see
+ * {@link CsvConfig#close()}, in order to stop watcher thread.
+ * <p>
+ * Registry statistics are exposed via JMX, see {@link CsvTemplatesMBean}.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class CsvRegistry implements CsvTemplatesMBean, Closeable {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(CsvRegistry.class);
+
+	/** Maximum time, in milliseconds, to wait for watcher thread to exit on registry close. */
+	private static final long WATCHER_JOIN_TIMEOUT = 5000;
+
+	/** StAX factory for templates root element, with DTDs and external entities disabled. */
+	private static final XMLInputFactory XML_FACTORY = XMLInputFactory.newInstance();
+	static {
+		XML_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		XML_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/** Watched directories and their files pattern matcher, mapped by watch key. */
+	private final Map<WatchKey, WatchedDirectory> watchedDirectories = new ConcurrentHashMap<>();
+
+	private final CsvFactory csvFactory;
+
+	private final LongAdder templateLoads = new LongAdder();
+	private final LongAdder loadNanos = new LongAdder();
+	private final LongAdder reloads = new LongAdder();
+	private final LongAdder reloadErrors = new LongAdder();
+
+	private WatchService watchService;
+	private Thread watcher;
+
+	public CsvRegistry(CsvFactory csvFactory) {
+		this.csvFactory = csvFactory;
+	}
+
+	/**
+	 * Index template file, without parsing its descriptor. If there is already a template for the same type it is replaced.
+	 * 
+	 * @param templateFile template file.
+	 * @return type name declared by template.
+	 * @throws ConfigException if template file cannot be read or declared type is missing.
+	 */
+	public String index(File templateFile) throws ConfigException {
+		String type = readType(templateFile);
+		index(templateFile, type);
+		return type;
+	}
+
+	/**
+	 * Index template file with already known type name, for example from persisted index snapshot.
+	 * 
+	 * @param templateFile template file,
+	 * @param type type name declared by template.
+	 */
+	public void index(File templateFile, String type) {
+		entries.put(type, new Entry(templateFile));
+	}
+
+	/**
+	 * Get loaded template for given type, parsing template file on first request. Returns null if there is no template
+	 * indexed for requested type.
+	 * 
+	 * @param type descriptor type.
+	 * @return loaded template or null.
+	 * @throws BugError if template file is not a valid CSV template.
+	 */
+	public CsvDescriptorCache.Template getTemplate(Class<?> type) {
+		Entry entry = entries.get(type.getName());
+		return entry != null ? entry.get() : null;
+	}
+
+	/**
+	 * Get batch size declared by template for given type, parsing template file on first request.
+	 * 
+	 * @param type descriptor type.
+	 * @return declared batch size or null if template does not declare batch size or there is no template for type.
+	 * @throws BugError if template file is not a valid CSV template.
+	 */
+	public Integer getBatchSize(Class<?> type) {
+		Entry entry = entries.get(type.getName());
+		if (entry == null) {
+			return null;
+		}
+		entry.get();
+		return entry.batchSize;
+	}
+
+	/**
+	 * Parse all indexed templates not loaded yet, for fail fast configuration. Templates already loaded are not parsed again.
+	 * 
+	 * @throws ConfigException if a template file is not a valid CSV template.
+	 */
+	public void validate() throws ConfigException {
+		for (Entry entry : entries.values()) {
+			entry.validate();
+		}
+	}
+
+	/**
+	 * Watch directory for changed, created and deleted templates. Only files matching given pattern are considered. Watcher
+	 * thread is a daemon started on first watched directory.
+	 * 
+	 * @param directory repository directory,
+	 * @param filesPattern template files name pattern, glob syntax.
+	 * @throws IOException if directory watching cannot be registered.
+	 */
+	public synchronized void watch(File directory, String filesPattern) throws IOException {
+		if (watchService == null) {
+			watchService = FileSystems.getDefault().newWatchService();
+			watcher = new Thread(this::watch, "csv-templates-watcher");
+			watcher.setDaemon(true);
+			watcher.start();
+		}
+		Path path = directory.getAbsoluteFile().toPath();
+		WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		watchedDirectories.put(key, new WatchedDirectory(path, FileSystems.getDefault().getPathMatcher("glob:" + filesPattern)));
+		log.debug("Watch CSV templates directory |{directory}|.", path);
+	}
+
+	/**
+	 * Stop watching repository directories, if any, and wait for watcher thread to exit. It is safe to close registry more
+	 * than once.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (watchService != null) {
+			watchService.close();
+			watchService = null;
+			try {
+				watcher.join(WATCHER_JOIN_TIMEOUT);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			watcher = null;
+		}
+	}
+
+	private void watch() {
+		WatchService watchService = this.watchService;
+		try {
+			for (;;) {
+				WatchKey key = watchService.take();
+				WatchedDirectory directory = watchedDirectories.get(key);
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (directory == null || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						continue;
+					}
+					Path fileName = (Path) event.context();
+					if (!directory.matcher.matches(fileName)) {
+						continue;
+					}
+					File templateFile = directory.path.resolve(fileName).toFile();
+					if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+						remove(templateFile);
+					}
+					else {
+						reload(templateFile);
+					}
+				}
+				if (!key.reset()) {
+					watchedDirectories.remove(key);
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			log.debug("Stop CSV templates watcher.");
+		}
+	}
+
+	/**
+	 * Parse changed template and replace its entry. Since template type can be changed, entries of other types loaded from
+	 * the same file are removed.
+	 * 
+	 * @param templateFile changed template file.
+	 */
+	private void reload(File templateFile) {
+		try {
+			String type = readType(templateFile);
+			Entry entry = new Entry(templateFile);
+			entry.load();
+			entries.put(type, entry);
+			entries.entrySet().removeIf(e -> !e.getKey().equals(type) && e.getValue().file.equals(entry.file));
+			reloads.increment();
+			log.info("Reload CSV template |{template_file}| for type |{type}|.", templateFile, type);
+		} catch (ConfigException | RuntimeException e) {
+			reloadErrors.increment();
+			log.error("Fail to reload CSV template |{template_file}|: {exception}. Keep previous descriptor.", templateFile, e);
+		}
+	}
+
+	@Override
+	public int getIndexedTemplates() {
+		return entries.size();
+	}
+
+	@Override
+	public int getLoadedTemplates() {
+		int count = 0;
+		for (Entry entry : entries.values()) {
+			if (entry.template != null) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public long getTemplateLoads() {
+		return templateLoads.sum();
+	}
+
+	@Override
+	public double getMeanLoadMillis() {
+		long loads = templateLoads.sum();
+		return loads > 0 ? loadNanos.sum() / 1e6 / loads : 0;
+	}
+
+	@Override
+	public long getReloads() {
+		return reloads.sum();
+	}
+
+	@Override
+	public long getReloadErrors() {
+		return reloadErrors.sum();
+	}
+
+	@Override
+	public long getCacheHits() {
+		return CsvDescriptorCache.instance().getHits();
+	}
+
+	@Override
+	public long getCacheMisses() {
+		return CsvDescriptorCache.instance().getMisses();
+	}
+
+	@Override
+	public int getCachedDescriptors() {
+		return CsvDescriptorCache.instance().size();
+	}
+
+	private void remove(File templateFile) {
+		File file = templateFile.getAbsoluteFile();
+		if (entries.entrySet().removeIf(e -> e.getValue().file.equals(file))) {
+			log.info("Remove deleted CSV template |{template_file}|.", file);
+		}
+	}
+
+	/**
+	 * Read type name declared by template root element <code>class</code> attribute. Only root element is read; the rest of
+	 * the template is not parsed. Template with document type declaration is rejected.
+	 * 
+	 * @param templateFile template file.
+	 * @return declared type name.
+	 * @throws ConfigException if template file cannot be read, has document type declaration or declared type is missing.
+	 */
+	private static String readType(File templateFile) throws ConfigException {
+		try (InputStream stream = new FileInputStream(templateFile)) {
+			XMLStreamReader reader = XML_FACTORY.createXMLStreamReader(stream);
+			try {
+				while (reader.hasNext()) {
+					int event = reader.next();
+					if (event == XMLStreamConstants.DTD) {
+						throw new ConfigException("Invalid CSV template |%s|. Document type declaration is not allowed.", templateFile);
+					}
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						String className = reader.getAttributeValue(null, "class");
+						if (className == null) {
+							throw new ConfigException("Invalid CSV template |%s|. Missing <class> attribute.", templateFile);
+						}
+						return className;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException | XMLStreamException e) {
+			throw new ConfigException(e);
+		}
+		throw new ConfigException("Invalid CSV template |%s|. Missing root element.", templateFile);
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Registry entry: template file and template loaded from it, on first request. */
+	private final class Entry {
+		final File file;
+		/** Loaded template, null till first request. */
+		volatile CsvDescriptorCache.Template template;
+		/** Batch size declared by template, valid only after template is loaded. */
+		Integer batchSize;
+
+		Entry(File file) {
+			this.file = file.getAbsoluteFile();
+		}
+
+		CsvDescriptorCache.Template get() {
+			CsvDescriptorCache.Template template = this.template;
+			if (template != null) {
+				return template;
+			}
+			synchronized (this) {
+				if (this.template == null) {
+					try {
+						load();
+					} catch (ConfigException e) {
+						throw new BugError("Invalid CSV template |%s|: %s", file, e);
+					}
+				}
+				return this.template;
+			}
+		}
+
+		synchronized void validate() throws ConfigException {
+			if (template == null) {
+				load();
+			}
+		}
+
+		void load() throws ConfigException {
+			long start = System.nanoTime();
+			long lastModified = file.lastModified();
+			// root element is read with hardened parser so that a template with DTD never reaches config builder
+			readType(file);
+			Config config;
+			try {
+				config = new ConfigBuilder(file).build();
+			} catch (FileNotFoundException e) {
+				throw new ConfigException(e);
+			}
+			CsvDescriptor<?> descriptor = csvFactory.getDescriptor(config);
+			String batchSize = config.getAttribute("batch-size");
+			if (batchSize != null) {
+				try {
+					this.batchSize = Integer.parseInt(batchSize.trim());
+				} catch (NumberFormatException e) {
+					throw new ConfigException("Invalid <batch-size> attribute |%s|. Expected numeric value.", batchSize);
+				}
+				if (this.batchSize <= 0) {
+					throw new ConfigException("Invalid batch size for CSV type |%s|. Batch size should be positive.", descriptor.type());
+				}
+			}
+			// share loaded descriptor with views using the same template file
+			template = CsvDescriptorCache.instance().put(file, lastModified, descriptor, config);
+			templateLoads.increment();
+			loadNanos.add(System.nanoTime() - start);
+		}
+	}
+
+	/** Watched directory path and template files matcher. */
+	private static final class WatchedDirectory {
+		final Path path;
+		final PathMatcher matcher;
+
+		WatchedDirectory(Path path, PathMatcher matcher) {
+			this.path = path;
+			this.matcher = matcher;
+		}
+	}
+}
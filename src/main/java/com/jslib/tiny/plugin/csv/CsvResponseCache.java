@@ -0,0 +1,315 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+
+/**
+ * Disk cache for rendered CSV export responses. Entries are keyed by response entity tag, that identifies template, model
+ * version and content encoding, and store response body exactly as sent to client, that is, compressed if the case. Cache
+ * is bounded by total entries size; least recently used entries are evicted when a new entry does not fit.
+ * <p>
+ * Responses are stored while rendered: view output is copied to a temporary file that becomes cache entry only if rendering
+ * completes successfully. Cache directory is private to this cache; files left from previous runs are removed when cache
+ * is configured.
+ * <p>
+ * Cache is thread safe and keeps hit and miss counters, useful for monitoring.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public final class CsvResponseCache {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(CsvResponseCache.class);
+
+	/** Default maximum cache size, in bytes. */
+	private static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+	private static final String FILE_PREFIX = "csv-response";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Process wide cache instance. */
+	private static final CsvResponseCache instance = new CsvResponseCache();
+
+	/**
+	 * Get process wide CSV responses cache.
+	 *
+	 * @return responses cache instance.
+	 */
+	public static CsvResponseCache instance() {
+		return instance;
+	}
+
+	/** Cache entries in access order, least recently used first. */
+	private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+
+	private File directory;
+	private long maxSize;
+	private long size;
+
+	private long hits;
+	private long misses;
+
+	private CsvResponseCache() {
+		log.trace("CsvResponseCache()");
+		this.directory = new File(System.getProperty("java.io.tmpdir"), "csv-responses");
+		this.maxSize = DEFAULT_MAX_SIZE;
+	}
+
+	/**
+	 * Set cache directory and maximum size, removing all current entries. Directory is created if missing and cleaned of
+	 * files left by previous runs.
+	 *
+	 * @param directory cache directory, null to keep current one,
+	 * @param maxSize maximum cache size, in bytes.
+	 */
+	synchronized void configure(File directory, long maxSize) {
+		clear();
+		if (directory != null) {
+			this.directory = directory;
+		}
+		this.maxSize = maxSize;
+
+		File[] files = this.directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX));
+		if (files != null) {
+			for (File file : files) {
+				delete(file);
+			}
+		}
+	}
+
+	/**
+	 * Open cached response with given key or return null if there is no such entry.
+	 *
+	 * @param key entry key.
+	 * @return cached response or null.
+	 */
+	public synchronized Response get(String key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			++misses;
+			return null;
+		}
+		try {
+			// open stream while holding the lock so that entry file is not deleted before opened
+			Response response = new Response(new FileInputStream(entry.file), entry.length);
+			++hits;
+			return response;
+		} catch (FileNotFoundException e) {
+			log.warn("Missing CSV response cache file |{file}|. Remove entry.", entry.file);
+			remove(key);
+			++misses;
+			return null;
+		}
+	}
+
+	/**
+	 * Create output stream copying written bytes to given target and to a new cache entry. Entry is added to cache on
+	 * {@link Store#commit()}; if store is discarded, or is larger than cache maximum size, entry is dropped.
+	 *
+	 * @param key entry key,
+	 * @param target target output stream.
+	 * @return store output stream.
+	 * @throws IOException if cache temporary file creation fails.
+	 */
+	public Store store(String key, OutputStream target) throws IOException {
+		File directory;
+		synchronized (this) {
+			directory = this.directory;
+		}
+		if (!directory.exists() && !directory.mkdirs() && !directory.exists()) {
+			throw new IOException("Cannot create CSV response cache directory " + directory);
+		}
+		return new Store(key, target, File.createTempFile(FILE_PREFIX, ".tmp", directory));
+	}
+
+	/** Remove all cached responses and reset counters. */
+	public synchronized void clear() {
+		for (Entry entry : entries.values()) {
+			delete(entry.file);
+		}
+		entries.clear();
+		size = 0;
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * Get the number of cached responses.
+	 *
+	 * @return cached responses count.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Get cached responses total size, in bytes.
+	 *
+	 * @return cached bytes count.
+	 */
+	public synchronized long getBytes() {
+		return size;
+	}
+
+	/**
+	 * Get the number of responses served from cache.
+	 *
+	 * @return cache hits count.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of cache lookups that did not find a response.
+	 *
+	 * @return cache misses count.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private synchronized void put(String key, File file, long length) {
+		if (length > maxSize) {
+			log.debug("CSV response |{key}| exceeds cache size. Do not cache it.", key);
+			delete(file);
+			return;
+		}
+		remove(key);
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (size + length > maxSize && iterator.hasNext()) {
+			Entry eldest = iterator.next();
+			iterator.remove();
+			size -= eldest.length;
+			delete(eldest.file);
+		}
+		entries.put(key, new Entry(file, length));
+		size += length;
+	}
+
+	private void remove(String key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			size -= entry.length;
+			delete(entry.file);
+		}
+	}
+
+	private static void delete(File file) {
+		if (!file.delete() && file.exists()) {
+			log.warn("Fail to delete CSV response cache file |{file}|.", file);
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Cache entry: response body file and its length. */
+	private static final class Entry {
+		final File file;
+		final long length;
+
+		Entry(File file, long length) {
+			this.file = file;
+			this.length = length;
+		}
+	}
+
+	/** Cached response opened for reading. Caller should close response stream. */
+	public static final class Response {
+		private final InputStream stream;
+		private final long length;
+
+		Response(InputStream stream, long length) {
+			this.stream = stream;
+			this.length = length;
+		}
+
+		public InputStream getStream() {
+			return stream;
+		}
+
+		public long getLength() {
+			return length;
+		}
+	}
+
+	/**
+	 * Output stream writing to target and to cache entry file. Closing store closes both target and entry file but does not
+	 * add entry to cache; caller should explicitly commit it. Store should always be discarded, after commit, if the case, to
+	 * remove entry file of failed renderings.
+	 */
+	public final class Store extends FilterOutputStream {
+		private final String key;
+		private final File file;
+		private final OutputStream entry;
+		private long length;
+		private boolean committed;
+
+		Store(String key, OutputStream target, File file) throws IOException {
+			super(target);
+			this.key = key;
+			this.file = file;
+			this.entry = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			entry.write(b);
+			++length;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			out.write(bytes, offset, length);
+			entry.write(bytes, offset, length);
+			this.length += length;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				entry.close();
+			} finally {
+				out.close();
+			}
+		}
+
+		/**
+		 * Add stored response to cache. Store should be closed before commit.
+		 *
+		 * @throws IOException if entry file closing fails.
+		 */
+		public void commit() throws IOException {
+			entry.close();
+			committed = true;
+			put(key, file, length);
+		}
+
+		/** Drop entry file if store was not committed. It is safe to invoke this method after commit. */
+		public void discard() {
+			if (!committed) {
+				try {
+					entry.close();
+				} catch (IOException e) {
+					log.debug("Fail to close CSV response cache file |{file}|: {exception}", file, e);
+				}
+				delete(file);
+			}
+		}
+	}
+}
@@ -0,0 +1,299 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+
+import com.jslib.api.csv.CsvDescriptor;
+import com.jslib.api.csv.CsvFactory;
+import com.jslib.api.csv.CsvWriter;
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+
+/**
+ * CSV rows writer encoding rows directly to UTF-8 bytes using compiled row binder, if available, with fallback to reference
+ * CSV writer. Encoded rows are collected into a reusable bytes buffer that is transferred to target output stream when full,
+ * when configured flush interval is reached and on close.
+ * <p>
+ * Header line is produced by reference implementation: first row ever written for a template goes through reference writer
+ * and header line is captured from its output and cached, pre-encoded, on row binder. Rows that binder cannot handle, e.g.
+ * rows with null fields when template has no null value, are also encoded by reference writer, with header discarded.
+ * <p>
+ * If there is no compiled binder all rows are written by reference writer, via a characters writer.
+ * <p>
+ * If writer is closed without rows, header line, if template has one, is still written so that an empty export is a valid
+ * CSV document. Header is captured from the reference output of a blank row, created with template class no-arguments
+ * constructor; if template class has no such constructor empty export has no header.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class CsvRowWriter implements Closeable {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(CsvRowWriter.class);
+
+	/** Bytes buffer capacity, also the threshold for transferring encoded rows to target output stream. */
+	private static final int BUFFER_SIZE = 8192;
+
+	private final CsvFactory csvFactory;
+	private final CsvDescriptor<?> descriptor;
+	private final CsvBinder<?> binder;
+	private final OutputStream target;
+	private final int flushRows;
+	private final long flushBytes;
+
+	/** Encoded rows buffer, used only with compiled binder. */
+	private final Utf8Buffer buffer;
+	/** Reference writer, used only if there is no compiled binder. */
+	@SuppressWarnings("rawtypes")
+	private final CsvWriter writer;
+	/** Flushing writer wrapped by reference writer, used only if there is no compiled binder. */
+	private final FlushingWriter flushingWriter;
+
+	/** Statistics for sampled rows timing, null if rows timing is not recorded. */
+	private CsvStats stats;
+	private final int rowSampling = CsvMetrics.getRowSampling();
+
+	private boolean first = true;
+	/** Rows and bytes written since last flush. */
+	private int pendingRows;
+	private long pendingBytes;
+	/** Rows and bytes written since writer creation. */
+	private long rowsCount;
+	private long bytesCount;
+
+	public CsvRowWriter(CsvFactory csvFactory, CsvDescriptor<?> descriptor, CsvBinder<?> binder, OutputStream target) {
+		this(csvFactory, descriptor, binder, target, 0, 0);
+	}
+
+	/**
+	 * Create rows writer flushing target output stream at given intervals, measured in rows or in bytes. Zero interval
+	 * disables the respective flush trigger.
+	 * 
+	 * @param csvFactory CSV factory, for reference writer,
+	 * @param descriptor CSV descriptor,
+	 * @param binder compiled row binder, possible null,
+	 * @param target target output stream,
+	 * @param flushRows flush interval in rows,
+	 * @param flushBytes flush interval in bytes.
+	 */
+	public CsvRowWriter(CsvFactory csvFactory, CsvDescriptor<?> descriptor, CsvBinder<?> binder, OutputStream target, int flushRows, long flushBytes) {
+		this.csvFactory = csvFactory;
+		this.descriptor = descriptor;
+		this.binder = binder;
+		this.target = target;
+		this.flushRows = flushRows;
+		this.flushBytes = flushBytes;
+
+		if (binder != null) {
+			this.buffer = new Utf8Buffer(BUFFER_SIZE);
+			this.writer = null;
+			this.flushingWriter = null;
+		}
+		else {
+			this.buffer = null;
+			this.flushingWriter = new FlushingWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), flushRows, flushBytes);
+			this.writer = csvFactory.getWriter(descriptor, flushingWriter);
+		}
+	}
+
+	/**
+	 * Record timing of sampled rows into given statistics, if rows sampling is enabled, see {@link CsvMetrics}.
+	 * 
+	 * @param stats statistics for sampled rows timing.
+	 */
+	public void setStats(CsvStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Do not write header line, used when export is resumed after header. Should be invoked before writing first row and is
+	 * effective only with compiled binder.
+	 */
+	public void skipHeader() {
+		first = false;
+	}
+
+	public void write(Object row) throws IOException {
+		++rowsCount;
+		if (stats != null && rowSampling > 0 && rowsCount % rowSampling == 0) {
+			long start = System.nanoTime();
+			writeRow(row);
+			stats.sampleRow(System.nanoTime() - start);
+		}
+		else {
+			writeRow(row);
+		}
+	}
+
+	/**
+	 * Get the number of rows written so far.
+	 * 
+	 * @return written rows count.
+	 */
+	public long rows() {
+		return rowsCount;
+	}
+
+	/**
+	 * Get the number of bytes written so far, including buffered bytes. If there is no compiled binder, bytes count is
+	 * approximated by characters count.
+	 * 
+	 * @return written bytes count.
+	 */
+	public long bytes() {
+		return binder != null ? bytesCount : flushingWriter.count();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void writeRow(Object row) throws IOException {
+		if (binder == null) {
+			writer.write(row);
+			flushingWriter.rowEnd();
+			return;
+		}
+
+		int mark = buffer.size();
+		if (first) {
+			first = false;
+			byte[] header = binder.headerBytes();
+			if (header == null) {
+				writeFirstRow(row);
+			}
+			else {
+				buffer.append(header);
+				encode(row, buffer.size());
+			}
+		}
+		else {
+			encode(row, mark);
+		}
+
+		int rowBytes = buffer.size() - mark;
+		bytesCount += rowBytes;
+		pendingBytes += rowBytes;
+		++pendingRows;
+		if ((flushRows > 0 && pendingRows >= flushRows) || (flushBytes > 0 && pendingBytes >= flushBytes)) {
+			flush();
+		}
+		else if (buffer.size() >= BUFFER_SIZE) {
+			drain();
+		}
+	}
+
+	/**
+	 * Get the number of encoded bytes not yet transferred to target output stream.
+	 * 
+	 * @return buffered bytes count.
+	 */
+	public int buffered() {
+		return buffer != null ? buffer.size() : 0;
+	}
+
+	/**
+	 * Transfer encoded bytes to target output stream and flush it.
+	 * 
+	 * @throws IOException if writing to target output stream fails.
+	 */
+	public void flush() throws IOException {
+		if (binder == null) {
+			flushingWriter.flush();
+			return;
+		}
+		drain();
+		target.flush();
+		pendingRows = 0;
+		pendingBytes = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		boolean empty = first && rowsCount == 0;
+		if (binder == null) {
+			if (empty) {
+				byte[] header = blankHeader();
+				if (header != null) {
+					flushingWriter.write(new String(header, StandardCharsets.UTF_8));
+				}
+			}
+			writer.close();
+			return;
+		}
+		if (empty) {
+			byte[] header = binder.headerBytes();
+			if (header == null) {
+				header = blankHeader();
+				if (header != null) {
+					binder.headerBytes(header);
+				}
+			}
+			if (header != null) {
+				bytesCount += header.length;
+				buffer.append(header);
+			}
+		}
+		drain();
+		target.close();
+	}
+
+	private void encode(Object row, int mark) throws IOException {
+		if (!binder.encode(row, buffer)) {
+			buffer.truncate(mark);
+			String record = reference(row);
+			if (binder.hasHeader()) {
+				record = record.substring(record.indexOf('\n') + 1);
+			}
+			buffer.append(record.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private void writeFirstRow(Object row) throws IOException {
+		String record = reference(row);
+		if (binder.hasHeader()) {
+			binder.headerBytes(record.substring(0, record.indexOf('\n') + 1).getBytes(StandardCharsets.UTF_8));
+		}
+		else {
+			binder.headerBytes(new byte[0]);
+		}
+		buffer.append(record.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Get header line from reference output of a blank row. Returns empty bytes array if template has no header and null
+	 * if blank row cannot be created.
+	 */
+	private byte[] blankHeader() throws IOException {
+		Object row;
+		try {
+			Constructor<?> constructor = descriptor.type().getDeclaredConstructor();
+			constructor.setAccessible(true);
+			row = constructor.newInstance();
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			log.debug("Cannot create blank row for |{type}|. Empty CSV export has no header.", descriptor.type());
+			return null;
+		}
+		String record = reference(row);
+		// reference output for a blank row has two lines if template has header
+		int headerEnd = record.indexOf('\n') + 1;
+		return (headerEnd < record.length() ? record.substring(0, headerEnd) : "").getBytes(StandardCharsets.UTF_8);
+	}
+
+	@SuppressWarnings("unchecked")
+	private String reference(Object row) throws IOException {
+		StringWriter record = new StringWriter();
+		@SuppressWarnings("rawtypes")
+		CsvWriter writer = csvFactory.getWriter(descriptor, record);
+		writer.write(row);
+		writer.close();
+		return record.toString();
+	}
+
+	private void drain() throws IOException {
+		buffer.writeTo(target);
+		buffer.clear();
+	}
+}
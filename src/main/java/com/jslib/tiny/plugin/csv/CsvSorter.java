@@ -0,0 +1,585 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.jslib.api.csv.CsvDescriptor;
+import com.jslib.api.csv.CsvFactory;
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+import com.jslib.lang.BugError;
+
+/**
+ * External sort for CSV export. Rows are collected into bounded in memory runs; when a run is full it is sorted and spilled
+ * to a temporary file, each row stored as its sort keys followed by its encoded CSV record. After all rows are consumed,
+ * spilled runs are merged, k-way, straight into output stream so that heap usage is bounded by run size, whatever the
+ * number of exported rows. If all rows fit into a single run nothing is spilled and sorted rows are written directly.
+ * <p>
+ * Merge fan-in is capped to {@link #MAX_FAN_IN} runs, so that the number of open files and merge buffers stays bounded. If
+ * there are more runs, consecutive runs are first merged into intermediate runs, in as many passes as needed, before the
+ * final merge into output stream.
+ * <p>
+ * Sort order is described by a sort specification: comma separated list of field names, every field optionally followed by
+ * <code>asc</code> or <code>desc</code>, e.g. <code>country, revenue desc</code>. Supported sort fields are strings,
+ * characters, booleans, numbers, dates and enumerations; null values are ordered first. Sort is stable: rows with equal keys
+ * keep model order. All values of a sort field should have the same key type, e.g. all integers or all strings; a field
+ * declared as <code>Object</code> or <code>Number</code> holding mixed types is rejected while rows are consumed, before
+ * writing output.
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class CsvSorter implements Closeable {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(CsvSorter.class);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Maximum number of runs merged at once. */
+	static final int MAX_FAN_IN = 64;
+
+	/** Spilled key value tags. */
+	private static final byte NULL = 0;
+	private static final byte LONG = 1;
+	private static final byte DOUBLE = 2;
+	private static final byte STRING = 3;
+	private static final byte BOOLEAN = 4;
+	private static final byte DECIMAL = 5;
+
+	private final SortKey[] sortKeys;
+	private final int runSize;
+	private final File spillDir;
+	private final boolean header;
+
+	/** Rows writer encoding spilled records into reusable record buffer. */
+	private final CsvRowWriter recordWriter;
+	private final ByteArrayOutputStream record;
+	/** Header line bytes, captured when first record is spilled. */
+	private byte[] headerLine;
+
+	private final List<Row> run;
+	private final List<File> runFiles = new ArrayList<>();
+
+	private long rowsCount;
+	private long bytesCount;
+
+	/**
+	 * Create external sorter for rows of given descriptor.
+	 *
+	 * @param csvFactory CSV factory, for reference writer,
+	 * @param descriptor CSV descriptor,
+	 * @param binder compiled row binder, possible null,
+	 * @param header true if template declares header,
+	 * @param sortSpec sort specification,
+	 * @param runSize maximum number of rows kept in memory,
+	 * @param spillDir directory for temporary run files, null for system default.
+	 * @throws BugError if sort specification is not valid for descriptor type.
+	 */
+	public CsvSorter(CsvFactory csvFactory, CsvDescriptor<?> descriptor, CsvBinder<?> binder, boolean header, String sortSpec, int runSize, File spillDir) {
+		this.sortKeys = parse(descriptor.type(), sortSpec);
+		this.runSize = runSize;
+		this.spillDir = spillDir;
+		this.header = header;
+		this.record = new ByteArrayOutputStream();
+		this.recordWriter = new CsvRowWriter(csvFactory, descriptor, binder, record);
+		this.run = new ArrayList<>(Math.min(runSize, 1024));
+	}
+
+	/**
+	 * Consume all rows and write them, sorted, to given rows writer or, if rows were spilled, to rows writer target output
+	 * stream. Rows writer, and so output stream, is closed on successful completion.
+	 *
+	 * @param rows model rows,
+	 * @param writer rows writer, used if all rows fit into a single run,
+	 * @param outputStream output stream for merged runs, that is, rows writer target,
+	 * @param flushRows flush interval in rows, zero to disable,
+	 * @param flushBytes flush interval in bytes, zero to disable.
+	 * @throws IOException if run file or output stream writing fails.
+	 */
+	public void write(Iterator<?> rows, CsvRowWriter writer, OutputStream outputStream, int flushRows, long flushBytes) throws IOException {
+		while (rows.hasNext()) {
+			if (run.size() == runSize) {
+				spill();
+			}
+			Object row = rows.next();
+			run.add(new Row(keys(row), row));
+		}
+
+		if (runFiles.isEmpty()) {
+			run.sort(this::compare);
+			try {
+				for (Row row : run) {
+					writer.write(row.value);
+				}
+			} finally {
+				rowsCount = writer.rows();
+				bytesCount = writer.bytes();
+			}
+			run.clear();
+			writer.close();
+			return;
+		}
+
+		if (!run.isEmpty()) {
+			spill();
+		}
+		merge(outputStream, flushRows, flushBytes);
+		outputStream.close();
+	}
+
+	public long rows() {
+		return rowsCount;
+	}
+
+	public long bytes() {
+		return bytesCount;
+	}
+
+	/** Delete run files, if any. */
+	@Override
+	public void close() {
+		for (File runFile : runFiles) {
+			if (!runFile.delete()) {
+				log.warn("Fail to delete CSV sort run file |{file}|.", runFile);
+			}
+		}
+		runFiles.clear();
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private void spill() throws IOException {
+		run.sort(this::compare);
+		File runFile = File.createTempFile("csv-sort", ".run", spillDir);
+		runFiles.add(runFile);
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), BUFFER_SIZE))) {
+			for (Row row : run) {
+				for (Object key : row.keys) {
+					writeKey(output, key);
+				}
+				recordWriter.write(row.value);
+				recordWriter.flush();
+				if (headerLine == null) {
+					// first record written by rows writer is prefixed by header line, if template has header
+					byte[] bytes = record.toByteArray();
+					headerLine = header ? headerLine(bytes) : new byte[0];
+					output.writeInt(bytes.length - headerLine.length);
+					output.write(bytes, headerLine.length, bytes.length - headerLine.length);
+				}
+				else {
+					output.writeInt(record.size());
+					record.writeTo(output);
+				}
+				record.reset();
+			}
+		}
+		log.debug("Spill |{rows_count}| CSV rows to sort run file |{file}|.", run.size(), runFile);
+		run.clear();
+	}
+
+	private void merge(OutputStream outputStream, int flushRows, long flushBytes) throws IOException {
+		int spilledRuns = runFiles.size();
+		int passes = 0;
+		while (runFiles.size() > MAX_FAN_IN) {
+			// runs are merged in groups of consecutive runs, replacing them in order, so that merge stays stable
+			int runsCount = runFiles.size();
+			for (int i = 0; i < runsCount; i += MAX_FAN_IN) {
+				List<File> group = new ArrayList<>(runFiles.subList(0, Math.min(MAX_FAN_IN, runsCount - i)));
+				if (group.size() == 1) {
+					runFiles.add(group.get(0));
+				}
+				else {
+					File runFile = File.createTempFile("csv-sort", ".run", spillDir);
+					// add merged run before merging so that it is deleted on close if merge fails
+					runFiles.add(runFile);
+					try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), BUFFER_SIZE))) {
+						merge(group, output, null, 0, 0);
+					}
+					for (File file : group) {
+						if (!file.delete()) {
+							log.warn("Fail to delete CSV sort run file |{file}|.", file);
+						}
+					}
+				}
+				runFiles.subList(0, group.size()).clear();
+			}
+			++passes;
+		}
+
+		outputStream.write(headerLine);
+		bytesCount = headerLine.length;
+		merge(runFiles, null, outputStream, flushRows, flushBytes);
+		log.debug("Merge |{runs_count}| CSV sort runs in |{passes_count}| intermediate passes.", spilledRuns, passes);
+	}
+
+	/**
+	 * Merge run files into intermediate run or into output stream. Only one of run output and output stream is not null.
+	 * 
+	 * @param files run files, in model order, at most {@link #MAX_FAN_IN},
+	 * @param runOutput intermediate run output, null if merging into output stream,
+	 * @param outputStream output stream, null if merging into intermediate run,
+	 * @param flushRows output stream flush interval in rows, zero to disable,
+	 * @param flushBytes output stream flush interval in bytes, zero to disable.
+	 * @throws IOException if run files reading or output writing fails.
+	 */
+	private void merge(List<File> files, DataOutputStream runOutput, OutputStream outputStream, int flushRows, long flushBytes) throws IOException {
+		// all opened readers are closed on exit, including the one polled from queue when an exception is thrown
+		List<RunReader> readers = new ArrayList<>(files.size());
+		PriorityQueue<RunReader> queue = new PriorityQueue<>(files.size());
+		try {
+			for (int i = 0; i < files.size(); ++i) {
+				RunReader reader = new RunReader(files.get(i), i, sortKeys.length);
+				readers.add(reader);
+				if (reader.next()) {
+					queue.add(reader);
+				}
+			}
+
+			int pendingRows = 0;
+			long pendingBytes = 0;
+			while (!queue.isEmpty()) {
+				RunReader reader = queue.poll();
+				if (runOutput != null) {
+					for (Object key : reader.keys) {
+						writeKey(runOutput, key);
+					}
+					runOutput.writeInt(reader.recordLength);
+					runOutput.write(reader.record, 0, reader.recordLength);
+				}
+				else {
+					outputStream.write(reader.record, 0, reader.recordLength);
+					++rowsCount;
+					bytesCount += reader.recordLength;
+					++pendingRows;
+					pendingBytes += reader.recordLength;
+					if ((flushRows > 0 && pendingRows >= flushRows) || (flushBytes > 0 && pendingBytes >= flushBytes)) {
+						outputStream.flush();
+						pendingRows = 0;
+						pendingBytes = 0;
+					}
+				}
+
+				if (reader.next()) {
+					queue.add(reader);
+				}
+			}
+		} finally {
+			for (RunReader reader : readers) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					log.warn("Fail to close CSV sort run reader: {exception}", e);
+				}
+			}
+		}
+	}
+
+	private int compare(Row row1, Row row2) {
+		return compare(sortKeys, row1.keys, row2.keys);
+	}
+
+	private Object[] keys(Object row) {
+		Object[] keys = new Object[sortKeys.length];
+		for (int i = 0; i < keys.length; ++i) {
+			keys[i] = sortKeys[i].value(row);
+		}
+		return keys;
+	}
+
+	/** Get header line, including line end, from first encoded record. */
+	private static byte[] headerLine(byte[] bytes) {
+		for (int i = 0; i < bytes.length; ++i) {
+			if (bytes[i] == '\n') {
+				byte[] line = new byte[i + 1];
+				System.arraycopy(bytes, 0, line, 0, line.length);
+				return line;
+			}
+		}
+		return new byte[0];
+	}
+
+	/**
+	 * Parse sort specification for given row type.
+	 *
+	 * @param type row type,
+	 * @param sortSpec sort specification.
+	 * @return sort keys.
+	 * @throws BugError if sort specification is empty, has invalid direction or references missing fields.
+	 */
+	private static SortKey[] parse(Class<?> type, String sortSpec) {
+		List<SortKey> sortKeys = new ArrayList<>();
+		for (String item : sortSpec.split(",")) {
+			String[] parts = item.trim().split("\\s+");
+			if (parts[0].isEmpty() || parts.length > 2) {
+				throw new BugError("Invalid CSV sort specification |%s|.", sortSpec);
+			}
+			boolean descending = false;
+			if (parts.length == 2) {
+				if (parts[1].equalsIgnoreCase("desc")) {
+					descending = true;
+				}
+				else if (!parts[1].equalsIgnoreCase("asc")) {
+					throw new BugError("Invalid CSV sort direction |%s| in specification |%s|.", parts[1], sortSpec);
+				}
+			}
+			Field field = field(type, parts[0]);
+			if (field == null) {
+				throw new BugError("Missing CSV sort field |%s| from type |%s|.", parts[0], type);
+			}
+			field.setAccessible(true);
+			sortKeys.add(new SortKey(field, descending));
+		}
+		return sortKeys.toArray(new SortKey[0]);
+	}
+
+	private static Field field(Class<?> type, String name) {
+		for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+			try {
+				Field field = clazz.getDeclaredField(name);
+				return Modifier.isStatic(field.getModifiers()) ? null : field;
+			} catch (NoSuchFieldException e) {
+				// continue with super class
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Convert field value to one of the key types that can be spilled: long, double, string, boolean or big decimal.
+	 *
+	 * @param value field value, possible null.
+	 * @return normalized key value, null if field value is null.
+	 * @throws BugError if field value type is not supported as sort key.
+	 */
+	private static Object normalize(Object value) {
+		if (value == null || value instanceof String || value instanceof Boolean || value instanceof Long || value instanceof Double || value instanceof BigDecimal) {
+			return value;
+		}
+		if (value instanceof Byte || value instanceof Short || value instanceof Integer) {
+			return ((Number) value).longValue();
+		}
+		if (value instanceof Float) {
+			return ((Float) value).doubleValue();
+		}
+		if (value instanceof BigInteger) {
+			return new BigDecimal((BigInteger) value);
+		}
+		if (value instanceof Character) {
+			return value.toString();
+		}
+		if (value instanceof Date) {
+			return ((Date) value).getTime();
+		}
+		if (value instanceof Enum) {
+			return (long) ((Enum<?>) value).ordinal();
+		}
+		throw new BugError("Not supported CSV sort key type |%s|.", value.getClass());
+	}
+
+	private static void writeKey(DataOutputStream output, Object key) throws IOException {
+		if (key == null) {
+			output.writeByte(NULL);
+		}
+		else if (key instanceof Long) {
+			output.writeByte(LONG);
+			output.writeLong((Long) key);
+		}
+		else if (key instanceof Double) {
+			output.writeByte(DOUBLE);
+			output.writeDouble((Double) key);
+		}
+		else if (key instanceof Boolean) {
+			output.writeByte(BOOLEAN);
+			output.writeBoolean((Boolean) key);
+		}
+		else {
+			output.writeByte(key instanceof String ? STRING : DECIMAL);
+			byte[] bytes = key.toString().getBytes(StandardCharsets.UTF_8);
+			output.writeInt(bytes.length);
+			output.write(bytes);
+		}
+	}
+
+	private static Object readKey(DataInputStream input) throws IOException {
+		byte tag = input.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case LONG:
+			return input.readLong();
+		case DOUBLE:
+			return input.readDouble();
+		case BOOLEAN:
+			return input.readBoolean();
+		case STRING:
+		case DECIMAL:
+			byte[] bytes = new byte[input.readInt()];
+			input.readFully(bytes);
+			String value = new String(bytes, StandardCharsets.UTF_8);
+			return tag == STRING ? value : new BigDecimal(value);
+		default:
+			throw new IOException("Corrupted CSV sort run file. Invalid key tag " + tag);
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compare(SortKey[] sortKeys, Object[] keys1, Object[] keys2) {
+		for (int i = 0; i < sortKeys.length; ++i) {
+			Object key1 = keys1[i];
+			Object key2 = keys2[i];
+			int result;
+			if (key1 == null) {
+				result = key2 == null ? 0 : -1;
+			}
+			else if (key2 == null) {
+				result = 1;
+			}
+			else {
+				result = ((Comparable) key1).compareTo(key2);
+			}
+			if (result != 0) {
+				return sortKeys[i].descending ? -result : result;
+			}
+		}
+		return 0;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Sort key: row field and sort direction. */
+	private static final class SortKey {
+		final Field field;
+		final boolean descending;
+		/** Normalized key type, from field declared type or, if declared type is too general, from first not null value. */
+		private Class<?> keyType;
+
+		SortKey(Field field, boolean descending) {
+			this.field = field;
+			this.descending = descending;
+			this.keyType = keyType(field.getType());
+		}
+
+		/**
+		 * Get normalized field value from row.
+		 * 
+		 * @param row row object.
+		 * @return normalized field value, possible null.
+		 * @throws BugError if field value type is not supported or differs from key type of previous rows.
+		 */
+		Object value(Object row) {
+			Object value;
+			try {
+				value = normalize(field.get(row));
+			} catch (IllegalAccessException e) {
+				throw new BugError("Cannot access CSV sort field |%s|.", field);
+			}
+			if (value != null) {
+				if (keyType == null) {
+					keyType = value.getClass();
+				}
+				else if (keyType != value.getClass()) {
+					throw new BugError("Mixed CSV sort key types |%s| and |%s| for field |%s|.", keyType, value.getClass(), field);
+				}
+			}
+			return value;
+		}
+
+		/** Get normalized key type for field declared type, or null if declared type allows values of more key types. */
+		private static Class<?> keyType(Class<?> type) {
+			if (type == String.class || type == char.class || type == Character.class) {
+				return String.class;
+			}
+			if (type == boolean.class || type == Boolean.class) {
+				return Boolean.class;
+			}
+			if (type == byte.class || type == short.class || type == int.class || type == long.class || type == Byte.class || type == Short.class || type == Integer.class || type == Long.class) {
+				return Long.class;
+			}
+			if (type == float.class || type == double.class || type == Float.class || type == Double.class) {
+				return Double.class;
+			}
+			if (type == BigDecimal.class || type == BigInteger.class) {
+				return BigDecimal.class;
+			}
+			if (Date.class.isAssignableFrom(type) || type.isEnum()) {
+				return Long.class;
+			}
+			return null;
+		}
+	}
+
+	/** Row from in memory run, with its sort keys. */
+	private static final class Row {
+		final Object[] keys;
+		final Object value;
+
+		Row(Object[] keys, Object value) {
+			this.keys = keys;
+			this.value = value;
+		}
+	}
+
+	/** Sequential reader for spilled run file, holding current record. */
+	private final class RunReader implements Comparable<RunReader>, Closeable {
+		private final DataInputStream input;
+		/** Run index, used to keep merge stable. */
+		private final int index;
+		final Object[] keys;
+		byte[] record = new byte[256];
+		int recordLength;
+
+		RunReader(File runFile, int index, int keysCount) throws IOException {
+			this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile), BUFFER_SIZE));
+			this.index = index;
+			this.keys = new Object[keysCount];
+		}
+
+		boolean next() throws IOException {
+			try {
+				keys[0] = readKey(input);
+			} catch (EOFException e) {
+				return false;
+			}
+			for (int i = 1; i < keys.length; ++i) {
+				keys[i] = readKey(input);
+			}
+			recordLength = input.readInt();
+			if (recordLength > record.length) {
+				record = new byte[Math.max(recordLength, 2 * record.length)];
+			}
+			input.readFully(record, 0, recordLength);
+			return true;
+		}
+
+		@Override
+		public int compareTo(RunReader other) {
+			int result = compare(sortKeys, keys, other.keys);
+			return result != 0 ? result : Integer.compare(index, other.index);
+		}
+
+		@Override
+		public void close() throws IOException {
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.jslib.api.csv.CsvDescriptor;
+import com.jslib.api.csv.CsvFactory;
+
+/**
+ * Source of objects decoded from CSV stream, used internally by plugin arguments. Source is implemented by compiled reader,
+ * if descriptor template was compiled to a row binder, or by reference CSV reader. Only compiled reader supports delta
+ * import, see {@link DeltaImport}; for other sources commit does nothing.
+ * 
+ * @param <T> type of decoded objects.
+ * @author Iulian Rotaru
+ * @version draft
+ */
+interface CsvSource<T> extends Iterable<T>, Closeable, DeltaImport {
+	@Override
+	default void commit() throws IOException {
+	}
+
+	/**
+	 * Open objects source on CSV stream, using compiled binder if available and reference reader otherwise. Returned source
+	 * records read rows into descriptor type import statistics. Source has its own dictionary, if template declares
+	 * dictionary columns; this is the entry point for imports read by a single reader.
+	 * 
+	 * @param csvFactory CSV factory for reference reader,
+	 * @param descriptor CSV descriptor,
+	 * @param binder compiled binder, possible null,
+	 * @param stream CSV stream.
+	 * @return objects source.
+	 * @param <T> type of decoded objects.
+	 */
+	static <T> CsvSource<T> open(CsvFactory csvFactory, CsvDescriptor<T> descriptor, CsvBinder<T> binder, InputStream stream) {
+		return open(csvFactory, descriptor, binder, binder != null ? binder.createDictionary() : null, stream);
+	}
+
+	/**
+	 * Open objects source on CSV stream using given dictionary, shared by all sources of the same import. Used by imports
+	 * split into chunks read concurrently, see {@link ParallelCsvReader}.
+	 * 
+	 * @param csvFactory CSV factory for reference reader,
+	 * @param descriptor CSV descriptor,
+	 * @param binder compiled binder, possible null,
+	 * @param dictionary import dictionary, see {@link CsvBinder#createDictionary()}, possible null,
+	 * @param stream CSV stream.
+	 * @return objects source.
+	 * @param <T> type of decoded objects.
+	 */
+	static <T> CsvSource<T> open(CsvFactory csvFactory, CsvDescriptor<T> descriptor, CsvBinder<T> binder, CsvDictionary dictionary, InputStream stream) {
+		CsvStats stats = CsvMetrics.typeImport(descriptor.type());
+		if (binder != null) {
+			return new MeteredReader<>(new CompiledCsvReader<>(binder, dictionary, stream), stats);
+		}
+		return new MeteredReader<>(csvFactory.getReader(descriptor, stream), stats);
+	}
+}
@@ -0,0 +1,265 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+
+/**
+ * CSV stream copied to a temporary file and split into chunks on records boundaries. Split points are discovered while
+ * spooling, with a single scan that follows {@link CsvParser} rules so that line breaks embedded into quoted values are
+ * not taken for records end: a quote opens a quoted value only at cell start, inside a quoted value a doubled quote is an
+ * escaped quote and a single one closes the value, and quotes inside not quoted values are literal. Lines starting with
+ * hash are comments and their content is not scanned for quotes.
+ * <p>
+ * Scan works on UTF-8 bytes and relies on the fact that multibyte characters never contain ASCII bytes. If delimiter is
+ * not an ASCII character cells boundaries cannot be discovered and stream is spooled as a single chunk.
+ * <p>
+ * If CSV stream has header, header line is captured and prepended to every chunk, except the first one that already
+ * contains it; this way every chunk is a valid CSV document that can be parsed independently.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class CsvSpool implements Closeable {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(CsvSpool.class);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Scan states, after the last scanned byte. */
+	private static final int RECORD_START = 0;
+	private static final int CELL_START = 1;
+	private static final int UNQUOTED = 2;
+	private static final int QUOTED = 3;
+	/** Quote inside quoted value: either closing quote or first quote of an escaped one. */
+	private static final int QUOTE = 4;
+	private static final int COMMENT = 5;
+
+	/**
+	 * Copy CSV stream to temporary file and discover chunks split points. Given input stream is fully read but not closed.
+	 * 
+	 * @param stream CSV input stream,
+	 * @param chunkSize chunk minimum size, in bytes,
+	 * @param header true if CSV stream starts with a header line,
+	 * @param delimiter cells delimiter, zero if not known,
+	 * @param spoolDir directory for temporary file, null for system default.
+	 * @return CSV spool instance.
+	 * @throws IOException if stream reading or temporary file writing fails.
+	 */
+	public static CsvSpool create(InputStream stream, long chunkSize, boolean header, char delimiter, File spoolDir) throws IOException {
+		if (chunkSize != Long.MAX_VALUE && (delimiter == 0 || delimiter > 0x7F)) {
+			log.debug("Not ASCII delimiter |{delimiter}|. Spool CSV stream as single chunk.", (int) delimiter);
+			chunkSize = Long.MAX_VALUE;
+		}
+		File file = File.createTempFile("csv-spool", ".csv", spoolDir);
+		List<Long> splits = new ArrayList<>();
+		splits.add(0L);
+		ByteArrayOutputStream headerLine = new ByteArrayOutputStream();
+
+		try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int state = RECORD_START;
+			boolean headerPending = header;
+			long chunkStart = 0;
+			long offset = 0;
+
+			int length;
+			while ((length = stream.read(buffer)) != -1) {
+				for (int i = 0; i < length; ++i) {
+					byte b = buffer[i];
+					if (headerPending) {
+						headerLine.write(b);
+					}
+
+					switch (state) {
+					case RECORD_START:
+						if (b == '#') {
+							state = COMMENT;
+							continue;
+						}
+						if (b != '\r' && b != '\n') {
+							state = cellState(b, delimiter);
+						}
+						break;
+
+					case CELL_START:
+						state = cellState(b, delimiter);
+						break;
+
+					case UNQUOTED:
+						if (b == delimiter) {
+							state = CELL_START;
+						}
+						break;
+
+					case COMMENT:
+						break;
+
+					case QUOTED:
+						if (b == '"') {
+							state = QUOTE;
+						}
+						continue;
+
+					case QUOTE:
+						// doubled quote goes back to quoted value; characters after closing quote, if any, are not quoted
+						state = cellState(b, delimiter);
+						break;
+					}
+
+					if (b == '\n' && state != QUOTED) {
+						state = RECORD_START;
+						headerPending = false;
+						long recordEnd = offset + i + 1;
+						if (recordEnd - chunkStart >= chunkSize) {
+							splits.add(recordEnd);
+							chunkStart = recordEnd;
+						}
+					}
+				}
+				output.write(buffer, 0, length);
+				offset += length;
+			}
+
+			if (splits.get(splits.size() - 1) != offset) {
+				splits.add(offset);
+			}
+		} catch (IOException e) {
+			file.delete();
+			throw e;
+		}
+
+		log.debug("Spool CSV stream to |{file}| with |{chunks_count}| chunks.", file, splits.size() - 1);
+		return new CsvSpool(file, splits, header ? headerLine.toByteArray() : null);
+	}
+
+	/**
+	 * Get scan state after given byte at cell start: quote opens quoted value and delimiter starts next cell. Also used
+	 * after a quote inside quoted value since the same rules apply: second quote of a doubled quote continues quoted value
+	 * and characters after closing quote are not quoted.
+	 */
+	private static int cellState(byte b, char delimiter) {
+		return b == '"' ? QUOTED : b == delimiter ? CELL_START : UNQUOTED;
+	}
+
+	private final File file;
+	private final List<Long> splits;
+	private final byte[] headerLine;
+
+	private CsvSpool(File file, List<Long> splits, byte[] headerLine) {
+		this.file = file;
+		this.splits = splits;
+		this.headerLine = headerLine;
+	}
+
+	/**
+	 * Get the number of chunks, possible zero if spooled stream was empty.
+	 * 
+	 * @return chunks count.
+	 */
+	public int getChunksCount() {
+		return splits.size() - 1;
+	}
+
+	/**
+	 * Open input stream for requested chunk. Returned stream is a valid CSV document, including header line if the case.
+	 * 
+	 * @param index chunk index.
+	 * @return chunk input stream.
+	 * @throws IOException if spool file opening fails.
+	 */
+	public InputStream openChunk(int index) throws IOException {
+		long start = splits.get(index);
+		long end = splits.get(index + 1);
+		InputStream chunk = new ChunkInputStream(FileChannel.open(file.toPath(), StandardOpenOption.READ), start, end);
+		if (index == 0 || headerLine == null) {
+			return chunk;
+		}
+		return new SequenceInputStream(new ByteArrayInputStream(headerLine), chunk);
+	}
+
+	/** Delete spool file. */
+	@Override
+	public void close() {
+		if (!file.delete()) {
+			log.warn("Fail to delete CSV spool file |{file}|.", file);
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Input stream reading a region from spool file. */
+	private static final class ChunkInputStream extends InputStream {
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private long position;
+		private final long end;
+
+		public ChunkInputStream(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			this.buffer.flip();
+			this.position = start;
+			this.end = end;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!fill()) {
+				return -1;
+			}
+			return buffer.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] bytes, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (!fill()) {
+				return -1;
+			}
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(bytes, off, count);
+			return count;
+		}
+
+		private boolean fill() throws IOException {
+			if (buffer.hasRemaining()) {
+				return true;
+			}
+			if (position >= end) {
+				return false;
+			}
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			int count = channel.read(buffer, position);
+			buffer.flip();
+			if (count <= 0) {
+				return false;
+			}
+			position += count;
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Import or export statistics for a view or a descriptor type, exposed via JMX, see {@link CsvMetrics}. Statistics are
+ * updated once per operation, from totals collected by the operation itself, so that recording cost does not depend on
+ * rows count. Per row timing is optional and sampled.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public final class CsvStats implements CsvStatsMBean {
+	private final LongAdder operations = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final AtomicLong activeStreams = new AtomicLong();
+	private final LongAdder rows = new LongAdder();
+	private final LongAdder rejectedRows = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final LongAdder processingNanos = new LongAdder();
+
+	/** Operations latency, in microseconds. */
+	private final LatencyHistogram latency = new LatencyHistogram();
+	/** Sampled rows latency, in nanoseconds. */
+	private final LatencyHistogram rowLatency = new LatencyHistogram();
+
+	CsvStats() {
+	}
+
+	/**
+	 * Signal operation start.
+	 * 
+	 * @return operation start timestamp, in nanoseconds, to be passed to {@link #end(long, long, long, boolean)}.
+	 */
+	long begin() {
+		activeStreams.incrementAndGet();
+		return System.nanoTime();
+	}
+
+	/**
+	 * Signal operation end and record its totals.
+	 * 
+	 * @param start operation start timestamp, as returned by {@link #begin()},
+	 * @param rows processed rows count, zero if rows are recorded separately,
+	 * @param bytes processed bytes count,
+	 * @param failed true if operation failed.
+	 */
+	void end(long start, long rows, long bytes, boolean failed) {
+		long duration = System.nanoTime() - start;
+		activeStreams.decrementAndGet();
+		operations.increment();
+		if (failed) {
+			errors.increment();
+		}
+		this.rows.add(rows);
+		this.bytes.add(bytes);
+		processingNanos.add(duration);
+		latency.record(TimeUnit.NANOSECONDS.toMicros(duration));
+	}
+
+	void addRows(long rows, long rejectedRows) {
+		this.rows.add(rows);
+		this.rejectedRows.add(rejectedRows);
+	}
+
+	void sampleRow(long nanos) {
+		rowLatency.record(nanos);
+	}
+
+	@Override
+	public long getOperations() {
+		return operations.sum();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	@Override
+	public long getActiveStreams() {
+		return activeStreams.get();
+	}
+
+	@Override
+	public long getRows() {
+		return rows.sum();
+	}
+
+	@Override
+	public long getRejectedRows() {
+		return rejectedRows.sum();
+	}
+
+	@Override
+	public long getBytes() {
+		return bytes.sum();
+	}
+
+	@Override
+	public double getRowsPerSecond() {
+		long nanos = processingNanos.sum();
+		return nanos > 0 ? rows.sum() * 1e9 / nanos : 0;
+	}
+
+	@Override
+	public double getMeanMillis() {
+		return latency.mean() / 1000;
+	}
+
+	@Override
+	public long getP50Millis() {
+		return latency.percentile(0.5) / 1000;
+	}
+
+	@Override
+	public long getP90Millis() {
+		return latency.percentile(0.9) / 1000;
+	}
+
+	@Override
+	public long getP99Millis() {
+		return latency.percentile(0.99) / 1000;
+	}
+
+	@Override
+	public long getMaxMillis() {
+		return latency.max() / 1000;
+	}
+
+	@Override
+	public long getSampledRows() {
+		return rowLatency.count();
+	}
+
+	@Override
+	public double getMeanRowNanos() {
+		return rowLatency.mean();
+	}
+
+	@Override
+	public long getP99RowNanos() {
+		return rowLatency.percentile(0.99);
+	}
+
+	@Override
+	public void reset() {
+		operations.reset();
+		errors.reset();
+		rows.reset();
+		rejectedRows.reset();
+		bytes.reset();
+		processingNanos.reset();
+		latency.reset();
+		rowLatency.reset();
+	}
+}
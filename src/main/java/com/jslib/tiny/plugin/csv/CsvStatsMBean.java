@@ -0,0 +1,62 @@
+package com.jslib.tiny.plugin.csv;
+
+/**
+ * Management interface for CSV import or export statistics, see {@link CsvStats}. Statistics are accumulated since plugin
+ * start or since last reset.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public interface CsvStatsMBean {
+	/** Completed operations count, including failed ones. */
+	long getOperations();
+
+	/** Failed operations count. */
+	long getErrors();
+
+	/** Operations currently in progress. */
+	long getActiveStreams();
+
+	/** Processed rows count. */
+	long getRows();
+
+	/**
+	 * Rows rejected because they could not be parsed or bound. Import is aborted on first rejected row so this is in fact
+	 * the count of imports failed on a malformed row; rows processed before the rejected one are included in
+	 * {@link #getRows()}.
+	 */
+	long getRejectedRows();
+
+	/** Processed CSV bytes, before compression or after decompression. */
+	long getBytes();
+
+	/** Processed rows per second of processing time. */
+	double getRowsPerSecond();
+
+	/** Mean operation latency, in milliseconds. */
+	double getMeanMillis();
+
+	/** Median operation latency, approximated, in milliseconds. */
+	long getP50Millis();
+
+	/** Operation latency 90th percentile, approximated, in milliseconds. */
+	long getP90Millis();
+
+	/** Operation latency 99th percentile, approximated, in milliseconds. */
+	long getP99Millis();
+
+	/** Maximum operation latency, in milliseconds. */
+	long getMaxMillis();
+
+	/** Number of rows with timing recorded; rows timing is sampled only if enabled by plugin configuration. */
+	long getSampledRows();
+
+	/** Mean encode or parse time of sampled rows, in nanoseconds. */
+	double getMeanRowNanos();
+
+	/** Encode or parse time 99th percentile of sampled rows, approximated, in nanoseconds. */
+	long getP99RowNanos();
+
+	/** Reset all statistics, except active streams. */
+	void reset();
+}
@@ -0,0 +1,58 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.jslib.lang.IllegalArgumentException;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * CSV reader argument transported as raw <code>text/csv</code> request body. Request body is optionally compressed, as
+ * declared by <code>Content-Encoding</code> header; supported encodings are <code>gzip</code> and <code>deflate</code>.
+ * Since there is no multipart parsing, servlet input stream is handed to CSV reader directly.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public class CsvStreamArgumentsReader extends AbstractCsvArgumentsReader {
+	/** Buffer size used by decompressing streams. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	public CsvStreamArgumentsReader() {
+		super();
+	}
+
+	public CsvStreamArgumentsReader(CsvConfig config) {
+		super(config);
+	}
+
+	@Override
+	protected InputStream getInputStream(HttpServletRequest httpRequest, Type[] formalParameters) throws IOException {
+		InputStream stream = httpRequest.getInputStream();
+
+		String contentEncoding = httpRequest.getHeader("Content-Encoding");
+		if (contentEncoding == null) {
+			return stream;
+		}
+		switch (contentEncoding.trim().toLowerCase()) {
+		case "":
+		case "identity":
+			return stream;
+
+		case "gzip":
+		case "x-gzip":
+			return new GZIPInputStream(stream, BUFFER_SIZE);
+
+		case "deflate":
+			return new InflaterInputStream(stream, new Inflater(), BUFFER_SIZE);
+
+		default:
+			throw new IllegalArgumentException("Not supported content encoding |%s| for CSV stream.", contentEncoding);
+		}
+	}
+}
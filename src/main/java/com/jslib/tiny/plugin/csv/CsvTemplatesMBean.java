@@ -0,0 +1,36 @@
+package com.jslib.tiny.plugin.csv;
+
+/**
+ * Management interface for CSV templates registry and shared descriptors cache statistics.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public interface CsvTemplatesMBean {
+	/** Number of indexed templates. */
+	int getIndexedTemplates();
+
+	/** Number of templates already loaded, that is, with descriptor parsed. */
+	int getLoadedTemplates();
+
+	/** Number of template loads, including reloads. */
+	long getTemplateLoads();
+
+	/** Mean template load time, in milliseconds. */
+	double getMeanLoadMillis();
+
+	/** Number of templates reloaded after change. */
+	long getReloads();
+
+	/** Number of failed templates reloads. */
+	long getReloadErrors();
+
+	/** Descriptors cache hits count. */
+	long getCacheHits();
+
+	/** Descriptors cache misses count. */
+	long getCacheMisses();
+
+	/** Number of descriptors in cache. */
+	int getCachedDescriptors();
+}
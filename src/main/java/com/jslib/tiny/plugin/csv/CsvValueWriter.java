@@ -0,0 +1,116 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.IOException;
+
+import com.jslib.api.csv.CsvFactory;
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+import com.jslib.container.http.encoder.ValueWriter;
+import com.jslib.container.spi.Factory;
+import com.jslib.lang.BugError;
+import com.jslib.util.Classes;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Write controller method return value as <code>text/csv</code> HTTP response. Returned value can be any model supported
+ * by {@link CsvView}, usually a {@link java.util.List}, an {@link Iterable} or a {@link java.util.stream.Stream}. CSV
+ * descriptor is resolved by {@link CsvConfig#getDescriptor(Class)} from rows element type so there is no need for view
+ * template. Element type is the component type for arrays and the class of the first row otherwise; if there is no
+ * descriptor for element type its super classes are tried, so that rows instantiated as subclasses, e.g. proxies, are
+ * encoded with descriptor, and compiled binder, of declared type. Rows are written directly to response output stream as
+ * they are pulled from returned value.
+ * <p>
+ * If returned value has no rows response has content type and header line, if template has one. For empty lists, iterables
+ * and streams element type cannot be determined and response body is empty.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public class CsvValueWriter implements ValueWriter {
+	/** Class logger. */
+	private static final Log log = LogFactory.getLog(CsvValueWriter.class);
+
+	private final CsvFactory csvFactory;
+
+	/** CSV plugin configuration, null if configuration is retrieved from container on every write. */
+	private final CsvConfig config;
+
+	public CsvValueWriter() {
+		this(null);
+	}
+
+	/**
+	 * Create value writer with given CSV plugin configuration, for use outside container, e.g. tests.
+	 * 
+	 * @param config CSV plugin configuration, null to retrieve it from container.
+	 */
+	public CsvValueWriter(CsvConfig config) {
+		log.trace("CsvValueWriter(CsvConfig)");
+		this.csvFactory = Classes.loadService(CsvFactory.class);
+		this.config = config;
+	}
+
+	@Override
+	public void write(HttpServletResponse httpResponse, Object value) throws IOException {
+		if (value == null || !ModelRows.accept(value)) {
+			throw new BugError("Invalid CSV value |%s|. Expected list, iterable or stream.", value);
+		}
+
+		try (ModelRows rows = ModelRows.of(value)) {
+			httpResponse.setContentType(CsvView.CONTENT_TYPE);
+			boolean empty = !rows.hasNext();
+			Object row = empty ? null : rows.next();
+
+			Class<?> elementType = value.getClass().isArray() ? value.getClass().getComponentType() : null;
+			if (elementType == null || elementType.isPrimitive() || elementType == Object.class) {
+				elementType = row != null ? row.getClass() : null;
+			}
+			if (elementType == null) {
+				if (!empty) {
+					throw new BugError("Cannot resolve element type for CSV value |%s|. First row is null.", value);
+				}
+				log.debug("Empty CSV value with unknown element type. Response body is empty.");
+				return;
+			}
+
+			CsvConfig config = this.config != null ? this.config : Factory.getInstance(CsvConfig.class);
+			Class<?> type = getDescriptorType(config, elementType);
+			CsvStats stats = CsvMetrics.typeExport(type);
+			long start = stats.begin();
+			CsvRowWriter writer = new CsvRowWriter(csvFactory, config.getDescriptor(type), config.getBinder(type), httpResponse.getOutputStream());
+			writer.setStats(stats);
+			boolean failed = true;
+			try {
+				if (!empty) {
+					writer.write(row);
+				}
+				while (rows.hasNext()) {
+					writer.write(rows.next());
+				}
+				writer.close();
+				failed = false;
+			} finally {
+				stats.end(start, writer.rows(), writer.bytes(), failed);
+			}
+		}
+	}
+
+	/**
+	 * Get the type of CSV descriptor for rows type. If there is no descriptor for given type try its super classes; this
+	 * allows for rows instantiated as subclasses, e.g. proxies.
+	 * 
+	 * @param config CSV plugin configuration,
+	 * @param type rows type.
+	 * @return CSV descriptor type, rows type or one of its super classes.
+	 * @throws BugError if there is no descriptor configured for rows type.
+	 */
+	private static Class<?> getDescriptorType(CsvConfig config, Class<?> type) {
+		for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+			if (config.getDescriptor(clazz) != null) {
+				return clazz;
+			}
+		}
+		throw new BugError("Missing CSV descriptor for type |%s|.", type);
+	}
+}
@@ -1,20 +1,36 @@
 package com.jslib.tiny.plugin.csv;
 
+import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
 
 import com.jslib.api.csv.CsvDescriptor;
 import com.jslib.api.csv.CsvFactory;
-import com.jslib.api.csv.CsvWriter;
 import com.jslib.api.log.Log;
 import com.jslib.api.log.LogFactory;
 import com.jslib.container.mvc.AbstractView;
+import com.jslib.container.spi.Factory;
 import com.jslib.lang.BugError;
-import com.jslib.lang.ConfigBuilder;
 import com.jslib.lang.ConfigException;
 import com.jslib.util.Classes;
-import com.jslib.util.Types;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 /**
  * View used to export list of objects in CSV format.
@@ -31,6 +47,84 @@ import com.jslib.util.Types;
  * 	&lt;column field="totalRate" /&gt;
  * &lt;/csv&gt;
  * </pre>
+ * <p>
+ * View model can be an array like value, an {@link Iterable}, an {@link java.util.Iterator}, a
+ * {@link java.util.stream.Stream} or a pull style {@link RowSupplier}. Rows are written to output stream as they are
+ * produced so that streamed models are never loaded in memory. Closeable models are closed after serialization.
+ * <p>
+ * Rows flushing can be controlled by view properties:
+ * <ul>
+ * <li><code>flush-rows</code> - flush output after this number of rows, default 0, that is, disabled,
+ * <li><code>flush-bytes</code> - flush output after this number of bytes, default 0, that is, disabled.
+ * </ul>
+ * <p>
+ * For large exports view can use non-blocking output, see {@link AsyncCsvWriter}, so that request thread is released while
+ * rows are transferred to slow clients. Asynchronous export is enabled by view properties:
+ * <ul>
+ * <li><code>async</code> - use asynchronous export if servlet request supports it, default false,
+ * <li><code>async-buffer-size</code> - encoded bytes written per output ready step, default 32KB,
+ * <li><code>async-timeout</code> - asynchronous context timeout, in milliseconds, default 5 minutes; zero disables timeout
+ * but is not recommended since a stalled client would retain export resources indefinitely.
+ * </ul>
+ * If request does not support asynchronous processing view falls back to blocking export.
+ * <p>
+ * View can compress response using encoding negotiated from <code>Accept-Encoding</code> request header; supported
+ * encodings are <code>gzip</code> and <code>deflate</code>. Compression is controlled by view properties:
+ * <ul>
+ * <li><code>compression</code> - enable response compression, default false,
+ * <li><code>compression-level</code> - compression level from 1 to 9, default {@link Deflater#DEFAULT_COMPRESSION},
+ * <li><code>compression-buffer-size</code> - compressor buffer size, default 64KB,
+ * <li><code>compression-min-rows</code> - do not compress models with fewer rows, default 100; applies only to models with
+ * known size, that is, collections and arrays.
+ * </ul>
+ * <p>
+ * In memory models, that is, random access lists and arrays, can be encoded in parallel, see {@link ParallelRowsEncoder}.
+ * Parallel encoding is enabled per template by <code>parallel-threshold</code> attribute of the root element: models with
+ * at least that many rows are encoded on the common fork-join pool. If attribute is missing parallel encoding is disabled.
+ * When parallel encoding is used, flush intervals are replaced by flushing after every encoded range.
+ * <p>
+ * Rows can be exported sorted, without controller sorting the whole model in memory. Sort is enabled by
+ * <code>sort</code> attribute of template root element, with value a sort specification like
+ * <code>country, revenue desc</code>; see {@link CsvSorter}. Rows are sorted in runs of at most
+ * <code>sort-run-size</code> rows, default 100000; larger models are spilled to temporary files and merged into output.
+ * Spilled run files are created in the directory set by <code>sort-dir</code> view property, default system temporary
+ * directory, and are deleted when export ends.
+ * Sorted export is always blocking and serial, that is, it takes precedence over asynchronous and parallel export.
+ * <p>
+ * If controller returns a {@link VersionedModel}, view sets <code>ETag</code> response header computed from template and
+ * model version and answers <code>If-None-Match</code> requests with <code>304 Not Modified</code>, without iterating
+ * model rows. Rendered responses can also be cached, see {@link CsvResponseCache}, so that repeated downloads of unchanged
+ * exports are served from disk; cache is enabled by view property:
+ * <ul>
+ * <li><code>cache</code> - serve versioned models from responses cache, default false.
+ * </ul>
+ * Only blocking exports are stored into cache but cached responses are served for asynchronous views too.
+ * <p>
+ * Large versioned exports can be resumable, so that a download interrupted by client network is continued from where it
+ * stopped, instead of restarted. While a resumable export is rendered, view records checkpoints mapping row indices to
+ * response byte offsets, see {@link CsvCheckpoints}. A resumed export restarts from the last checkpoint before requested
+ * offset: preceding rows are skipped without being encoded, see {@link RowSupplier#skip(long)}, and bytes from checkpoint
+ * to requested offset are encoded but not sent. Resumable export is enabled by view properties:
+ * <ul>
+ * <li><code>resumable</code> - enable resumable export, default false,
+ * <li><code>checkpoint-rows</code> - checkpoints interval, in rows, default 10000.
+ * </ul>
+ * Resumable export response has <code>Accept-Ranges</code> and <code>X-Resume-Token</code> headers, the latter with the
+ * response entity tag. An export is resumed by a standard <code>Range: bytes=offset-</code> request, optionally guarded by
+ * <code>If-Range</code>, answered with <code>206 Partial Content</code>; since response length is known only after an
+ * export completes, range requests for a response never rendered to end are answered with the whole response. Clients
+ * can always resume using <code>X-Resume-Token</code> and <code>X-Resume-Offset</code> request headers; resumed response
+ * echoes <code>X-Resume-Offset</code> header. If token does not match current entity tag, that is, model or template
+ * changed, whole response is sent, without <code>X-Resume-Offset</code>.
+ * <p>
+ * Checkpoints and response length are kept in process memory only, for a bounded number of recent exports; they are not
+ * persisted and not shared by cluster nodes. After a restart, eviction or on another node, range requests are answered
+ * with the whole response, as for an export never completed, and <code>X-Resume-Token</code> resume is still honored but
+ * restarts rendering from first row, encoding and discarding all bytes before requested offset.
+ * <p>
+ * Resumable export requires a versioned model whose rows, for the same version, are always produced in the same order, and
+ * a template with compiled binder. It is always blocking, serial and not compressed and is not supported for sorted
+ * exports.
  * 
  * @author Iulian Rotaru
  * @version draft
@@ -40,7 +134,55 @@ public class CsvView extends AbstractView {
 	static final Log log = LogFactory.getLog(CsvView.class);
 
 	/** Content type for CSV documents, see https://www.iana.org/assignments/media-types/text/csv */
-	private static String CONTENT_TYPE = "text/csv;charset=UTF-8;header=present";
+	static final String CONTENT_TYPE = "text/csv;charset=UTF-8;header=present";
+
+	/** View property for flush interval measured in rows. */
+	private static final String FLUSH_ROWS = "flush-rows";
+	/** View property for flush interval measured in bytes. */
+	private static final String FLUSH_BYTES = "flush-bytes";
+	/** View property for asynchronous export. */
+	private static final String ASYNC = "async";
+	/** View property for asynchronous export buffer size. */
+	private static final String ASYNC_BUFFER_SIZE = "async-buffer-size";
+	/** View property for asynchronous context timeout. */
+	private static final String ASYNC_TIMEOUT = "async-timeout";
+
+	/** View property for response compression. */
+	private static final String COMPRESSION = "compression";
+	/** View property for compression level. */
+	private static final String COMPRESSION_LEVEL = "compression-level";
+	/** View property for compressor buffer size. */
+	private static final String COMPRESSION_BUFFER_SIZE = "compression-buffer-size";
+	/** View property for minimum rows count for which compression is used. */
+	private static final String COMPRESSION_MIN_ROWS = "compression-min-rows";
+	/** View property for responses cache. */
+	private static final String CACHE = "cache";
+	/** View property for resumable export. */
+	private static final String RESUMABLE = "resumable";
+	/** View property for resumable export checkpoints interval, in rows. */
+	private static final String CHECKPOINT_ROWS = "checkpoint-rows";
+	/** View property for sorted export run files directory. */
+	private static final String SORT_DIR = "sort-dir";
+
+	/** Response and request header for resumable export token. */
+	private static final String RESUME_TOKEN = "X-Resume-Token";
+	/** Request header for resumed export offset, echoed by resumed response. */
+	private static final String RESUME_OFFSET = "X-Resume-Offset";
+
+	/** Template attribute for minimum rows count for which parallel encoding is used. */
+	private static final String PARALLEL_THRESHOLD = "parallel-threshold";
+	/** Template attribute for export sort specification. */
+	private static final String SORT = "sort";
+	/** Template attribute for maximum rows count kept in memory by sorted export. */
+	private static final String SORT_RUN_SIZE = "sort-run-size";
+
+	private static final int DEFAULT_ASYNC_BUFFER_SIZE = 32 * 1024;
+	/** Default asynchronous context timeout, in milliseconds. */
+	private static final long DEFAULT_ASYNC_TIMEOUT = 5 * 60 * 1000;
+	private static final int DEFAULT_COMPRESSION_BUFFER_SIZE = 64 * 1024;
+	private static final int DEFAULT_COMPRESSION_MIN_ROWS = 100;
+	private static final int DEFAULT_SORT_RUN_SIZE = 100000;
+	private static final int DEFAULT_CHECKPOINT_ROWS = 10000;
 
 	// implementation note:
 	// view instances can be subject to pooling so take care to not reuse previous state
@@ -59,32 +201,626 @@ public class CsvView extends AbstractView {
 		return CONTENT_TYPE;
 	}
 
-	@SuppressWarnings("unchecked")
+	@Override
+	public void serialize(HttpServletResponse httpResponse) throws IOException {
+		serialize(Factory.getInstance(HttpServletRequest.class), httpResponse);
+	}
+
+	/**
+	 * Serialize model to HTTP response, negotiating conditional, resumed and compressed responses from given HTTP request.
+	 * Container invokes {@link #serialize(HttpServletResponse)} that uses current request.
+	 * 
+	 * @param httpRequest HTTP request,
+	 * @param httpResponse HTTP response.
+	 * @throws IOException if rows fetching or response writing fails.
+	 */
+	public void serialize(HttpServletRequest httpRequest, HttpServletResponse httpResponse) throws IOException {
+		boolean async = Boolean.parseBoolean(meta.getProperty(ASYNC));
+		boolean compression = Boolean.parseBoolean(meta.getProperty(COMPRESSION));
+		String version = unwrapModel();
+		if (!async && !compression && version == null) {
+			super.serialize(httpResponse);
+			return;
+		}
+
+		validateModel();
+		boolean resumable = isResumable(version);
+		ContentEncoding encoding = null;
+		if (compression && !resumable && !isSmallModel()) {
+			encoding = ContentEncoding.negotiate(httpRequest.getHeader("Accept-Encoding"));
+		}
+
+		httpResponse.setContentType(getContentType());
+		if (compression) {
+			httpResponse.addHeader("Vary", "Accept-Encoding");
+		}
+		if (encoding != null) {
+			httpResponse.setHeader("Content-Encoding", encoding.value());
+		}
+
+		CsvResponseCache.Store store = null;
+		Resume resume = null;
+		if (version != null) {
+			String etag = etag(version, encoding);
+			httpResponse.setHeader("ETag", etag);
+			if (matches(httpRequest.getHeader("If-None-Match"), etag)) {
+				log.debug("CSV export |{view}| not modified.", meta.getName());
+				httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				ModelRows.of(model).close();
+				return;
+			}
+			if (resumable) {
+				resume = resume(httpRequest, httpResponse, etag);
+				if (resume == null) {
+					ModelRows.of(model).close();
+					return;
+				}
+			}
+			if (Boolean.parseBoolean(meta.getProperty(CACHE))) {
+				CsvResponseCache cache = CsvResponseCache.instance();
+				CsvResponseCache.Response response = cache.get(etag);
+				if (response != null) {
+					ModelRows.of(model).close();
+					long offset = resume != null ? resume.offset : 0;
+					httpResponse.setContentLengthLong(response.getLength() - offset);
+					try (InputStream inputStream = response.getStream(); OutputStream outputStream = httpResponse.getOutputStream()) {
+						skip(inputStream, offset);
+						inputStream.transferTo(outputStream);
+					}
+					return;
+				}
+				// store only whole responses
+				if (!async && (resume == null || resume.offset == 0)) {
+					store = cache.store(etag, httpResponse.getOutputStream());
+				}
+			}
+		}
+
+		if (resume != null) {
+			OutputStream outputStream = store != null ? store : httpResponse.getOutputStream();
+			if (resume.offset > resume.rowOffset) {
+				outputStream = new SkipOutputStream(outputStream, resume.offset - resume.rowOffset);
+			}
+			try {
+				serialize(outputStream, resume);
+				if (store != null) {
+					store.commit();
+				}
+			} finally {
+				if (store != null) {
+					store.discard();
+				}
+			}
+			return;
+		}
+
+		if (async) {
+			if (getTemplate().config.getAttribute(SORT) != null) {
+				log.debug("Sorted CSV export for view |{view}|. Fallback to blocking CSV export.", meta.getName());
+			}
+			else if (httpRequest.isAsyncSupported()) {
+				serializeAsync(httpRequest, httpResponse, encoding);
+				return;
+			}
+			else {
+				log.debug("Asynchronous processing not supported by request |{request_uri}|. Fallback to blocking CSV export.", httpRequest.getRequestURI());
+			}
+		}
+
+		OutputStream outputStream = store != null ? store : httpResponse.getOutputStream();
+		if (encoding != null) {
+			// compressor is sync flushed so that configured flush intervals are honored
+			outputStream = encoding.wrap(outputStream, getCompressionLevel(), (int) getProperty(COMPRESSION_BUFFER_SIZE, DEFAULT_COMPRESSION_BUFFER_SIZE), true);
+		}
+		if (store == null) {
+			serialize(outputStream);
+			return;
+		}
+		try {
+			serialize(outputStream);
+			store.commit();
+		} finally {
+			store.discard();
+		}
+	}
+
+	private void serializeAsync(HttpServletRequest httpRequest, HttpServletResponse httpResponse, ContentEncoding encoding) throws IOException {
+		CsvDescriptorCache.Template template = getTemplate();
+		CsvDescriptor<?> descriptor = template.descriptor;
+		AsyncContext asyncContext = httpRequest.isAsyncStarted() ? httpRequest.getAsyncContext() : httpRequest.startAsync();
+		asyncContext.setTimeout(getProperty(ASYNC_TIMEOUT, DEFAULT_ASYNC_TIMEOUT));
+
+		ModelRows rows = ModelRows.of(model);
+		int bufferSize = (int) getProperty(ASYNC_BUFFER_SIZE, DEFAULT_ASYNC_BUFFER_SIZE);
+		RowsEncoder encoder = new RowsEncoder(csvFactory, descriptor, template.binder, rows, bufferSize, encoding, getCompressionLevel());
+		CsvStats stats = CsvMetrics.viewExport(meta.getName());
+		encoder.setStats(stats);
+		ServletOutputStream outputStream = httpResponse.getOutputStream();
+		AsyncCsvWriter writer = new AsyncCsvWriter(asyncContext, outputStream, encoder, rows, bufferSize, stats);
+		// listener releases export resources on timeout, e.g. stalled client, and on container errors
+		asyncContext.addListener(writer);
+		outputStream.setWriteListener(writer);
+	}
+
 	@Override
 	public void serialize(OutputStream outputStream) throws IOException {
+		unwrapModel();
+		validateModel();
+		serialize(outputStream, null);
+	}
+
+	/**
+	 * Serialize model rows to given output stream. If resume state is provided, export is serial and starts from resume
+	 * checkpoint row, skipping header if checkpoint is not body start; checkpoints are recorded while rows are written.
+	 * 
+	 * @param outputStream output stream, closed by this method on success,
+	 * @param resume resumable export state, null if export is not resumable.
+	 * @throws IOException if rows fetching or writing fails.
+	 */
+	private void serialize(OutputStream outputStream, Resume resume) throws IOException {
+		long timestamp = new Date().getTime();
+		CsvDescriptorCache.Template template = getTemplate();
+		CsvDescriptor<?> descriptor = template.descriptor;
+		int flushRows = (int) getProperty(FLUSH_ROWS, 0);
+		long flushBytes = getProperty(FLUSH_BYTES, 0);
+
+		CsvStats stats = CsvMetrics.viewExport(meta.getName());
+		long start = stats.begin();
+		long rowsCount = 0;
+		long bytesCount = 0;
+		boolean failed = true;
+		try {
+			String sortSpec = template.config.getAttribute(SORT);
+			if (sortSpec != null && resume == null) {
+				int runSize = (int) getTemplateAttribute(template, SORT_RUN_SIZE, DEFAULT_SORT_RUN_SIZE);
+				if (runSize <= 0) {
+					throw new BugError("Invalid CSV template |%s| sort run size |%d|.", meta.getTemplateFile(), runSize);
+				}
+				String sortDir = meta.getProperty(SORT_DIR);
+				File spillDir = sortDir != null ? new File(sortDir) : null;
+				CsvRowWriter writer = new CsvRowWriter(csvFactory, descriptor, template.binder, outputStream, flushRows, flushBytes);
+				writer.setStats(stats);
+				try (CsvSorter sorter = new CsvSorter(csvFactory, descriptor, template.binder, hasHeader(template), sortSpec, runSize, spillDir); ModelRows rows = ModelRows.of(model)) {
+					try {
+						sorter.write(rows, writer, outputStream, flushRows, flushBytes);
+					} finally {
+						rowsCount = sorter.rows();
+						bytesCount = sorter.bytes();
+					}
+				}
+				failed = false;
+				log.info("Sorted CSV processing last {processing_time} msec.", new Date().getTime() - timestamp);
+				return;
+			}
+
+			List<?> list = asRandomAccessList(model);
+			long parallelThreshold = getTemplateAttribute(template, PARALLEL_THRESHOLD, 0);
+			if (list != null && parallelThreshold > 0 && list.size() >= parallelThreshold && resume == null) {
+				ForkJoinPool pool = ForkJoinPool.commonPool();
+				ParallelRowsEncoder encoder = new ParallelRowsEncoder(csvFactory, descriptor, template.binder, hasHeader(template), pool, pool.getParallelism());
+				bytesCount = encoder.write(list, outputStream, flushRows > 0 || flushBytes > 0);
+				rowsCount = list.size();
+				outputStream.close();
+				failed = false;
+				log.info("Parallel CSV processing last {processing_time} msec.", new Date().getTime() - timestamp);
+				return;
+			}
+
+			CsvRowWriter writer = new CsvRowWriter(csvFactory, descriptor, template.binder, outputStream, flushRows, flushBytes);
+			writer.setStats(stats);
+			if (resume != null && resume.row > 0) {
+				writer.skipHeader();
+			}
+			try (ModelRows rows = resume != null ? ModelRows.of(model, resume.row) : ModelRows.of(model)) {
+				while (rows.hasNext()) {
+					if (resume != null) {
+						resume.checkpoint(writer);
+					}
+					writer.write(rows.next());
+				}
+			} finally {
+				rowsCount = writer.rows();
+				bytesCount = writer.bytes();
+			}
+			writer.close();
+			if (resume != null) {
+				resume.complete(writer);
+			}
+			failed = false;
+		} finally {
+			stats.end(start, rowsCount, bytesCount, failed);
+		}
+
+		log.info("CSV processing last {processing_time} msec.", new Date().getTime() - timestamp);
+	}
+
+	/**
+	 * Replace versioned model with its rows and return model version. If model is not versioned returns null.
+	 * 
+	 * @return model version, possible null.
+	 */
+	private String unwrapModel() {
+		if (!(model instanceof VersionedModel)) {
+			return null;
+		}
+		VersionedModel versionedModel = (VersionedModel) model;
+		model = versionedModel.getRows();
+		return versionedModel.getVersion();
+	}
+
+	/**
+	 * Compute response entity tag from template file, its last modification time and model version. Content encoding, if
+	 * any, is appended so that every representation has its own entity tag.
+	 * 
+	 * @param version model version,
+	 * @param encoding response content encoding, null if response is not compressed.
+	 * @return quoted entity tag.
+	 */
+	private String etag(String version, ContentEncoding encoding) {
+		File templateFile = meta.getTemplateFile().getAbsoluteFile();
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new BugError("Missing SHA-256 message digest.");
+		}
+		digest.update(templateFile.getPath().getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(Long.toString(templateFile.lastModified()).getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(version.getBytes(StandardCharsets.UTF_8));
+
+		StringBuilder etag = new StringBuilder("\"");
+		byte[] hash = digest.digest();
+		for (int i = 0; i < 16; ++i) {
+			etag.append(Character.forDigit((hash[i] >> 4) & 0xF, 16));
+			etag.append(Character.forDigit(hash[i] & 0xF, 16));
+		}
+		if (encoding != null) {
+			etag.append('-');
+			etag.append(encoding.value());
+		}
+		return etag.append('"').toString();
+	}
+
+	/**
+	 * Test if <code>If-None-Match</code> request header matches response entity tag. Uses weak comparison, as required for
+	 * <code>If-None-Match</code>, that is, weak indicator is ignored.
+	 * 
+	 * @param ifNoneMatch request header value, possible null,
+	 * @param etag response entity tag.
+	 * @return true if header matches entity tag.
+	 */
+	private static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if (candidate.equals("*") || candidate.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Test if export of current model is resumable. Log the reason if resumable export is configured but not possible.
+	 * 
+	 * @param version model version, null if model is not versioned.
+	 * @return true if export is resumable.
+	 * @throws IOException if template loading fails.
+	 */
+	private boolean isResumable(String version) throws IOException {
+		if (!Boolean.parseBoolean(meta.getProperty(RESUMABLE))) {
+			return false;
+		}
+		if (version == null) {
+			log.debug("Not versioned model for CSV view |{view}|. Export is not resumable.", meta.getName());
+			return false;
+		}
+		CsvDescriptorCache.Template template = getTemplate();
+		if (template.binder == null) {
+			log.debug("No compiled binder for CSV view |{view}|. Export is not resumable.", meta.getName());
+			return false;
+		}
+		if (template.config.getAttribute(SORT) != null) {
+			log.debug("Sorted CSV export for view |{view}|. Export is not resumable.", meta.getName());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Create resumable export state from request resume headers, setting response resume headers and status. Returns null
+	 * if requested range is not satisfiable; in this case response is already completed with status 416.
+	 * 
+	 * @param httpRequest HTTP request,
+	 * @param httpResponse HTTP response,
+	 * @param etag response entity tag.
+	 * @return resumable export state or null.
+	 */
+	private Resume resume(HttpServletRequest httpRequest, HttpServletResponse httpResponse, String etag) {
+		httpResponse.setHeader("Accept-Ranges", "bytes");
+		httpResponse.setHeader(RESUME_TOKEN, etag);
+		CsvCheckpoints.Checkpoints checkpoints = CsvCheckpoints.instance().get(etag);
+		long length = checkpoints.length();
+		long offset = 0;
+
+		String range = httpRequest.getHeader("Range");
+		String token = httpRequest.getHeader(RESUME_TOKEN);
+		if (range != null && length >= 0 && ifRange(httpRequest.getHeader("If-Range"), etag)) {
+			offset = rangeStart(range, length);
+			if (offset >= length) {
+				httpResponse.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				httpResponse.setHeader("Content-Range", "bytes */" + length);
+				return null;
+			}
+			if (offset > 0) {
+				httpResponse.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				httpResponse.setHeader("Content-Range", String.format("bytes %d-%d/%d", offset, length - 1, length));
+				httpResponse.setContentLengthLong(length - offset);
+			}
+		}
+		else if (etag.equals(token)) {
+			offset = getResumeOffset(httpRequest.getHeader(RESUME_OFFSET));
+			if (length >= 0 && offset > length) {
+				httpResponse.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				httpResponse.setHeader("Content-Range", "bytes */" + length);
+				return null;
+			}
+			httpResponse.setHeader(RESUME_OFFSET, Long.toString(offset));
+			if (length >= 0) {
+				httpResponse.setContentLengthLong(length - offset);
+			}
+		}
+
+		if (offset > 0) {
+			log.debug("Resume CSV export |{view}| from offset |{offset}|.", meta.getName(), offset);
+		}
+		long[] checkpoint = checkpoints.floor(offset);
+		return new Resume(checkpoints, (int) getProperty(CHECKPOINT_ROWS, DEFAULT_CHECKPOINT_ROWS), offset, checkpoint[0], checkpoint[1]);
+	}
+
+	/**
+	 * Test if <code>If-Range</code> request header, if present, matches response entity tag. Uses strong comparison, as
+	 * required for <code>If-Range</code>; modification dates are not supported and never match.
+	 * 
+	 * @param ifRange request header value, possible null,
+	 * @param etag response entity tag.
+	 * @return true if range request should be honored.
+	 */
+	private static boolean ifRange(String ifRange, String etag) {
+		return ifRange == null || ifRange.trim().equals(etag);
+	}
+
+	/**
+	 * Get first byte position from <code>Range</code> request header. Only single byte ranges that extend to response end
+	 * are supported, that is, <code>bytes=offset-</code> or ranges with last byte position beyond response end; for other
+	 * ranges returns zero so that whole response is sent, as allowed by HTTP.
+	 * 
+	 * @param range request header value,
+	 * @param length response length.
+	 * @return range first byte position, zero if range is not supported.
+	 */
+	private static long rangeStart(String range, long length) {
+		range = range.trim();
+		if (!range.startsWith("bytes=") || range.indexOf(',') != -1) {
+			return 0;
+		}
+		int separator = range.indexOf('-');
+		if (separator <= "bytes=".length()) {
+			return 0;
+		}
+		try {
+			long start = Long.parseLong(range.substring("bytes=".length(), separator).trim());
+			String end = range.substring(separator + 1).trim();
+			if (!end.isEmpty() && Long.parseLong(end) < length - 1) {
+				return 0;
+			}
+			return start;
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static long getResumeOffset(String value) {
+		if (value == null) {
+			return 0;
+		}
+		try {
+			return Math.max(0, Long.parseLong(value.trim()));
+		} catch (NumberFormatException e) {
+			log.debug("Invalid CSV resume offset |{offset}|. Send whole response.", value);
+			return 0;
+		}
+	}
+
+	private static void skip(InputStream inputStream, long bytes) throws IOException {
+		while (bytes > 0) {
+			long skipped = inputStream.skip(bytes);
+			if (skipped <= 0) {
+				if (inputStream.read() == -1) {
+					return;
+				}
+				skipped = 1;
+			}
+			bytes -= skipped;
+		}
+	}
+
+	private void validateModel() {
 		if (model == null) {
 			throw new BugError("Missing model for CSV view |%s|.", meta.getName());
 		}
-		if (!Types.isArrayLike(model)) {
-			throw new BugError("Model for CSV view |%s| is not array like.", meta.getName());
+		if (!ModelRows.accept(model)) {
+			throw new BugError("Model for CSV view |%s| is not array like or rows stream.", meta.getName());
 		}
-		long timestamp = new Date().getTime();
-		
-		CsvDescriptor<?> descriptor;
+	}
+
+	/**
+	 * Test if model size is known and below compression threshold. Only collections and arrays have known size; for
+	 * streamed models this predicate always returns false.
+	 * 
+	 * @return true if model is too small to be worth compressing.
+	 */
+	private boolean isSmallModel() {
+		long rowsCount = -1;
+		if (model instanceof Collection) {
+			rowsCount = ((Collection<?>) model).size();
+		}
+		else if (model.getClass().isArray()) {
+			rowsCount = Array.getLength(model);
+		}
+		return rowsCount >= 0 && rowsCount < getProperty(COMPRESSION_MIN_ROWS, DEFAULT_COMPRESSION_MIN_ROWS);
+	}
+
+	private int getCompressionLevel() {
+		int level = (int) getProperty(COMPRESSION_LEVEL, Deflater.DEFAULT_COMPRESSION);
+		if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)) {
+			throw new BugError("Invalid CSV view |%s| compression level |%d|.", meta.getName(), level);
+		}
+		return level;
+	}
+
+	private CsvDescriptorCache.Template getTemplate() throws IOException {
 		try {
-			ConfigBuilder builder = new ConfigBuilder(meta.getTemplateFile());
-			descriptor = csvFactory.getDescriptor(builder.build());
+			return CsvDescriptorCache.instance().getTemplate(meta.getTemplateFile());
 		} catch (ConfigException e) {
 			throw new IOException(e);
 		}
+	}
+
+	private static boolean hasHeader(CsvDescriptorCache.Template template) {
+		return Boolean.parseBoolean(template.config.getAttribute("header"));
+	}
 
-		@SuppressWarnings("rawtypes")
-		CsvWriter writer = csvFactory.getWriter(descriptor, outputStream);
-		for (Object object : Types.asIterable(model)) {
-			writer.write(object);
+	private static List<?> asRandomAccessList(Object model) {
+		if (model instanceof List && model instanceof RandomAccess) {
+			return (List<?>) model;
+		}
+		if (model instanceof Object[]) {
+			return Arrays.asList((Object[]) model);
 		}
-		writer.close();
+		return null;
+	}
 
-		log.info("CSV processing last {processing_time} msec.", new Date().getTime() - timestamp);
+	/**
+	 * Get numeric attribute of template root element or default value if attribute is missing.
+	 * 
+	 * @param template cached template,
+	 * @param name attribute name,
+	 * @param defaultValue default value.
+	 * @return attribute value or default value.
+	 * @throws BugError if attribute value is not numeric.
+	 */
+	private long getTemplateAttribute(CsvDescriptorCache.Template template, String name, long defaultValue) {
+		String value = template.config.getAttribute(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			throw new BugError("Invalid CSV template |%s| attribute |%s|. Expected numeric value but got |%s|.", meta.getTemplateFile(), name, value);
+		}
+	}
+
+	/**
+	 * Get numeric view property or default value if property is missing.
+	 * 
+	 * @param name property name,
+	 * @param defaultValue default value.
+	 * @return property value or default value.
+	 * @throws BugError if property value is not numeric.
+	 */
+	private long getProperty(String name, long defaultValue) {
+		String value = meta.getProperty(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			throw new BugError("Invalid CSV view |%s| property |%s|. Expected numeric value but got |%s|.", meta.getName(), name, value);
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Resumable export state: checkpoints of current response and restart position. Export restarts from checkpoint row,
+	 * whose byte offset is at or before requested offset.
+	 */
+	private static final class Resume {
+		private final CsvCheckpoints.Checkpoints checkpoints;
+		private final int checkpointRows;
+		/** Requested byte offset. */
+		final long offset;
+		/** Restart checkpoint row index and its byte offset. */
+		final long row;
+		final long rowOffset;
+
+		Resume(CsvCheckpoints.Checkpoints checkpoints, int checkpointRows, long offset, long row, long rowOffset) {
+			if (checkpointRows <= 0) {
+				throw new BugError("Invalid CSV checkpoint rows |%d|.", checkpointRows);
+			}
+			this.checkpoints = checkpoints;
+			this.checkpointRows = checkpointRows;
+			this.offset = offset;
+			this.row = row;
+			this.rowOffset = rowOffset;
+		}
+
+		/**
+		 * Record checkpoint before writing next row, if checkpoints interval is reached.
+		 * 
+		 * @param writer rows writer, started from restart checkpoint.
+		 */
+		void checkpoint(CsvRowWriter writer) {
+			long index = row + writer.rows();
+			if (index % checkpointRows == 0 && writer.rows() > 0) {
+				checkpoints.record(index, rowOffset + writer.bytes());
+			}
+		}
+
+		void complete(CsvRowWriter writer) {
+			checkpoints.complete(rowOffset + writer.bytes());
+		}
+	}
+
+	/** Output stream discarding a given number of leading bytes. */
+	private static final class SkipOutputStream extends FilterOutputStream {
+		private long skip;
+
+		SkipOutputStream(OutputStream outputStream, long skip) {
+			super(outputStream);
+			this.skip = skip;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (skip > 0) {
+				--skip;
+				return;
+			}
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			if (skip > 0) {
+				int skipped = (int) Math.min(skip, length);
+				skip -= skipped;
+				offset += skipped;
+				length -= skipped;
+			}
+			if (length > 0) {
+				out.write(bytes, offset, length);
+			}
+		}
 	}
 }
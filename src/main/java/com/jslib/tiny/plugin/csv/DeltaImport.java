@@ -0,0 +1,38 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.IOException;
+
+import com.jslib.api.csv.CsvReader;
+import com.jslib.lang.BugError;
+
+/**
+ * CSV reader argument of a delta import, see {@link CsvDelta}. Plugin cannot tell if controller method succeeded, so delta
+ * import is committed only when controller calls {@link #commit()}, after all delivered records are persisted; otherwise
+ * import is discarded when argument is closed and next import delivers the same records again.
+ * <p>
+ * Both {@link CsvReader} and {@link CsvBatchReader} arguments implement this interface. Committing an
+ * argument that is not in delta mode does nothing, so controller code does not depend on template <code>delta</code>
+ * attribute.
+ *
+ * <pre>
+ * public void importPersons(CsvReader&lt;Person&gt; persons) throws IOException {
+ * 	for (Person person : persons) {
+ * 		dao.save(person);
+ * 	}
+ * 	((DeltaImport) persons).commit();
+ * }
+ * </pre>
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public interface DeltaImport {
+	/**
+	 * Commit delta import, so that records delivered by this import are skipped by next import of the same type. Should be
+	 * called after all records were read and persisted.
+	 *
+	 * @throws IOException if fingerprints file replacing fails.
+	 * @throws BugError if not all records were read.
+	 */
+	void commit() throws IOException;
+}
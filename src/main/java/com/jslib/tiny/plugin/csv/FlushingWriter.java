@@ -0,0 +1,80 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer flushing written rows to the underlying stream at configurable intervals, measured in rows or in bytes. Bytes count
+ * is approximated by characters count. Zero interval disables the respective flush trigger; if both are disabled data is
+ * flushed only when internal buffers are full and on close.
+ * <p>
+ * Writer does not detect rows boundaries; client code should signal row end via {@link #rowEnd()}.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class FlushingWriter extends FilterWriter {
+	private final int flushRows;
+	private final long flushBytes;
+
+	private int rows;
+	private long bytes;
+	/** Characters count since writer creation. */
+	private long count;
+
+	public FlushingWriter(Writer writer, int flushRows, long flushBytes) {
+		super(writer);
+		this.flushRows = flushRows;
+		this.flushBytes = flushBytes;
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		super.write(c);
+		++bytes;
+		++count;
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		super.write(cbuf, off, len);
+		bytes += len;
+		count += len;
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		super.write(str, off, len);
+		bytes += len;
+		count += len;
+	}
+
+	/**
+	 * Get the number of characters written since writer creation.
+	 * 
+	 * @return written characters count.
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * Signal row end and flush if configured interval was reached.
+	 * 
+	 * @throws IOException if flush fails.
+	 */
+	public void rowEnd() throws IOException {
+		++rows;
+		if ((flushRows > 0 && rows >= flushRows) || (flushBytes > 0 && bytes >= flushBytes)) {
+			flush();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		super.flush();
+		rows = 0;
+		bytes = 0;
+	}
+}
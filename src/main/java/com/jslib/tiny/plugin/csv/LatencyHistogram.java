@@ -0,0 +1,79 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram with power of two buckets. Bucket <code>n</code>, for n greater than zero, counts values in
+ * range <code>[2<sup>n-1</sup>, 2<sup>n</sup>)</code>; bucket zero counts zero and negative values. Percentiles are
+ * approximated by bucket upper bound, that is, with at most 100% relative error, enough to spot slow operations without
+ * paying for precise recording.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class LatencyHistogram {
+	private static final int BUCKETS = 64;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long value) {
+		int bucket = value <= 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(value);
+		counts.incrementAndGet(bucket);
+		sum.add(value);
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	public long count() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	public double mean() {
+		long count = count();
+		return count > 0 ? (double) sum.sum() / count : 0;
+	}
+
+	public long max() {
+		return max.get();
+	}
+
+	/**
+	 * Get approximated percentile, that is, upper bound of the bucket containing requested percentile, capped to maximum
+	 * recorded value.
+	 * 
+	 * @param percentile percentile, in range (0, 1].
+	 * @return percentile value or zero if histogram is empty.
+	 */
+	public long percentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			snapshot[i] = counts.get(i);
+			count += snapshot[i];
+		}
+		long rank = (long) Math.ceil(percentile * count);
+		long cumulative = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			cumulative += snapshot[i];
+			if (cumulative >= rank && cumulative > 0) {
+				return i == 0 ? 0 : Math.min(i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1, max.get());
+			}
+		}
+		return 0;
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; ++i) {
+			counts.set(i, 0);
+		}
+		sum.reset();
+		max.set(0);
+	}
+}
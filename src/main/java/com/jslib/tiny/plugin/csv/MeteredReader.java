@@ -0,0 +1,102 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.jslib.api.csv.CsvReader;
+
+/**
+ * Decorator for CSV readers and sources recording imported and rejected rows into import statistics, see
+ * {@link CsvMetrics}. A row is rejected if reader fails to parse or bind it; since reader failure aborts the import,
+ * there is at most one rejected row per import. Rows are counted locally and recorded once, on close; timing of sampled
+ * rows, if enabled, is recorded as rows are read.
+ * <p>
+ * Row timing spans both iterator {@link Iterator#hasNext()} and {@link Iterator#next()} since readers are free to
+ * parse the row on either of them; for example, {@link CompiledCsvReader} parses and binds the row on <code>hasNext</code>
+ * and merely returns it on <code>next</code>.
+ * 
+ * @param <T> type of decoded objects.
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class MeteredReader<T> implements CsvReader<T>, CsvSource<T> {
+	private final Iterable<T> reader;
+	private final Closeable closeable;
+	private final CsvStats stats;
+	private final int rowSampling = CsvMetrics.getRowSampling();
+
+	private long rows;
+	private long rejectedRows;
+	private boolean closed;
+
+	public <R extends Iterable<T> & Closeable> MeteredReader(R reader, CsvStats stats) {
+		this.reader = reader;
+		this.closeable = reader;
+		this.stats = stats;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		Iterator<T> iterator = reader.iterator();
+		return new Iterator<T>() {
+			/** Start timestamp of currently sampled row or zero if current row is not sampled. */
+			private long start;
+
+			@Override
+			public boolean hasNext() {
+				sample();
+				try {
+					return iterator.hasNext();
+				} catch (RuntimeException e) {
+					++rejectedRows;
+					throw e;
+				}
+			}
+
+			@Override
+			public T next() {
+				sample();
+				T object;
+				try {
+					object = iterator.next();
+				} catch (NoSuchElementException e) {
+					throw e;
+				} catch (RuntimeException e) {
+					++rejectedRows;
+					throw e;
+				}
+				++rows;
+				if (start != 0) {
+					stats.sampleRow(System.nanoTime() - start);
+					start = 0;
+				}
+				return object;
+			}
+
+			/** Start current row timing, if row is sampled and its timing not already started by previous call. */
+			private void sample() {
+				if (start == 0 && rowSampling > 0 && (rows + rejectedRows + 1) % rowSampling == 0) {
+					start = System.nanoTime();
+				}
+			}
+		};
+	}
+
+	@Override
+	public void commit() throws IOException {
+		if (reader instanceof CsvSource) {
+			((CsvSource<T>) reader).commit();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			stats.addRows(rows, rejectedRows);
+		}
+		closeable.close();
+	}
+}
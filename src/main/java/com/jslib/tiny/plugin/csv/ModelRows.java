@@ -0,0 +1,170 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.stream.Stream;
+
+import com.jslib.util.Types;
+
+/**
+ * Rows iterator adapting supported CSV view models. Supported models are array like values, as defined by
+ * {@link Types#isArrayLike(Object)}, {@link Iterable}, {@link Iterator}, {@link Stream} and {@link RowSupplier}. Rows are
+ * pulled from model one at a time so that streamed models are never loaded in memory.
+ * <p>
+ * Closing this rows iterator closes the model too, if model is closeable.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class ModelRows implements Iterator<Object>, Closeable {
+	/**
+	 * Test if model is supported by CSV view.
+	 * 
+	 * @param model view model, not null.
+	 * @return true if model can be iterated as CSV rows.
+	 */
+	public static boolean accept(Object model) {
+		return Types.isArrayLike(model) || model instanceof Iterable || model instanceof Iterator || model instanceof Stream || model instanceof RowSupplier;
+	}
+
+	/**
+	 * Create rows iterator for given model. Caller should ensure model is supported, see {@link #accept(Object)}.
+	 * 
+	 * @param model view model.
+	 * @return rows iterator.
+	 */
+	@SuppressWarnings("unchecked")
+	public static ModelRows of(Object model) {
+		if (Types.isArrayLike(model)) {
+			return new ModelRows(((Iterable<Object>) Types.asIterable(model)).iterator(), model);
+		}
+		if (model instanceof Iterable) {
+			return new ModelRows(((Iterable<Object>) model).iterator(), model);
+		}
+		if (model instanceof Iterator) {
+			return new ModelRows((Iterator<Object>) model, model);
+		}
+		if (model instanceof Stream) {
+			return new ModelRows(((Stream<Object>) model).iterator(), model);
+		}
+		return new ModelRows(new SupplierIterator((RowSupplier<Object>) model), model);
+	}
+
+	/**
+	 * Create rows iterator for given model, positioned after given number of rows. Random access lists and object arrays
+	 * are positioned directly, row suppliers skip rows on data source, see {@link RowSupplier#skip(long)}, and other models
+	 * are iterated with skipped rows discarded. If model has fewer rows than requested, returned iterator has no rows.
+	 * 
+	 * @param model view model,
+	 * @param skip the number of rows to skip.
+	 * @return rows iterator.
+	 * @throws IOException if rows skipping fails; model is closed in this case.
+	 */
+	@SuppressWarnings("unchecked")
+	public static ModelRows of(Object model, long skip) throws IOException {
+		if (skip <= 0) {
+			return of(model);
+		}
+		if ((model instanceof List && model instanceof RandomAccess) || model instanceof Object[]) {
+			List<Object> list = model instanceof List ? (List<Object>) model : Arrays.asList((Object[]) model);
+			return new ModelRows(list.subList((int) Math.min(skip, list.size()), list.size()).iterator(), model);
+		}
+
+		ModelRows rows = of(model);
+		try {
+			if (rows.iterator instanceof SupplierIterator) {
+				((SupplierIterator) rows.iterator).skip(skip);
+			}
+			else {
+				for (long i = 0; i < skip && rows.hasNext(); ++i) {
+					rows.next();
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			rows.close();
+			throw e;
+		}
+		return rows;
+	}
+
+	private final Iterator<Object> iterator;
+	private final Object model;
+
+	private ModelRows(Iterator<Object> iterator, Object model) {
+		this.iterator = iterator;
+		this.model = model;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return iterator.hasNext();
+	}
+
+	@Override
+	public Object next() {
+		return iterator.next();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (model instanceof Closeable) {
+			((Closeable) model).close();
+			return;
+		}
+		if (model instanceof AutoCloseable) {
+			try {
+				((AutoCloseable) model).close();
+			} catch (IOException | RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Iterator with one row look ahead over pull style rows supplier. */
+	private static final class SupplierIterator implements Iterator<Object> {
+		private final RowSupplier<Object> supplier;
+		private Object next;
+		private boolean fetched;
+
+		public SupplierIterator(RowSupplier<Object> supplier) {
+			this.supplier = supplier;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (!fetched) {
+				try {
+					next = supplier.next();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				fetched = true;
+			}
+			return next != null;
+		}
+
+		@Override
+		public Object next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			fetched = false;
+			return next;
+		}
+
+		public void skip(long rows) throws IOException {
+			fetched = false;
+			supplier.skip(rows);
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.jslib.api.csv.CsvDescriptor;
+import com.jslib.api.csv.CsvFactory;
+import com.jslib.lang.BugError;
+
+/**
+ * CSV reader argument that parses and binds CSV records on worker threads. Uploaded CSV stream is spooled to a temporary
+ * file and split into chunks on records boundaries, see {@link CsvSpool}; chunks are parsed in parallel and resulting
+ * objects are delivered in file order or in chunks completion order, as configured by {@link CsvConfig#isImportOrdered()}.
+ * Chunk readers share the same import dictionary, see {@link CsvDictionary}, so that low cardinality values are canonical
+ * across chunks.
+ * <p>
+ * In order to keep memory usage bounded, the number of chunks parsed but not yet consumed is limited to twice the import
+ * parallelism. This reader can be iterated only once.
+ * 
+ * <pre>
+ * public void importPersons(ParallelCsvReader&lt;Person&gt; persons) {
+ * 	for (Person person : persons) {
+ * 		...
+ * 	}
+ * }
+ * </pre>
+ * 
+ * @param <T> type of imported objects.
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public final class ParallelCsvReader<T> implements Iterable<T>, Closeable {
+	private final CsvFactory csvFactory;
+	private final CsvDescriptor<T> descriptor;
+	private final CsvBinder<T> binder;
+	/** Dictionary shared by all chunk readers, null if template has no dictionary columns or is not compiled. */
+	private final CsvDictionary dictionary;
+	private final CsvSpool spool;
+	private final boolean ordered;
+	private final int window;
+
+	private final ExecutorService executor;
+	private final CompletionService<List<T>> completionService;
+	private final Deque<Future<List<T>>> pending = new ArrayDeque<>();
+	private int submittedChunks;
+
+	private boolean iterated;
+
+	ParallelCsvReader(CsvFactory csvFactory, CsvDescriptor<T> descriptor, CsvBinder<T> binder, CsvSpool spool, ExecutorService executor, int parallelism, boolean ordered) {
+		this.csvFactory = csvFactory;
+		this.descriptor = descriptor;
+		this.binder = binder;
+		this.dictionary = binder != null ? binder.createDictionary() : null;
+		this.spool = spool;
+		this.ordered = ordered;
+		this.window = 2 * parallelism;
+		this.executor = executor;
+		// completion service queue is used only for unordered delivery; for ordered delivery it would retain parsed chunks
+		this.completionService = ordered ? null : new ExecutorCompletionService<>(executor);
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		if (iterated) {
+			throw new BugError("Attempt to iterate parallel CSV reader twice.");
+		}
+		iterated = true;
+		fillWindow();
+		return new ChunksIterator();
+	}
+
+	/**
+	 * Start parsing first chunks, before iteration. Used when reader is created ahead of consumption, e.g. for multiple CSV
+	 * parts, so that parsing overlaps with consuming other readers.
+	 */
+	void prefetch() {
+		fillWindow();
+	}
+
+	/** Cancel pending chunks parsing and delete spool file. */
+	@Override
+	public void close() {
+		for (Future<List<T>> future : pending) {
+			future.cancel(true);
+		}
+		pending.clear();
+		spool.close();
+	}
+
+	private void fillWindow() {
+		while (pending.size() < window && submittedChunks < spool.getChunksCount()) {
+			final int index = submittedChunks++;
+			Callable<List<T>> task = () -> parseChunk(index);
+			pending.add(ordered ? executor.submit(task) : completionService.submit(task));
+		}
+	}
+
+	private List<T> parseChunk(int index) throws IOException {
+		List<T> objects = new ArrayList<>();
+		try (CsvSource<T> reader = CsvSource.open(csvFactory, descriptor, binder, dictionary, spool.openChunk(index))) {
+			for (T object : reader) {
+				objects.add(object);
+			}
+		}
+		return objects;
+	}
+
+	private List<T> nextChunk() {
+		Future<List<T>> future;
+		try {
+			if (ordered) {
+				future = pending.removeFirst();
+			}
+			else {
+				future = completionService.take();
+				pending.remove(future);
+			}
+			List<T> objects = future.get();
+			fillWindow();
+			return objects;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BugError("Interrupted while waiting for CSV chunk parsing.");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof IOException) {
+				throw new UncheckedIOException((IOException) cause);
+			}
+			throw new BugError("CSV chunk parsing fail: %s", cause);
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private final class ChunksIterator implements Iterator<T> {
+		private Iterator<T> chunk = Collections.emptyIterator();
+
+		@Override
+		public boolean hasNext() {
+			while (!chunk.hasNext()) {
+				if (pending.isEmpty()) {
+					return false;
+				}
+				chunk = nextChunk().iterator();
+			}
+			return true;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return chunk.next();
+		}
+	}
+}
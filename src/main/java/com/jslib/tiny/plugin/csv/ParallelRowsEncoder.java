@@ -0,0 +1,165 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.jslib.api.csv.CsvDescriptor;
+import com.jslib.api.csv.CsvFactory;
+import com.jslib.lang.BugError;
+
+/**
+ * Encode in memory rows list on worker threads. Rows list is split into ranges and every range is encoded into its own
+ * bytes buffer; buffers are written to output stream in ranges order, so output is identical to serial encoding. Every
+ * range is encoded by its own CSV writer; if descriptor has header, header line is discarded from all ranges but the first.
+ * <p>
+ * In order to keep memory bounded, the number of ranges encoded but not yet written is limited to twice the parallelism
+ * and range size is limited in rows and in bytes: first ranges have {@link #MIN_RANGE_SIZE} rows, then range size is
+ * adjusted from average encoded row size so that a range has about {@link #MAX_RANGE_BYTES} bytes, but no more than
+ * {@link #MAX_RANGE_SIZE} rows. This way encoded bytes kept in memory do not depend on rows count.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class ParallelRowsEncoder {
+	/** Rows count for ranges encoded before average row size is known. */
+	private static final int MIN_RANGE_SIZE = 1000;
+	/** Maximum rows count per range. */
+	private static final int MAX_RANGE_SIZE = 10000;
+	/** Target encoded bytes per range. */
+	private static final int MAX_RANGE_BYTES = 1024 * 1024;
+	/** Estimated encoded row size used for buffer capacity before average row size is known. */
+	private static final int ROW_BYTES_ESTIMATE = 64;
+
+	private final CsvFactory csvFactory;
+	private final CsvDescriptor<?> descriptor;
+	private final CsvBinder<?> binder;
+	private final boolean header;
+	private final ExecutorService executor;
+	private final int parallelism;
+
+	public ParallelRowsEncoder(CsvFactory csvFactory, CsvDescriptor<?> descriptor, CsvBinder<?> binder, boolean header, ExecutorService executor, int parallelism) {
+		this.csvFactory = csvFactory;
+		this.descriptor = descriptor;
+		this.binder = binder;
+		this.header = header;
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Encode rows and write them to output stream, in order. Output stream is flushed after every range if requested but is
+	 * not closed.
+	 * 
+	 * @param rows rows list, should support efficient random access,
+	 * @param outputStream output stream,
+	 * @param flush flush output stream after every range.
+	 * @return written bytes count.
+	 * @throws IOException if writing to output stream fails.
+	 */
+	public long write(List<?> rows, OutputStream outputStream, boolean flush) throws IOException {
+		int window = 2 * parallelism;
+		int rangeSize = MIN_RANGE_SIZE;
+		long rowBytes = ROW_BYTES_ESTIMATE;
+
+		Deque<Future<Range>> pending = new ArrayDeque<>();
+		int start = 0;
+		long writtenRows = 0;
+		long bytes = 0;
+		try {
+			while (start < rows.size() || !pending.isEmpty()) {
+				while (pending.size() < window && start < rows.size()) {
+					List<?> range = rows.subList(start, Math.min(start + rangeSize, rows.size()));
+					boolean skipHeader = header && start > 0;
+					int capacity = (int) Math.min(MAX_RANGE_BYTES, range.size() * rowBytes);
+					pending.add(executor.submit(() -> encode(range, skipHeader, capacity)));
+					start += range.size();
+				}
+				Range range = pending.removeFirst().get();
+				range.writeTo(outputStream);
+				bytes += range.length();
+				if (flush) {
+					outputStream.flush();
+				}
+
+				// adjust next ranges size to average row size, header line included but negligible
+				writtenRows += range.rows;
+				rowBytes = Math.max(1, bytes / writtenRows);
+				rangeSize = (int) Math.max(1, Math.min(MAX_RANGE_SIZE, MAX_RANGE_BYTES / rowBytes));
+			}
+			return bytes;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for CSV rows encoding.");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new BugError("CSV rows encoding fail: %s", cause);
+		} finally {
+			for (Future<Range> future : pending) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	private Range encode(List<?> rows, boolean skipHeader, int capacity) {
+		Range range = new Range(rows.size(), capacity);
+		try {
+			CsvRowWriter writer = new CsvRowWriter(csvFactory, descriptor, binder, range);
+			for (Object row : rows) {
+				writer.write(row);
+			}
+			writer.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (skipHeader) {
+			range.skipLine();
+		}
+		return range;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Encoded range bytes, with an offset used to discard header line. */
+	private static final class Range extends ByteArrayOutputStream {
+		/** Encoded rows count. */
+		final int rows;
+		private int offset;
+
+		public Range(int rows, int capacity) {
+			super(capacity);
+			this.rows = rows;
+		}
+
+		public void skipLine() {
+			for (int i = 0; i < count; ++i) {
+				if (buf[i] == '\n') {
+					offset = i + 1;
+					return;
+				}
+			}
+		}
+
+		public int length() {
+			return count - offset;
+		}
+
+		@Override
+		public synchronized void writeTo(OutputStream outputStream) throws IOException {
+			outputStream.write(buf, offset, count - offset);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Pull style rows producer usable as model for {@link CsvView}. It is designed for cursor like data sources, for example
+ * database result sets, where rows are fetched one by one and the source should be released after all rows are consumed.
+ * View invokes {@link #next()} till it returns null and closes the supplier after serialization completes, successfully or
+ * not.
+ * 
+ * @param <T> type of supplied rows.
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public interface RowSupplier<T> extends Closeable {
+	/**
+	 * Get next row or null if there are no more rows.
+	 * 
+	 * @return next row, possible null.
+	 * @throws IOException if row fetching fails.
+	 */
+	T next() throws IOException;
+
+	/**
+	 * Skip given number of rows, used by view to resume an interrupted export. Default implementation fetches and discards
+	 * rows; cursor like suppliers should override it to position data source directly, e.g. using query offset.
+	 * 
+	 * @param rows the number of rows to skip.
+	 * @return the number of rows actually skipped, less than requested if there are no more rows.
+	 * @throws IOException if rows fetching fails.
+	 */
+	default long skip(long rows) throws IOException {
+		long skipped = 0;
+		while (skipped < rows && next() != null) {
+			++skipped;
+		}
+		return skipped;
+	}
+
+	/**
+	 * Release resources used by this rows supplier. Default implementation does nothing.
+	 * 
+	 * @throws IOException if resources release fails.
+	 */
+	@Override
+	default void close() throws IOException {
+	}
+}
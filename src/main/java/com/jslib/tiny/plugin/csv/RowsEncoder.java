@@ -0,0 +1,124 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import com.jslib.api.csv.CsvDescriptor;
+import com.jslib.api.csv.CsvFactory;
+
+/**
+ * Encode rows into a reusable bytes buffer, in steps. Every step encodes rows till buffer reaches requested size or there
+ * are no more rows; encoded bytes are then transferred to output stream and buffer is reset. This is useful when caller
+ * controls when output is written, for example on non-blocking output.
+ * <p>
+ * If content encoding is provided, encoded rows are compressed into buffer and buffer size refers to compressed bytes.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class RowsEncoder implements Closeable {
+	private final Iterator<?> rows;
+	private final Buffer buffer;
+	private final CsvRowWriter writer;
+
+	private boolean closed;
+
+	public RowsEncoder(CsvFactory csvFactory, CsvDescriptor<?> descriptor, CsvBinder<?> binder, Iterator<?> rows, int bufferSize) throws IOException {
+		this(csvFactory, descriptor, binder, rows, bufferSize, null, 0);
+	}
+
+	public RowsEncoder(CsvFactory csvFactory, CsvDescriptor<?> descriptor, CsvBinder<?> binder, Iterator<?> rows, int bufferSize, ContentEncoding encoding, int compressionLevel) throws IOException {
+		this.rows = rows;
+		this.buffer = new Buffer(bufferSize);
+		// compressor is not sync flushed on writer flush in order to preserve compression ratio
+		OutputStream target = encoding != null ? encoding.wrap(buffer, compressionLevel, bufferSize, false) : buffer;
+		this.writer = new CsvRowWriter(csvFactory, descriptor, binder, target);
+	}
+
+	/**
+	 * Encode rows till buffer reaches given size or there are no more rows. After last row CSV writer is closed so that
+	 * trailing bytes, if any, are also stored into buffer.
+	 * 
+	 * @param size minimum buffer size to reach, in bytes.
+	 * @return true if there are more rows to encode.
+	 * @throws IOException if encoding fails.
+	 */
+	public boolean encode(int size) throws IOException {
+		while (buffer.size() + writer.buffered() < size && rows.hasNext()) {
+			writer.write(rows.next());
+		}
+		if (!rows.hasNext()) {
+			close();
+			return false;
+		}
+		writer.flush();
+		return true;
+	}
+
+	/**
+	 * Record timing of sampled rows into given statistics, see {@link CsvRowWriter#setStats(CsvStats)}.
+	 * 
+	 * @param stats statistics for sampled rows timing.
+	 */
+	public void setStats(CsvStats stats) {
+		writer.setStats(stats);
+	}
+
+	/**
+	 * Get the number of rows encoded so far.
+	 * 
+	 * @return encoded rows count.
+	 */
+	public long rows() {
+		return writer.rows();
+	}
+
+	/**
+	 * Get the number of CSV bytes encoded so far, before compression.
+	 * 
+	 * @return encoded bytes count.
+	 */
+	public long bytes() {
+		return writer.bytes();
+	}
+
+	/**
+	 * Get the number of encoded bytes not yet transferred.
+	 * 
+	 * @return encoded bytes count.
+	 */
+	public int size() {
+		return buffer.size();
+	}
+
+	/**
+	 * Transfer encoded bytes to output stream, without copying, and reset buffer.
+	 * 
+	 * @param outputStream output stream.
+	 * @throws IOException if writing to output stream fails.
+	 */
+	public void writeTo(OutputStream outputStream) throws IOException {
+		buffer.writeTo(outputStream);
+		buffer.reset();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			writer.close();
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/** Bytes buffer with initial capacity. */
+	private static final class Buffer extends ByteArrayOutputStream {
+		public Buffer(int capacity) {
+			super(capacity);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package com.jslib.tiny.plugin.csv;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Reusable, growable bytes buffer for UTF-8 CSV encoding. Strings are encoded and CSV escaped in a single scan, directly
+ * into buffer, and integers are formatted without intermediate strings so that encoding a row does not create garbage.
+ * 
+ * @author Iulian Rotaru
+ * @version draft
+ */
+final class Utf8Buffer {
+	private static final byte[] LONG_MIN_VALUE = Long.toString(Long.MIN_VALUE).getBytes();
+
+	private byte[] bytes;
+	private int size;
+
+	public Utf8Buffer(int capacity) {
+		this.bytes = new byte[capacity];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Truncate buffer to given size, discarding bytes appended after it. Used to roll back a partially encoded row.
+	 * 
+	 * @param size buffer size to restore, not greater than current size.
+	 */
+	public void truncate(int size) {
+		this.size = size;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public void append(byte[] bytes) {
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, this.bytes, size, bytes.length);
+		size += bytes.length;
+	}
+
+	/**
+	 * Append decimal representation of integer value, without creating intermediate string.
+	 * 
+	 * @param value integer value, byte, short and int values are widened.
+	 */
+	public void append(long value) {
+		if (value == Long.MIN_VALUE) {
+			append(LONG_MIN_VALUE);
+			return;
+		}
+		ensureCapacity(20);
+		if (value < 0) {
+			bytes[size++] = '-';
+			value = -value;
+		}
+		int digits = 1;
+		for (long limit = 10; digits < 19 && value >= limit; limit *= 10) {
+			++digits;
+		}
+		int position = size + digits;
+		size = position;
+		do {
+			bytes[--position] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+	}
+
+	/**
+	 * Append character encoded as UTF-8, doubling it if it is a quote. Unpaired surrogate is replaced by question mark, as
+	 * standard UTF-8 encoder does.
+	 * 
+	 * @param c character to append.
+	 */
+	public void appendEscaped(char c) {
+		ensureCapacity(3);
+		if (c == '"') {
+			bytes[size++] = '"';
+			bytes[size++] = '"';
+		}
+		else if (c < 0x80) {
+			bytes[size++] = (byte) c;
+		}
+		else if (c < 0x800) {
+			bytes[size++] = (byte) (0xC0 | (c >> 6));
+			bytes[size++] = (byte) (0x80 | (c & 0x3F));
+		}
+		else if (Character.isSurrogate(c)) {
+			bytes[size++] = '?';
+		}
+		else {
+			bytes[size++] = (byte) (0xE0 | (c >> 12));
+			bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+			bytes[size++] = (byte) (0x80 | (c & 0x3F));
+		}
+	}
+
+	/**
+	 * Append string encoded as UTF-8 with quotes doubled, as required for quoted CSV values. String is scanned only once.
+	 * 
+	 * @param value string value.
+	 */
+	public void appendEscaped(String value) {
+		int length = value.length();
+		// worst case is three bytes per character; quote doubling takes only two
+		ensureCapacity(3 * length);
+		byte[] bytes = this.bytes;
+		int position = size;
+		for (int i = 0; i < length; ++i) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				if (c == '"') {
+					bytes[position++] = '"';
+				}
+				bytes[position++] = (byte) c;
+			}
+			else if (c < 0x800) {
+				bytes[position++] = (byte) (0xC0 | (c >> 6));
+				bytes[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+				bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+			}
+			else if (Character.isSurrogate(c)) {
+				bytes[position++] = '?';
+			}
+			else {
+				bytes[position++] = (byte) (0xE0 | (c >> 12));
+				bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				bytes[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		size = position;
+	}
+
+	public byte[] toByteArray() {
+		return Arrays.copyOf(bytes, size);
+	}
+
+	/**
+	 * Write buffer content to output stream. Buffer is not cleared.
+	 * 
+	 * @param outputStream output stream.
+	 * @throws IOException if writing to output stream fails.
+	 */
+	public void writeTo(OutputStream outputStream) throws IOException {
+		outputStream.write(bytes, 0, size);
+	}
+
+	private void ensureCapacity(int length) {
+		if (size + length > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + length));
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.jslib.tiny.plugin.csv;
+
+/**
+ * CSV view model tagged with a version supplied by controller. Version is an opaque string that changes whenever exported
+ * rows change, for example a database table modification counter or a content fingerprint. View uses it, together with
+ * template, to compute response entity tag, answer conditional requests with <code>304 Not Modified</code> and, if view
+ * cache is enabled, to serve previously rendered response; see {@link CsvView}.
+ * <p>
+ * Wrapped rows can be any model supported by CSV view. If response is served without rendering, rows are not iterated,
+ * but they are still closed, if closeable; this way a lazy {@link RowSupplier} does not query data source for unchanged
+ * exports.
+ *
+ * <pre>
+ * &#64;Export
+ * public VersionedModel exportLeads() {
+ * 	return new VersionedModel(dao.getLeadsCursor(), Long.toString(dao.getLeadsVersion()));
+ * }
+ * </pre>
+ *
+ * @author Iulian Rotaru
+ * @version draft
+ */
+public final class VersionedModel {
+	private final Object rows;
+	private final String version;
+
+	/**
+	 * Create versioned model.
+	 *
+	 * @param rows rows model,
+	 * @param version rows version.
+	 * @throws IllegalArgumentException if rows or version is null.
+	 */
+	public VersionedModel(Object rows, String version) {
+		if (rows == null) {
+			throw new IllegalArgumentException("Null rows model.");
+		}
+		if (version == null) {
+			throw new IllegalArgumentException("Null model version.");
+		}
+		this.rows = rows;
+		this.version = version;
+	}
+
+	public Object getRows() {
+		return rows;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+}
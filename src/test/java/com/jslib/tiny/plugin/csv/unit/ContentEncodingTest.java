@@ -0,0 +1,61 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+public class ContentEncodingTest {
+	@Test
+	public void negotiate() throws Exception {
+		assertNull(negotiate(null));
+		assertNull(negotiate(""));
+		assertEquals("gzip", negotiate("gzip"));
+		assertEquals("gzip", negotiate("x-gzip"));
+		assertEquals("deflate", negotiate("deflate"));
+		assertEquals("gzip", negotiate("deflate, gzip"));
+		assertNull(negotiate("br"));
+	}
+
+	@Test
+	public void negotiate_QValues() throws Exception {
+		assertNull(negotiate("gzip;q=0"));
+		assertNull(negotiate("gzip; q=0.0, deflate;q=0"));
+		assertEquals("deflate", negotiate("gzip;q=0, deflate;q=0.5"));
+		assertEquals("gzip", negotiate("gzip;q=0.001"));
+		// invalid q-value is not accepted
+		assertEquals("deflate", negotiate("gzip;q=x, deflate"));
+	}
+
+	@Test
+	public void negotiate_Any() throws Exception {
+		assertEquals("gzip", negotiate("*"));
+		assertEquals("deflate", negotiate("gzip;q=0, *"));
+		assertEquals("gzip", negotiate("deflate;q=0, *;q=0.1"));
+		// explicit coding takes precedence over wildcard
+		assertEquals("gzip", negotiate("gzip, *;q=0"));
+		assertNull(negotiate("*;q=0"));
+	}
+
+	@Test
+	public void negotiate_IdentityRefused() throws Exception {
+		assertEquals("gzip", negotiate("identity;q=0, gzip"));
+		assertEquals("deflate", negotiate("identity;q=0, gzip;q=0, deflate"));
+		// if no supported coding is accepted response is not compressed, even if identity is refused
+		assertNull(negotiate("identity;q=0"));
+		assertNull(negotiate("identity;q=0, *;q=0"));
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private static String negotiate(String acceptEncoding) throws Exception {
+		Class<?> contentEncoding = Class.forName("com.jslib.tiny.plugin.csv.ContentEncoding");
+		Method negotiate = contentEncoding.getDeclaredMethod("negotiate", String.class);
+		negotiate.setAccessible(true);
+		Object encoding = negotiate.invoke(null, acceptEncoding);
+		return encoding != null ? encoding.toString().toLowerCase() : null;
+	}
+}
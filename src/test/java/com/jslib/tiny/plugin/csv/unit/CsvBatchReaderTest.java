@@ -0,0 +1,115 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jslib.lang.BugError;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.tiny.plugin.csv.CsvBatchReader;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.CsvStreamArgumentsReader;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpRequest;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+
+public class CsvBatchReaderTest {
+	private CsvStreamArgumentsReader reader;
+	private CsvBatchReader<Person> batches;
+
+	@Before
+	public void beforeTest() throws Exception {
+		CsvConfig config = new CsvConfig();
+		config.config(new ConfigBuilder("<csv><repository path='fixture' files-pattern='person.xml' /><import batch-size='4' /></csv>").build());
+		reader = new CsvStreamArgumentsReader(config);
+		batches = read(10);
+	}
+
+	@After
+	public void afterTest() {
+		reader.clean();
+	}
+
+	@Test
+	public void getBatchSize() {
+		assertEquals(4, batches.getBatchSize());
+	}
+
+	@Test
+	public void iterate() {
+		List<Integer> sizes = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		for (List<Person> batch : batches) {
+			sizes.add(batch.size());
+			for (Person person : batch) {
+				names.add(person.getName());
+			}
+		}
+
+		// last batch is smaller than batch size
+		assertEquals("[4, 4, 2]", sizes.toString());
+		assertEquals(10, names.size());
+		assertEquals("Person 0", names.get(0));
+		assertEquals("Person 9", names.get(9));
+	}
+
+	@Test
+	public void iterate_ReuseBatch() {
+		Iterator<List<Person>> iterator = batches.iterator();
+		List<Person> first = iterator.next();
+		assertEquals("Person 0", first.get(0).getName());
+		List<Person> copy = new ArrayList<>(first);
+
+		// next iteration step refills the same list instance
+		List<Person> second = iterator.next();
+		assertSame(first, second);
+		assertEquals("Person 4", first.get(0).getName());
+		assertEquals("Person 0", copy.get(0).getName());
+
+		iterator.next();
+		assertFalse(iterator.hasNext());
+		// list is cleared when iteration completes
+		assertEquals(0, first.size());
+	}
+
+	@Test(expected = BugError.class)
+	public void iterate_Twice() {
+		batches.iterator();
+		batches.iterator();
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	@SuppressWarnings("unchecked")
+	private CsvBatchReader<Person> read(int rowsCount) throws IOException {
+		StringBuilder csv = new StringBuilder("name,age\r\n");
+		for (int i = 0; i < rowsCount; ++i) {
+			csv.append("Person ").append(i).append(',').append(i).append("\r\n");
+		}
+		MockHttpRequest request = new MockHttpRequest(csv.toString().getBytes(StandardCharsets.UTF_8));
+		return (CsvBatchReader<Person>) reader.read(request.proxy(), parameters())[0];
+	}
+
+	private static Type[] parameters() {
+		try {
+			return CsvBatchReaderTest.class.getDeclaredMethod("importPersons", CsvBatchReader.class).getGenericParameterTypes();
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Controller method signature, for formal parameters. */
+	static void importPersons(CsvBatchReader<Person> batches) {
+	}
+}
@@ -0,0 +1,283 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jslib.api.csv.CsvDescriptor;
+import com.jslib.api.csv.CsvFactory;
+import com.jslib.api.csv.CsvReader;
+import com.jslib.api.csv.CsvWriter;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.lang.ConfigException;
+import com.jslib.tiny.plugin.csv.CsvBatchReader;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.CsvDescriptorCache;
+import com.jslib.tiny.plugin.csv.CsvStreamArgumentsReader;
+import com.jslib.tiny.plugin.csv.CsvValueWriter;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpRequest;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpResponse;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+import com.jslib.util.Classes;
+
+/**
+ * Compiled binder should be indistinguishable from reference CSV reader and writer: the same fixtures are read and written
+ * through both paths and results compared field for field and byte for byte.
+ */
+public class CsvBinderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CsvFactory csvFactory;
+	private CsvConfig config;
+	private CsvDescriptor<Person> descriptor;
+
+	@Before
+	public void beforeTest() throws Exception {
+		csvFactory = Classes.loadService(CsvFactory.class);
+		config = new CsvConfig();
+		config.config(new ConfigBuilder("<csv><repository path='fixture' files-pattern='person.xml' /></csv>").build());
+		descriptor = config.getDescriptor(Person.class);
+
+		// guard against silent fallback to reference path, that would make comparisons meaningless
+		Method getBinder = CsvConfig.class.getDeclaredMethod("getBinder", Class.class);
+		getBinder.setAccessible(true);
+		assertNotNull(getBinder.invoke(config, Person.class));
+	}
+
+	@Test
+	public void read_Persons() throws Exception {
+		byte[] csv = Files.readAllBytes(new File("fixture/persons.csv").toPath());
+		List<String> persons = readReference(csv);
+		assertEquals(persons, readCompiled(csv));
+
+		// comment line is skipped and empty cells are mapped to empty string and zero
+		assertEquals(6, persons.size());
+		assertEquals(":64", persons.get(2));
+		assertEquals("Baby Doe:0", persons.get(3));
+		assertEquals("Lion, \"The Little Cat\":4", persons.get(5));
+	}
+
+	@Test
+	public void read_EscapeNewLine() throws Exception {
+		byte[] csv = Files.readAllBytes(new File("fixture/escape-new-line.csv").toPath());
+		List<String> persons = readReference(csv);
+		assertEquals(persons, readCompiled(csv));
+		assertEquals("[Iulian\r\nRotaru:55]", persons.toString());
+	}
+
+	@Test
+	public void read_NullValue() throws Exception {
+		byte[] csv = "name,age\r\nnull,1\r\n\"null\",2\r\nnullable,3\r\n".getBytes(StandardCharsets.UTF_8);
+		List<String> persons = readReference(csv);
+		assertEquals(persons, readCompiled(csv));
+		assertEquals("null:1", persons.get(0));
+	}
+
+	@Test
+	public void read_ReorderedColumns() throws Exception {
+		byte[] csv = "age,name\r\n5,John\r\n6,Jane\r\n".getBytes(StandardCharsets.UTF_8);
+		assertEquals(Arrays.asList("John:5", "Jane:6"), readCompiled(csv));
+	}
+
+	@Test
+	public void read_ExtraColumns() throws Exception {
+		// header cells not matching a column are skipped, including duplicated ones
+		byte[] csv = "id,name,city,age,city\r\n1,John,Paris,5,Rome\r\n2,\"Jane, Doe\",\"New\r\nYork\",6,\r\n".getBytes(StandardCharsets.UTF_8);
+		assertEquals(Arrays.asList("John:5", "Jane, Doe:6"), readCompiled(csv));
+	}
+
+	@Test
+	public void read_MissingColumn() throws Exception {
+		// header matching only part of the columns is likely misspelled; importing empty values would silently lose data
+		byte[] csv = "id,name,agge\r\n1,John,5\r\n".getBytes(StandardCharsets.UTF_8);
+		try {
+			readCompiled(csv);
+			fail("Incomplete header should be rejected.");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("Incomplete"));
+		}
+	}
+
+	@Test
+	public void read_ProjectedReader() throws Exception {
+		// header projection applies to plain CSV reader argument too, not only to batch reader
+		byte[] csv = "id,age,city,name\r\n1,5,Paris,John\r\n2,6,\"New\r\nYork\",\"Jane, Doe\"\r\n".getBytes(StandardCharsets.UTF_8);
+		assertEquals(Arrays.asList("John:5", "Jane, Doe:6"), readArgument(csv));
+	}
+
+	@Test
+	public void read_NormalizedColumns() throws Exception {
+		byte[] csv = "\" A g e \",N_A-ME\r\n5,John\r\n".getBytes(StandardCharsets.UTF_8);
+		assertEquals(Arrays.asList("John:5"), readCompiled(csv));
+	}
+
+	@Test
+	public void read_UnknownColumns() throws Exception {
+		// header without recognized column names maps columns by position
+		byte[] csv = "label,years\r\nJohn,5\r\n".getBytes(StandardCharsets.UTF_8);
+		assertEquals(Arrays.asList("John:5"), readCompiled(csv));
+	}
+
+	@Test
+	public void read_DuplicateColumns() throws Exception {
+		// both cells normalize to the same column; taking the first one would silently drop data
+		byte[] csv = "name,age,Name\r\nJohn,5,Jane\r\n".getBytes(StandardCharsets.UTF_8);
+		try {
+			readCompiled(csv);
+			fail("Ambiguous header should be rejected.");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("Ambiguous"));
+		}
+	}
+
+	@Test
+	public void write_Fixtures() throws Exception {
+		List<Person> persons = new ArrayList<>();
+		persons.addAll(read("fixture/persons.csv"));
+		persons.addAll(read("fixture/escape-new-line.csv"));
+		assertArrayEquals(writeReference(persons), writeCompiled(persons));
+	}
+
+	@Test
+	public void write_Escaping() throws Exception {
+		List<Person> persons = Arrays.asList( //
+				new Person("", 0), //
+				new Person("\"", 1), //
+				new Person("\"\"quoted\"\"", -1), //
+				new Person("comma, semicolon; tab\t", Integer.MAX_VALUE), //
+				new Person("#not a comment", Integer.MIN_VALUE), //
+				new Person("line\r\nbreak\nand\rcarriage", 2), //
+				new Person("\u0218tefan \u021aurcanu", 3), //
+				new Person("\u20ac \ud83d\ude00 \u4e2d\u6587", 4), //
+				new Person(null, 5));
+		byte[] compiled = writeCompiled(persons);
+		assertArrayEquals(writeReference(persons), compiled);
+
+		// written values are read back unchanged, null value included
+		List<String> expected = new ArrayList<>();
+		for (Person person : persons) {
+			expected.add(person.getName() + ":" + person.getAge());
+		}
+		assertEquals(expected, readCompiled(compiled));
+	}
+
+	@Test(expected = ConfigException.class)
+	public void compile_InvalidDictionarySize() throws Exception {
+		File template = new File(folder.getRoot(), "person.xml");
+		String content = new String(Files.readAllBytes(new File("fixture/person.xml").toPath()), StandardCharsets.UTF_8);
+		Files.write(template.toPath(), content.replace("null-value=\"null\"", "null-value=\"null\" dictionary-size=\"1O24\"").getBytes(StandardCharsets.UTF_8));
+		CsvDescriptorCache.instance().getDescriptor(template);
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private List<Person> read(String path) throws Exception {
+		List<Person> persons = new ArrayList<>();
+		try (InputStream stream = Files.newInputStream(new File(path).toPath())) {
+			CsvReader<Person> reader = csvFactory.getReader(descriptor, stream);
+			for (Person person : reader) {
+				persons.add(person);
+			}
+			reader.close();
+		}
+		return persons;
+	}
+
+	private List<String> readReference(byte[] csv) throws Exception {
+		List<String> persons = new ArrayList<>();
+		CsvReader<Person> reader = csvFactory.getReader(descriptor, new ByteArrayInputStream(csv));
+		for (Person person : reader) {
+			persons.add(person.getName() + ":" + person.getAge());
+		}
+		reader.close();
+		return persons;
+	}
+
+	/** Read through batch reader that uses compiled binder on request stream. */
+	@SuppressWarnings("unchecked")
+	private List<String> readCompiled(byte[] csv) throws Exception {
+		CsvStreamArgumentsReader reader = new CsvStreamArgumentsReader(config);
+		Type[] parameters = CsvBinderTest.class.getDeclaredMethod("importPersons", CsvBatchReader.class).getGenericParameterTypes();
+		List<String> persons = new ArrayList<>();
+		try {
+			CsvBatchReader<Person> batches = (CsvBatchReader<Person>) reader.read(new MockHttpRequest(csv).proxy(), parameters)[0];
+			for (List<Person> batch : batches) {
+				for (Person person : batch) {
+					persons.add(person.getName() + ":" + person.getAge());
+				}
+			}
+		} finally {
+			reader.clean();
+		}
+		return persons;
+	}
+
+	/** Read through CSV reader argument, that uses compiled binder on request stream. */
+	@SuppressWarnings("unchecked")
+	private List<String> readArgument(byte[] csv) throws Exception {
+		CsvStreamArgumentsReader reader = new CsvStreamArgumentsReader(config);
+		Type[] parameters = CsvBinderTest.class.getDeclaredMethod("importPersons", CsvReader.class).getGenericParameterTypes();
+		List<String> persons = new ArrayList<>();
+		try {
+			CsvReader<Person> csvReader = (CsvReader<Person>) reader.read(new MockHttpRequest(csv).proxy(), parameters)[0];
+			for (Person person : csvReader) {
+				persons.add(person.getName() + ":" + person.getAge());
+			}
+		} finally {
+			reader.clean();
+		}
+		return persons;
+	}
+
+	private byte[] writeReference(List<Person> persons) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+		CsvWriter<Person> csvWriter = csvFactory.getWriter(descriptor, writer);
+		for (Person person : persons) {
+			csvWriter.write(person);
+		}
+		csvWriter.close();
+		return bytes.toByteArray();
+	}
+
+	/** Write through value writer that uses compiled binder for all rows once header line is captured. */
+	private byte[] writeCompiled(List<Person> persons) throws Exception {
+		CsvValueWriter writer = new CsvValueWriter(config);
+		// first row ever written goes through reference writer, for header line capture
+		writer.write(new MockHttpResponse().proxy(), Arrays.asList(new Person("warm up", 0)));
+
+		MockHttpResponse response = new MockHttpResponse();
+		writer.write(response.proxy(), persons);
+		return response.getBytes();
+	}
+
+	/** Controller method signature, for formal parameters. */
+	static void importPersons(CsvReader<Person> persons) {
+	}
+
+	static void importPersons(CsvBatchReader<Person> batches) {
+	}
+}
@@ -0,0 +1,189 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jslib.api.csv.CsvReader;
+import com.jslib.lang.BugError;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.CsvStreamArgumentsReader;
+import com.jslib.tiny.plugin.csv.DeltaImport;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpRequest;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+
+/**
+ * Delta import delivers only records new or changed since previous committed import; import is committed only by
+ * controller, after all records were read.
+ */
+public class CsvDeltaTest {
+	private static final String TEMPLATE = "" + //
+			"<?xml version='1.0' encoding='UTF-8'?>" + //
+			"<csv class='com.jslib.tiny.plugin.csv.unit.fixture.Person' header='true' delimiter=',' null-value='null' delta='true'>" + //
+			"	<column field='name' />" + //
+			"	<column field='age' />" + //
+			"</csv>";
+
+	private static final String FINGERPRINTS = Person.class.getName() + ".fp";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File deltaDir;
+	private CsvConfig config;
+
+	@Before
+	public void beforeTest() throws Exception {
+		File repository = folder.newFolder("repository");
+		Files.write(new File(repository, "person.xml").toPath(), TEMPLATE.getBytes(StandardCharsets.UTF_8));
+		deltaDir = new File(folder.getRoot(), "delta");
+
+		String repositorySection = String.format("<repository path='%s' files-pattern='*.xml' />", repository);
+		String importSection = String.format("<import delta-dir='%s' />", deltaDir);
+		config = new CsvConfig();
+		config.config(new ConfigBuilder("<csv>" + repositorySection + importSection + "</csv>").build());
+	}
+
+	@Test
+	public void read_FirstImport() throws Exception {
+		assertEquals("[John:50, Jane:40]", read(csv("John,50", "Jane,40"), -1).toString());
+		assertArrayEquals(new String[] { FINGERPRINTS }, deltaDir.list());
+	}
+
+	@Test
+	public void read_SkipUnchanged() throws Exception {
+		read(csv("John,50", "Jane,40", "Bill,30"), -1);
+		// changed and new records are delivered, in stream order
+		assertEquals("[Jane:41, Ann:20]", read(csv("John,50", "Jane,41", "Bill,30", "Ann,20"), -1).toString());
+		assertEquals("[]", read(csv("John,50", "Jane,41", "Bill,30", "Ann,20"), -1).toString());
+	}
+
+	@Test
+	public void read_NotCompleted() throws Exception {
+		read(csv("John,50"), -1);
+		// import failed after first record: delta is not committed and temporary fingerprints are discarded
+		assertEquals("[Jane:40]", read(csv("John,50", "Jane,40", "Bill,30"), 1).toString());
+		assertArrayEquals(new String[] { FINGERPRINTS }, deltaDir.list());
+		assertEquals("[Jane:40, Bill:30]", read(csv("John,50", "Jane,40", "Bill,30"), -1).toString());
+	}
+
+	@Test
+	public void read_ControllerFailure() throws Exception {
+		read(csv("John,50"), -1);
+		// all records read but controller failed before commit: next import delivers the same records again
+		assertEquals("[Jane:40, Bill:30]", read(csv("John,50", "Jane,40", "Bill,30"), -1, false).toString());
+		assertArrayEquals(new String[] { FINGERPRINTS }, deltaDir.list());
+		assertEquals("[Jane:40, Bill:30]", read(csv("John,50", "Jane,40", "Bill,30"), -1).toString());
+		assertEquals("[]", read(csv("John,50", "Jane,40", "Bill,30"), -1).toString());
+	}
+
+	@Test
+	public void read_CommitNotCompleted() throws Exception {
+		read(csv("John,50"), -1);
+		try {
+			read(csv("John,50", "Jane,40", "Bill,30"), 1, true);
+			fail("Commit before reading all records should be rejected.");
+		} catch (BugError expected) {
+		}
+		assertEquals("[Jane:40, Bill:30]", read(csv("John,50", "Jane,40", "Bill,30"), -1).toString());
+	}
+
+	@Test
+	public void read_Growth() throws Exception {
+		// enough records to grow fingerprints table past its minimum capacity
+		String[] rows = new String[5000];
+		for (int i = 0; i < rows.length; ++i) {
+			rows[i] = "Person " + i + "," + i;
+		}
+		assertEquals(rows.length, read(csv(rows), -1).size());
+		assertArrayEquals(new String[] { FINGERPRINTS }, deltaDir.list());
+
+		rows[100] = "Person 100,-1";
+		assertEquals("[Person 100:-1]", read(csv(rows), -1).toString());
+		assertArrayEquals(new String[] { FINGERPRINTS }, deltaDir.list());
+	}
+
+	@Test
+	public void create_TooLarge() throws Exception {
+		Class<?> fingerprintsClass = Class.forName("com.jslib.tiny.plugin.csv.CsvFingerprints");
+		Method create = fingerprintsClass.getDeclaredMethod("create", File.class, long.class);
+		create.setAccessible(true);
+		Field maxSizeField = fingerprintsClass.getField("MAX_SIZE");
+		maxSizeField.setAccessible(true);
+		long maxSize = (Long) maxSizeField.get(null);
+
+		File file = new File(folder.getRoot(), "large.fp");
+		try {
+			create.invoke(null, file, maxSize + 1);
+			fail("Fingerprints set larger than maximum size should be rejected.");
+		} catch (InvocationTargetException e) {
+			assertTrue(e.getCause() instanceof IOException);
+			assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("exceeds maximum"));
+		}
+		assertFalse(file.exists());
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private static byte[] csv(String... rows) {
+		StringBuilder csv = new StringBuilder("name,age\r\n");
+		for (String row : rows) {
+			csv.append(row).append("\r\n");
+		}
+		return csv.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Import CSV stream and return delivered records. If <code>limit</code> is not negative, stop reading after that many
+	 * records, as controller failing in the middle of import; otherwise commit import after reading all records.
+	 */
+	private List<String> read(byte[] csv, int limit) throws Exception {
+		return read(csv, limit, limit < 0);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<String> read(byte[] csv, int limit, boolean commit) throws Exception {
+		CsvStreamArgumentsReader reader = new CsvStreamArgumentsReader(config);
+		Type[] parameters = CsvDeltaTest.class.getDeclaredMethod("importPersons", CsvReader.class).getGenericParameterTypes();
+		List<String> persons = new ArrayList<>();
+		try {
+			CsvReader<Person> records = (CsvReader<Person>) reader.read(new MockHttpRequest(csv).proxy(), parameters)[0];
+			Iterator<Person> iterator = records.iterator();
+			while (iterator.hasNext() && persons.size() != limit) {
+				Person person = iterator.next();
+				persons.add(person.getName() + ":" + person.getAge());
+			}
+			if (commit) {
+				((DeltaImport) records).commit();
+			}
+		} finally {
+			reader.clean();
+		}
+		return persons;
+	}
+
+	/** Controller method signature, for formal parameters. */
+	static void importPersons(CsvReader<Person> persons) {
+	}
+}
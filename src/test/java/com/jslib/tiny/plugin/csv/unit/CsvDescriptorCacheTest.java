@@ -0,0 +1,71 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jslib.api.csv.CsvDescriptor;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.CsvDescriptorCache;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+
+public class CsvDescriptorCacheTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CsvDescriptorCache cache;
+	private File template;
+
+	@Before
+	public void beforeTest() {
+		cache = CsvDescriptorCache.instance();
+		cache.clear();
+		template = new File("fixture/person.xml");
+	}
+
+	@Test
+	public void getDescriptor() throws Exception {
+		CsvDescriptor<?> descriptor = cache.getDescriptor(template);
+		assertEquals(Person.class, descriptor.type());
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		assertSame(descriptor, cache.getDescriptor(template));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void getDescriptor_TemplateChanged() throws Exception {
+		// touch a copy so that tracked fixture is not changed
+		template = new File(folder.getRoot(), "person.xml");
+		Files.copy(new File("fixture/person.xml").toPath(), template.toPath());
+
+		CsvDescriptor<?> descriptor = cache.getDescriptor(template);
+		template.setLastModified(template.lastModified() + 1000);
+
+		assertNotSame(descriptor, cache.getDescriptor(template));
+		assertEquals(0, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void getDescriptor_LoadedByConfig() throws Exception {
+		CsvConfig config = new CsvConfig();
+		config.config(new ConfigBuilder("<csv><repository path='fixture' files-pattern='*.xml' /></csv>").build());
+
+		assertSame(config.getDescriptor(Person.class), cache.getDescriptor(template));
+		assertEquals(1, cache.getHits());
+		assertEquals(0, cache.getMisses());
+	}
+}
@@ -0,0 +1,180 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.tiny.plugin.csv.CsvBatchReader;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.CsvStreamArgumentsReader;
+import com.jslib.tiny.plugin.csv.ParallelCsvReader;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpRequest;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+
+/**
+ * Dictionary columns are read through compiled binder: values with the same characters should share a single string
+ * instance per import.
+ */
+public class CsvDictionaryTest {
+	private static final String TEMPLATE = "" + //
+			"<?xml version='1.0' encoding='UTF-8'?>" + //
+			"<csv class='com.jslib.tiny.plugin.csv.unit.fixture.Person' header='true' delimiter=',' null-value='null' %s>" + //
+			"	<column field='name' dictionary='%s' />" + //
+			"	<column field='age' />" + //
+			"</csv>";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void read_SharedInstances() throws Exception {
+		CsvConfig config = config(true, "");
+		List<Person> persons = read(config, csv("RO", "FR", "RO", "DE", "FR", "RO"));
+
+		assertEquals("RO", persons.get(0).getName());
+		assertSame(persons.get(0).getName(), persons.get(2).getName());
+		assertSame(persons.get(0).getName(), persons.get(5).getName());
+		assertSame(persons.get(1).getName(), persons.get(4).getName());
+		assertNotSame(persons.get(0).getName(), persons.get(1).getName());
+	}
+
+	@Test
+	public void read_SharedInstancesAfterGrowth() throws Exception {
+		// enough distinct values to grow dictionary table a few times
+		String[] names = new String[500];
+		for (int i = 0; i < names.length; ++i) {
+			names[i] = "value-" + (i % 250);
+		}
+		CsvConfig config = config(true, "");
+		List<Person> persons = read(config, csv(names));
+
+		for (int i = 0; i < 250; ++i) {
+			assertEquals(names[i], persons.get(i).getName());
+			assertSame(persons.get(i).getName(), persons.get(i + 250).getName());
+		}
+	}
+
+	@Test
+	public void read_CapacityReached() throws Exception {
+		// values seen after capacity is reached are not stored; stored values are not evicted
+		CsvConfig config = config(true, "dictionary-size='2'");
+		List<Person> persons = read(config, csv("a", "b", "c", "a", "b", "c", "d", "d"));
+
+		assertSame(persons.get(0).getName(), persons.get(3).getName());
+		assertSame(persons.get(1).getName(), persons.get(4).getName());
+		assertEquals(persons.get(2).getName(), persons.get(5).getName());
+		assertNotSame(persons.get(2).getName(), persons.get(5).getName());
+		assertNotSame(persons.get(6).getName(), persons.get(7).getName());
+		assertEquals("d", persons.get(7).getName());
+	}
+
+	@Test
+	public void read_DictionaryPerImport() throws Exception {
+		CsvConfig config = config(true, "");
+		List<Person> first = read(config, csv("RO", "RO"));
+		List<Person> second = read(config, csv("RO", "RO"));
+
+		assertSame(first.get(0).getName(), first.get(1).getName());
+		assertSame(second.get(0).getName(), second.get(1).getName());
+		assertNotSame(first.get(0).getName(), second.get(0).getName());
+	}
+
+	@Test
+	public void read_SharedAcrossChunks() throws Exception {
+		// small chunks parsed concurrently by parallel reader share the same import dictionary
+		String[] names = new String[2000];
+		for (int i = 0; i < names.length; ++i) {
+			names[i] = "value-" + (i % 50);
+		}
+		CsvConfig config = config(true, "", "<import parallelism='4' chunk-size='256' ordered='true' />");
+		List<Person> persons = readParallel(config, csv(names));
+
+		assertEquals(names.length, persons.size());
+		for (int i = 50; i < names.length; ++i) {
+			assertEquals(names[i], persons.get(i).getName());
+			assertSame(persons.get(i % 50).getName(), persons.get(i).getName());
+		}
+	}
+
+	@Test
+	public void read_NoDictionary() throws Exception {
+		CsvConfig config = config(false, "");
+		List<Person> persons = read(config, csv("RO", "RO"));
+
+		assertEquals(persons.get(0).getName(), persons.get(1).getName());
+		assertNotSame(persons.get(0).getName(), persons.get(1).getName());
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private CsvConfig config(boolean dictionary, String attributes) throws Exception {
+		return config(dictionary, attributes, "");
+	}
+
+	private CsvConfig config(boolean dictionary, String attributes, String sections) throws Exception {
+		File template = new File(folder.getRoot(), "person.xml");
+		Files.write(template.toPath(), String.format(TEMPLATE, attributes, dictionary).getBytes(StandardCharsets.UTF_8));
+		CsvConfig config = new CsvConfig();
+		config.config(new ConfigBuilder(String.format("<csv><repository path='%s' files-pattern='person.xml' />%s</csv>", folder.getRoot(), sections)).build());
+		return config;
+	}
+
+	private static byte[] csv(String... names) {
+		StringBuilder csv = new StringBuilder("name,age\r\n");
+		for (int i = 0; i < names.length; ++i) {
+			csv.append(names[i]).append(',').append(i).append("\r\n");
+		}
+		return csv.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Person> read(CsvConfig config, byte[] csv) throws Exception {
+		CsvStreamArgumentsReader reader = new CsvStreamArgumentsReader(config);
+		Type[] parameters = CsvDictionaryTest.class.getDeclaredMethod("importPersons", CsvBatchReader.class).getGenericParameterTypes();
+		List<Person> persons = new ArrayList<>();
+		try {
+			CsvBatchReader<Person> batches = (CsvBatchReader<Person>) reader.read(new MockHttpRequest(csv).proxy(), parameters)[0];
+			for (List<Person> batch : batches) {
+				persons.addAll(batch);
+			}
+		} finally {
+			reader.clean();
+		}
+		return persons;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Person> readParallel(CsvConfig config, byte[] csv) throws Exception {
+		CsvStreamArgumentsReader reader = new CsvStreamArgumentsReader(config);
+		Type[] parameters = CsvDictionaryTest.class.getDeclaredMethod("importPersons", ParallelCsvReader.class).getGenericParameterTypes();
+		List<Person> persons = new ArrayList<>();
+		try {
+			for (Person person : (ParallelCsvReader<Person>) reader.read(new MockHttpRequest(csv).proxy(), parameters)[0]) {
+				persons.add(person);
+			}
+		} finally {
+			reader.clean();
+		}
+		return persons;
+	}
+
+	/** Controller method signatures, for formal parameters. */
+	static void importPersons(CsvBatchReader<Person> batches) {
+	}
+
+	static void importPersons(ParallelCsvReader<Person> persons) {
+	}
+}
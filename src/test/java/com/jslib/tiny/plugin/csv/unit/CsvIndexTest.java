@@ -0,0 +1,161 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+
+public class CsvIndexTest {
+	private static final String SIGNATURE = "#csv-index\t1";
+
+	private static final String TEMPLATE = "" + //
+			"<?xml version='1.0' encoding='UTF-8'?>" + //
+			"<csv class='com.jslib.tiny.plugin.csv.unit.fixture.Person' header='true' delimiter=',' null-value='null' batch-size='%d'>" + //
+			"	<column field='name' />" + //
+			"	<column field='age' />" + //
+			"</csv>";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File repository;
+	private File template;
+	private File index;
+
+	@Before
+	public void beforeTest() throws Exception {
+		repository = folder.newFolder("repository");
+		template = new File(repository, "person.xml");
+		write(template, 10);
+		index = new File(folder.getRoot(), "index/csv.index");
+	}
+
+	@Test
+	public void config_CreateSnapshot() throws Exception {
+		CsvConfig config = config();
+		assertEquals(10, config.getBatchSize(Person.class));
+
+		String snapshot = snapshot();
+		assertTrue(snapshot.startsWith(SIGNATURE));
+		assertTrue(snapshot.contains(template.getAbsolutePath()));
+		assertTrue(snapshot.contains(Person.class.getName()));
+	}
+
+	@Test
+	public void config_ValidSnapshot() throws Exception {
+		config();
+		long lastModified = index.lastModified();
+		index.setLastModified(lastModified - 10000);
+
+		CsvConfig config = config();
+		assertEquals(10, config.getBatchSize(Person.class));
+		// valid snapshot is not saved again
+		assertEquals(lastModified - 10000, index.lastModified());
+	}
+
+	@Test
+	public void config_StaleTemplate() throws Exception {
+		config();
+		write(template, 20);
+
+		CsvConfig config = config();
+		assertEquals(20, config.getBatchSize(Person.class));
+		assertTrue(snapshot().contains("\t" + template.lastModified() + "\t"));
+	}
+
+	@Test
+	public void config_StaleDirectory() throws Exception {
+		config();
+		// template created after snapshot; last indexed template for a type wins
+		File created = new File(repository, "zz.xml");
+		write(created, 50);
+		repository.setLastModified(repository.lastModified() + 1000);
+
+		CsvConfig config = config();
+		assertEquals(50, config.getBatchSize(Person.class));
+		assertTrue(snapshot().contains(created.getAbsolutePath()));
+	}
+
+	@Test
+	public void config_DeletedTemplate() throws Exception {
+		config();
+		// restore directory modification time to simulate coarse file system granularity
+		long lastModified = repository.lastModified();
+		assertTrue(template.delete());
+		repository.setLastModified(lastModified);
+
+		CsvConfig config = config();
+		assertNull(config.getDescriptor(Person.class));
+		assertFalse(snapshot().contains(template.getAbsolutePath()));
+	}
+
+	@Test
+	public void config_CorruptedSnapshot() throws Exception {
+		index.getParentFile().mkdirs();
+		Files.write(index.toPath(), (SIGNATURE + "\nT\tnot-a-number\n\u0000\u0001").getBytes(StandardCharsets.UTF_8));
+
+		CsvConfig config = config();
+		assertNotNull(config.getDescriptor(Person.class));
+		assertEquals(10, config.getBatchSize(Person.class));
+		assertTrue(snapshot().contains(template.getAbsolutePath()));
+	}
+
+	@Test
+	public void config_UnknownFormat() throws Exception {
+		index.getParentFile().mkdirs();
+		Files.write(index.toPath(), "#csv-index\t0\n".getBytes(StandardCharsets.UTF_8));
+
+		CsvConfig config = config();
+		assertEquals(10, config.getBatchSize(Person.class));
+		assertTrue(snapshot().startsWith(SIGNATURE));
+	}
+
+	@Test
+	public void config_DifferentRepository() throws Exception {
+		config();
+		String snapshot = snapshot();
+		Files.write(index.toPath(), snapshot.replace("*.xml", "*.csv.xml").getBytes(StandardCharsets.UTF_8));
+
+		CsvConfig config = config();
+		assertEquals(10, config.getBatchSize(Person.class));
+		assertEquals(snapshot, snapshot());
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private CsvConfig config() throws Exception {
+		String section = String.format("<repository path='%s' files-pattern='*.xml' index='%s' />", repository, index);
+		CsvConfig config = new CsvConfig();
+		config.config(new ConfigBuilder("<csv>" + section + "</csv>").build());
+		config.close();
+		return config;
+	}
+
+	private String snapshot() throws Exception {
+		return new String(Files.readAllBytes(index.toPath()), StandardCharsets.UTF_8);
+	}
+
+	private static void write(File template, int batchSize) throws Exception {
+		long lastModified = template.lastModified();
+		Files.write(template.toPath(), String.format(TEMPLATE, batchSize).getBytes(StandardCharsets.UTF_8));
+		// file system modification time could have seconds granularity
+		if (lastModified != 0) {
+			template.setLastModified(lastModified + 1000);
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jslib.api.csv.CsvReader;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.lang.IllegalArgumentException;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.CsvMultipartFormArgumentsReader;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpRequest;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+import com.jslib.tiny.plugin.csv.unit.fixture.Product;
+
+public class CsvMultipartTest {
+	private static final String PERSON_TEMPLATE = "" + //
+			"<?xml version='1.0' encoding='UTF-8'?>" + //
+			"<csv class='com.jslib.tiny.plugin.csv.unit.fixture.Person' header='true' delimiter=',' null-value='null' %s>" + //
+			"	<column field='name' />" + //
+			"	<column field='age' />" + //
+			"</csv>";
+
+	private static final String PRODUCT_TEMPLATE = "" + //
+			"<?xml version='1.0' encoding='UTF-8'?>" + //
+			"<csv class='com.jslib.tiny.plugin.csv.unit.fixture.Product' header='true' delimiter=';' null-value='null'>" + //
+			"	<column field='name' />" + //
+			"	<column field='price' />" + //
+			"</csv>";
+
+	private static final byte[] PERSONS = "name,age\r\nJohn,50\r\n\"Doe, Jane\",40\r\n".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] PRODUCTS = "name;price\r\nbook;12\r\n\"pen; blue\";3\r\n".getBytes(StandardCharsets.UTF_8);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File spoolDir;
+	private CsvMultipartFormArgumentsReader reader;
+	private Type[] parameters;
+
+	@Before
+	public void beforeTest() throws Exception {
+		spoolDir = folder.newFolder("spool");
+		parameters = CsvMultipartTest.class.getDeclaredMethod("importAll", CsvReader.class, CsvReader.class).getGenericParameterTypes();
+	}
+
+	@Test
+	public void read_SinglePart() throws Exception {
+		config("");
+		Type[] parameters = CsvMultipartTest.class.getDeclaredMethod("importPersons", CsvReader.class).getGenericParameterTypes();
+		try {
+			Object[] arguments = reader.read(MockHttpRequest.multipart(MockHttpRequest.multipartBody(PERSONS)).proxy(), parameters);
+			assertEquals("[John:50, Doe, Jane:40]", persons(arguments[0]).toString());
+		} finally {
+			reader.clean();
+		}
+	}
+
+	@Test
+	public void read_TwoParts() throws Exception {
+		config("part='persons'");
+		Map<String, byte[]> files = new LinkedHashMap<>();
+		files.put("persons", PERSONS);
+		files.put("product", PRODUCTS);
+		assertParts(files);
+	}
+
+	@Test
+	public void read_ReversedParts() throws Exception {
+		// parts are matched by name, not by formal parameters order
+		config("part='persons'");
+		Map<String, byte[]> files = new LinkedHashMap<>();
+		files.put("product", PRODUCTS);
+		files.put("persons", PERSONS);
+		assertParts(files);
+	}
+
+	@Test
+	public void read_DefaultPartNames() throws Exception {
+		// part name defaults to type simple name and is not case sensitive
+		config("");
+		Map<String, byte[]> files = new LinkedHashMap<>();
+		files.put("person", PERSONS);
+		files.put("Product", PRODUCTS);
+		assertParts(files);
+	}
+
+	@Test
+	public void read_UnexpectedPart() throws Exception {
+		config("part='persons'");
+		Map<String, byte[]> files = new LinkedHashMap<>();
+		files.put("persons", PERSONS);
+		files.put("orders", "id\r\n1\r\n".getBytes(StandardCharsets.UTF_8));
+		files.put("product", PRODUCTS);
+		assertParts(files);
+	}
+
+	@Test
+	public void read_MissingPart() throws Exception {
+		config("part='persons'");
+		Map<String, byte[]> files = new LinkedHashMap<>();
+		files.put("persons", PERSONS);
+		assertRejected(files, "Missing CSV part");
+	}
+
+	@Test
+	public void read_DuplicatedPart() throws Exception {
+		config("part='persons'");
+		Map<String, byte[]> files = new LinkedHashMap<>();
+		files.put("persons", PERSONS);
+		files.put("PERSONS", PERSONS);
+		files.put("product", PRODUCTS);
+		assertRejected(files, "Duplicated CSV part");
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private void config(String personAttributes) throws Exception {
+		File repository = folder.newFolder("repository");
+		Files.write(new File(repository, "person.xml").toPath(), String.format(PERSON_TEMPLATE, personAttributes).getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(repository, "product.xml").toPath(), PRODUCT_TEMPLATE.getBytes(StandardCharsets.UTF_8));
+
+		String repositorySection = String.format("<repository path='%s' files-pattern='*.xml' />", repository);
+		String importSection = String.format("<import spool-dir='%s' />", spoolDir);
+		CsvConfig config = new CsvConfig();
+		config.config(new ConfigBuilder("<csv>" + repositorySection + importSection + "</csv>").build());
+		reader = new CsvMultipartFormArgumentsReader(config);
+	}
+
+	private void assertParts(Map<String, byte[]> files) throws Exception {
+		try {
+			Object[] arguments = reader.read(MockHttpRequest.multipart(MockHttpRequest.multipartBody(files)).proxy(), parameters);
+			assertEquals(2, arguments.length);
+			assertEquals("[John:50, Doe, Jane:40]", persons(arguments[0]).toString());
+			assertEquals("[book:12, pen; blue:3]", products(arguments[1]).toString());
+		} finally {
+			reader.clean();
+		}
+		assertEquals(0, spoolDir.list().length);
+	}
+
+	private void assertRejected(Map<String, byte[]> files, String message) throws Exception {
+		try {
+			reader.read(MockHttpRequest.multipart(MockHttpRequest.multipartBody(files)).proxy(), parameters);
+			fail("Invalid parts should be rejected.");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(message));
+		} finally {
+			reader.clean();
+		}
+		// parts spooled before error are released
+		assertEquals(0, spoolDir.list().length);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<String> persons(Object argument) throws Exception {
+		List<String> persons = new ArrayList<>();
+		try (CsvReader<Person> reader = (CsvReader<Person>) argument) {
+			for (Person person : reader) {
+				persons.add(person.getName() + ":" + person.getAge());
+			}
+		}
+		return persons;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<String> products(Object argument) throws Exception {
+		List<String> products = new ArrayList<>();
+		try (CsvReader<Product> reader = (CsvReader<Product>) argument) {
+			for (Product product : reader) {
+				products.add(product.getName() + ":" + product.getPrice());
+			}
+		}
+		return products;
+	}
+
+	/** Controller method signatures, for formal parameters. */
+	static void importPersons(CsvReader<Person> persons) {
+	}
+
+	static void importAll(CsvReader<Person> persons, CsvReader<Product> products) {
+	}
+}
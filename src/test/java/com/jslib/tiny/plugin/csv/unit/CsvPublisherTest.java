@@ -0,0 +1,213 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.CsvStreamArgumentsReader;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpRequest;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+
+public class CsvPublisherTest {
+	private static final int ROWS_COUNT = 100;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CsvStreamArgumentsReader reader;
+	private Flow.Publisher<Person> publisher;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void beforeTest() throws Exception {
+		CsvConfig config = new CsvConfig();
+		config.config(new ConfigBuilder(String.format("<csv><repository path='fixture' files-pattern='person.xml' /><import spool-dir='%s' /></csv>", folder.getRoot().getAbsolutePath())).build());
+		reader = new CsvStreamArgumentsReader(config);
+
+		StringBuilder csv = new StringBuilder("name,age\r\n");
+		for (int i = 0; i < ROWS_COUNT; ++i) {
+			csv.append("Person ").append(i).append(',').append(i).append("\r\n");
+		}
+		Type[] parameters = CsvPublisherTest.class.getDeclaredMethod("importPersons", Flow.Publisher.class).getGenericParameterTypes();
+		publisher = (Flow.Publisher<Person>) reader.read(new MockHttpRequest(csv.toString().getBytes(StandardCharsets.UTF_8)).proxy(), parameters)[0];
+	}
+
+	@Test
+	public void subscribe_Demand() throws Exception {
+		MockSubscriber subscriber = new MockSubscriber();
+		publisher.subscribe(subscriber);
+		reader.clean();
+
+		subscriber.request(3);
+		subscriber.awaitItems(3);
+		// no records are emitted beyond requested ones
+		Thread.sleep(100);
+		assertEquals(3, subscriber.items.size());
+		assertFalse(subscriber.isTerminated());
+
+		subscriber.request(Long.MAX_VALUE);
+		subscriber.awaitTermination();
+		assertNull(subscriber.error);
+		assertTrue(subscriber.completed);
+		assertEquals(ROWS_COUNT, subscriber.items.size());
+		assertEquals("Person 0", subscriber.items.get(0).getName());
+		assertEquals("Person 99", subscriber.items.get(ROWS_COUNT - 1).getName());
+		awaitSpoolRelease();
+	}
+
+	@Test
+	public void subscribe_Cancel() throws Exception {
+		MockSubscriber subscriber = new MockSubscriber();
+		publisher.subscribe(subscriber);
+		reader.clean();
+
+		subscriber.request(1);
+		subscriber.awaitItems(1);
+		subscriber.subscription.cancel();
+		awaitSpoolRelease();
+
+		subscriber.request(10);
+		Thread.sleep(100);
+		assertEquals(1, subscriber.items.size());
+		assertFalse(subscriber.isTerminated());
+	}
+
+	@Test
+	public void subscribe_Error() throws Exception {
+		MockSubscriber subscriber = new MockSubscriber();
+		publisher.subscribe(subscriber);
+		reader.clean();
+
+		subscriber.request(0);
+		subscriber.awaitTermination();
+		assertTrue(subscriber.error instanceof IllegalArgumentException);
+		assertFalse(subscriber.completed);
+		awaitSpoolRelease();
+	}
+
+	@Test
+	public void subscribe_Twice() throws Exception {
+		publisher.subscribe(new MockSubscriber());
+		MockSubscriber subscriber = new MockSubscriber();
+		publisher.subscribe(subscriber);
+		subscriber.awaitTermination();
+		assertTrue(subscriber.error instanceof IllegalStateException);
+		reader.clean();
+	}
+
+	@Test
+	public void subscribe_AfterClean() throws Exception {
+		reader.clean();
+		assertEquals(0, folder.getRoot().list().length);
+
+		MockSubscriber subscriber = new MockSubscriber();
+		publisher.subscribe(subscriber);
+		subscriber.awaitTermination();
+		assertTrue(subscriber.error instanceof IllegalStateException);
+	}
+
+	@Test
+	public void stats_EndOnRelease() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("com.jslib.csv:type=Import,name=" + ObjectName.quote(Person.class.getName()));
+		long operations = (Long) server.getAttribute(name, "Operations");
+		long rows = (Long) server.getAttribute(name, "Rows");
+
+		MockSubscriber subscriber = new MockSubscriber();
+		publisher.subscribe(subscriber);
+		reader.clean();
+		// import is still active after arguments reader clean-up
+		assertEquals(1L, server.getAttribute(name, "ActiveStreams"));
+		assertEquals(operations, server.getAttribute(name, "Operations"));
+
+		subscriber.request(Long.MAX_VALUE);
+		subscriber.awaitTermination();
+		awaitSpoolRelease();
+		assertEquals(0L, server.getAttribute(name, "ActiveStreams"));
+		assertEquals(operations + 1, server.getAttribute(name, "Operations"));
+		assertEquals(rows + ROWS_COUNT, server.getAttribute(name, "Rows"));
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private void awaitSpoolRelease() throws InterruptedException {
+		for (int i = 0; i < 100 && folder.getRoot().list().length > 0; ++i) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, folder.getRoot().list().length);
+	}
+
+	/** Controller method signature, for formal parameters. */
+	static void importPersons(Flow.Publisher<Person> persons) {
+	}
+
+	private static class MockSubscriber implements Flow.Subscriber<Person> {
+		private final List<Person> items = new CopyOnWriteArrayList<>();
+		private final CountDownLatch terminated = new CountDownLatch(1);
+		private volatile Flow.Subscription subscription;
+		private volatile boolean completed;
+		private volatile Throwable error;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(Person item) {
+			items.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			terminated.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+			terminated.countDown();
+		}
+
+		public void request(long n) {
+			subscription.request(n);
+		}
+
+		public boolean isTerminated() {
+			return terminated.getCount() == 0;
+		}
+
+		public void awaitItems(int count) throws InterruptedException {
+			for (int i = 0; i < 100 && items.size() < count; ++i) {
+				Thread.sleep(10);
+			}
+			assertEquals(count, items.size());
+		}
+
+		public void awaitTermination() throws InterruptedException {
+			assertTrue(terminated.await(1, TimeUnit.SECONDS));
+		}
+	}
+}
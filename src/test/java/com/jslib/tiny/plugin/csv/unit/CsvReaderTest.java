@@ -2,8 +2,13 @@ package com.jslib.tiny.plugin.csv.unit;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -16,6 +21,8 @@ import com.jslib.api.csv.CsvReader;
 import com.jslib.lang.Config;
 import com.jslib.lang.ConfigBuilder;
 import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.CsvStreamArgumentsReader;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpRequest;
 import com.jslib.tiny.plugin.csv.unit.fixture.Person;
 import com.jslib.util.Classes;
 
@@ -86,4 +93,42 @@ public class CsvReaderTest {
 		assertEquals(1, persons.size());
 		assertEquals("Iulian\r\nRotaru", persons.get(0).getName());
 	}
+
+	@Test
+	public void importPersons_Argument() throws Exception {
+		CsvConfig csvConfig = new CsvConfig();
+		csvConfig.config(config);
+		CsvStreamArgumentsReader argumentsReader = new CsvStreamArgumentsReader(csvConfig);
+		Type[] parameters = CsvReaderTest.class.getDeclaredMethod("importPersons", CsvReader.class).getGenericParameterTypes();
+
+		for (String fixture : new String[] { "fixture/persons.csv", "fixture/escape-new-line.csv" }) {
+			byte[] csv = Files.readAllBytes(new File(fixture).toPath());
+			List<String> expected = new ArrayList<>();
+			try (CsvReader<Person> reader = csvFactory.getReader(csvConfig.getDescriptor(Person.class), new ByteArrayInputStream(csv))) {
+				for (Person person : reader) {
+					expected.add(person.getName() + ":" + person.getAge());
+				}
+			}
+
+			List<String> persons = new ArrayList<>();
+			try {
+				@SuppressWarnings("unchecked")
+				CsvReader<Person> reader = (CsvReader<Person>) argumentsReader.read(new MockHttpRequest(csv).proxy(), parameters)[0];
+				// guard against silent fallback to reference reader, that would make comparison meaningless
+				Field source = reader.getClass().getDeclaredField("reader");
+				source.setAccessible(true);
+				assertEquals("CompiledCsvReader", source.get(reader).getClass().getSimpleName());
+				for (Person person : reader) {
+					persons.add(person.getName() + ":" + person.getAge());
+				}
+			} finally {
+				argumentsReader.clean();
+			}
+			assertEquals(expected, persons);
+		}
+	}
+
+	/** Controller method signature, for formal parameters. */
+	static void importPersons(CsvReader<Person> persons) {
+	}
 }
@@ -0,0 +1,236 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.function.BooleanSupplier;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jslib.lang.BugError;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.lang.ConfigException;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+
+public class CsvRegistryTest {
+	private static final String TEMPLATE = "" + //
+			"<?xml version='1.0' encoding='UTF-8'?>" + //
+			"<csv class='com.jslib.tiny.plugin.csv.unit.fixture.Person' header='true' delimiter=',' null-value='null' batch-size='%s'>" + //
+			"	<column field='name' />" + //
+			"	<column field='age' />" + //
+			"</csv>";
+
+	private static final String TEMPLATES_MBEAN = "com.jslib.csv:type=Templates";
+
+	private static final String WATCHER_THREAD = "csv-templates-watcher";
+
+	/** Maximum time, in milliseconds, to wait for watcher thread to process a template change. */
+	private static final long WATCH_TIMEOUT = 10000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CsvConfig config;
+	private File template;
+
+	@Before
+	public void beforeTest() throws Exception {
+		// templates MBean could be left registered by tests that do not close configuration
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (server.isRegistered(new ObjectName(TEMPLATES_MBEAN))) {
+			server.unregisterMBean(new ObjectName(TEMPLATES_MBEAN));
+		}
+		config = new CsvConfig();
+		template = new File(folder.getRoot(), "person.xml");
+	}
+
+	@After
+	public void afterTest() {
+		config.close();
+	}
+
+	@Test
+	public void config_Lazy() throws Exception {
+		write(template, "abc");
+		config(false, false);
+		try {
+			config.getDescriptor(Person.class);
+			fail("Invalid template should throw bug error on first request.");
+		} catch (BugError expected) {
+		}
+	}
+
+	@Test(expected = ConfigException.class)
+	public void config_Validate() throws Exception {
+		write(template, "abc");
+		config(true, false);
+	}
+
+	@Test
+	public void config_ValidateValid() throws Exception {
+		write(template, "10");
+		config(true, false);
+		assertNotNull(config.getDescriptor(Person.class));
+		assertEquals(10, config.getBatchSize(Person.class));
+	}
+
+	@Test(expected = ConfigException.class)
+	public void config_ExternalEntity() throws Exception {
+		File secret = folder.newFile("secret.txt");
+		Files.write(secret.toPath(), "secret".getBytes(StandardCharsets.UTF_8));
+		String content = "" + //
+				"<?xml version='1.0' encoding='UTF-8'?>" + //
+				"<!DOCTYPE csv [<!ENTITY secret SYSTEM '" + secret.toURI() + "'>]>" + //
+				"<csv class='com.jslib.tiny.plugin.csv.unit.fixture.Person' header='true' delimiter=',' null-value='&secret;'>" + //
+				"	<column field='name' />" + //
+				"</csv>";
+		Files.write(template.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		config(false, false);
+	}
+
+	@Test
+	public void config_InvalidImport() throws Exception {
+		write(template, "10");
+		String repository = String.format("<repository path='%s' files-pattern='*.xml' watch='true' />", folder.getRoot());
+		try {
+			config.config(new ConfigBuilder("<csv>" + repository + "<import parallelism='0' /></csv>").build());
+			fail("Invalid import configuration should be rejected.");
+		} catch (ConfigException expected) {
+		}
+		// rejected before templates are indexed and watched, keeping previous import configuration
+		assertFalse(isWatcherAlive());
+		assertNull(config.getDescriptor(Person.class));
+		assertTrue(config.getImportParallelism() > 0);
+	}
+
+	@Test
+	public void watch_Reload() throws Exception {
+		write(template, "10");
+		config(false, true);
+		assertEquals(10, config.getBatchSize(Person.class));
+
+		write(template, "20");
+		waitFor(() -> config.getBatchSize(Person.class) == 20);
+	}
+
+	@Test
+	public void watch_InvalidReload() throws Exception {
+		write(template, "10");
+		config(false, true);
+		assertEquals(10, config.getBatchSize(Person.class));
+
+		// invalid change keeps previous descriptor, fixed template is reloaded
+		write(template, "abc");
+		Thread.sleep(500);
+		assertEquals(10, config.getBatchSize(Person.class));
+		write(template, "30");
+		waitFor(() -> config.getBatchSize(Person.class) == 30);
+	}
+
+	@Test
+	public void watch_Delete() throws Exception {
+		write(template, "10");
+		config(false, true);
+		assertNotNull(config.getDescriptor(Person.class));
+
+		assertTrue(template.delete());
+		waitFor(() -> config.getDescriptor(Person.class) == null);
+	}
+
+	@Test
+	public void close() throws Exception {
+		write(template, "10");
+		config(false, true);
+		assertTrue(isWatcherAlive());
+
+		config.close();
+		assertFalse(isWatcherAlive());
+		// close is idempotent
+		config.close();
+		assertNotNull(config.getDescriptor(Person.class));
+	}
+
+	@Test
+	public void templatesMBean() throws Exception {
+		write(template, "10");
+		config(false, false);
+		assertEquals(1, templatesAttribute("IndexedTemplates"));
+
+		// configuration invoked again does not register a new MBean
+		config(false, false);
+		assertEquals(1, templatesAttribute("IndexedTemplates"));
+
+		config.close();
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(TEMPLATES_MBEAN)));
+	}
+
+	@Test
+	public void templatesMBean_RegisteredOnce() throws Exception {
+		write(template, "10");
+		config(false, false);
+
+		// second configuration in the same process does not replace templates MBean, nor unregisters it on close
+		File otherRepository = folder.newFolder("other");
+		CsvConfig otherConfig = new CsvConfig();
+		otherConfig.config(new ConfigBuilder(String.format("<csv><repository path='%s' files-pattern='*.xml' /></csv>", otherRepository)).build());
+		otherConfig.close();
+
+		assertEquals(1, templatesAttribute("IndexedTemplates"));
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private static int templatesAttribute(String name) throws Exception {
+		return (Integer) ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName(TEMPLATES_MBEAN), name);
+	}
+
+	private void config(boolean validate, boolean watch) throws Exception {
+		String repository = String.format("<repository path='%s' files-pattern='*.xml' validate='%s' watch='%s' />", folder.getRoot(), validate, watch);
+		config.config(new ConfigBuilder("<csv>" + repository + "</csv>").build());
+	}
+
+	private static void write(File template, String batchSize) throws Exception {
+		long lastModified = template.lastModified();
+		Files.write(template.toPath(), String.format(TEMPLATE, batchSize).getBytes(StandardCharsets.UTF_8));
+		// descriptors cache is keyed by last modified time that could have seconds granularity
+		if (lastModified != 0) {
+			template.setLastModified(lastModified + 1000);
+		}
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + WATCH_TIMEOUT;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Template change not processed by watcher.");
+			}
+			Thread.sleep(50);
+		}
+	}
+
+	private static boolean isWatcherAlive() {
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().equals(WATCHER_THREAD) && thread.isAlive()) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
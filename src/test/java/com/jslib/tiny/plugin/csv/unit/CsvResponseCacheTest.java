@@ -0,0 +1,65 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jslib.tiny.plugin.csv.CsvResponseCache;
+
+public class CsvResponseCacheTest {
+	private static final byte[] CONTENT = "\"name\",\"age\"\r\n\"John Doe\",\"54\"\r\n".getBytes(StandardCharsets.UTF_8);
+
+	private CsvResponseCache cache;
+
+	@Before
+	public void beforeTest() {
+		cache = CsvResponseCache.instance();
+		cache.clear();
+	}
+
+	@Test
+	public void store() throws Exception {
+		ByteArrayOutputStream response = new ByteArrayOutputStream();
+		CsvResponseCache.Store store = cache.store("\"etag\"", response);
+		try {
+			store.write(CONTENT);
+			store.close();
+			store.commit();
+		} finally {
+			store.discard();
+		}
+
+		assertArrayEquals(CONTENT, response.toByteArray());
+		assertEquals(1, cache.size());
+		assertEquals(CONTENT.length, cache.getBytes());
+
+		CsvResponseCache.Response cachedResponse = cache.get("\"etag\"");
+		assertNotNull(cachedResponse);
+		assertEquals(CONTENT.length, cachedResponse.getLength());
+		try (InputStream stream = cachedResponse.getStream()) {
+			assertArrayEquals(CONTENT, stream.readAllBytes());
+		}
+		assertEquals(1, cache.getHits());
+		assertEquals(0, cache.getMisses());
+	}
+
+	@Test
+	public void store_Discarded() throws Exception {
+		CsvResponseCache.Store store = cache.store("\"etag\"", new ByteArrayOutputStream());
+		store.write(CONTENT);
+		store.discard();
+
+		assertEquals(0, cache.size());
+		assertNull(cache.get("\"etag\""));
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+}
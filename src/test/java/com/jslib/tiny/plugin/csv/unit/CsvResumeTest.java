@@ -0,0 +1,171 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jslib.container.mvc.AbstractView;
+import com.jslib.container.mvc.ViewMeta;
+import com.jslib.tiny.plugin.csv.CsvView;
+import com.jslib.tiny.plugin.csv.VersionedModel;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpRequest;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpResponse;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+import com.jslib.util.Classes;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Resumed export body should be the suffix of whole response starting at requested offset, whatever checkpoint it is
+ * resumed from; stale tokens and offsets beyond response end are not resumed.
+ */
+public class CsvResumeTest {
+	private static final String TEMPLATE = "" + //
+			"<?xml version='1.0' encoding='UTF-8'?>" + //
+			"<csv class='com.jslib.tiny.plugin.csv.unit.fixture.Person' header='true' delimiter=',' null-value='null'>" + //
+			"	<column field='name' />" + //
+			"	<column field='age' />" + //
+			"</csv>";
+
+	private static final String VERSION = "1";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File template;
+	private List<Person> persons;
+
+	@Before
+	public void beforeTest() throws Exception {
+		template = folder.newFile("person.xml");
+		Files.write(template.toPath(), TEMPLATE.getBytes(StandardCharsets.UTF_8));
+		persons = new ArrayList<>();
+		for (int i = 0; i < 100; ++i) {
+			persons.add(new Person("Person " + i, i));
+		}
+	}
+
+	@Test
+	public void export_Headers() throws Exception {
+		MockHttpResponse response = export(request(), VERSION);
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertEquals("bytes", response.getHeader("Accept-Ranges"));
+		assertNotNull(response.getHeader("ETag"));
+		assertEquals(response.getHeader("ETag"), response.getHeader("X-Resume-Token"));
+		assertNull(response.getHeader("X-Resume-Offset"));
+	}
+
+	@Test
+	public void range_Valid() throws Exception {
+		String body = export(request(), VERSION).getBody();
+		// offsets on checkpoint, between checkpoints and on last byte
+		for (int offset : new int[] { 1, 173, 500, body.length() - 1 }) {
+			MockHttpResponse response = export(request().header("Range", "bytes=" + offset + "-"), VERSION);
+			assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+			assertEquals(String.format("bytes %d-%d/%d", offset, body.length() - 1, body.length()), response.getHeader("Content-Range"));
+			assertEquals(Integer.toString(body.length() - offset), response.getHeader("Content-Length"));
+			assertEquals(body.substring(offset), response.getBody());
+		}
+	}
+
+	@Test
+	public void range_NotCompleted() throws Exception {
+		// response length is not known before an export completes
+		MockHttpResponse response = export(request().header("Range", "bytes=100-"), VERSION);
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertNull(response.getHeader("Content-Range"));
+		assertEquals(export(request(), VERSION).getBody(), response.getBody());
+	}
+
+	@Test
+	public void range_Stale() throws Exception {
+		String body = export(request(), VERSION).getBody();
+		MockHttpResponse response = export(request().header("Range", "bytes=100-").header("If-Range", "\"stale\""), VERSION);
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertNull(response.getHeader("Content-Range"));
+		assertEquals(body, response.getBody());
+	}
+
+	@Test
+	public void range_OutOfRange() throws Exception {
+		String body = export(request(), VERSION).getBody();
+		MockHttpResponse response = export(request().header("Range", "bytes=" + body.length() + "-"), VERSION);
+		assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+		assertEquals("bytes */" + body.length(), response.getHeader("Content-Range"));
+		assertEquals("", response.getBody());
+	}
+
+	@Test
+	public void token_Valid() throws Exception {
+		MockHttpResponse first = export(request(), VERSION);
+		String body = first.getBody();
+		String token = first.getHeader("X-Resume-Token");
+		for (int offset : new int[] { 0, 173, body.length() }) {
+			MockHttpResponse response = export(request().header("X-Resume-Token", token).header("X-Resume-Offset", Integer.toString(offset)), VERSION);
+			assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+			assertEquals(Integer.toString(offset), response.getHeader("X-Resume-Offset"));
+			assertEquals(body.substring(offset), response.getBody());
+		}
+	}
+
+	@Test
+	public void token_Stale() throws Exception {
+		String token = export(request(), VERSION).getHeader("X-Resume-Token");
+		// model version changed since token was issued
+		MockHttpResponse response = export(request().header("X-Resume-Token", token).header("X-Resume-Offset", "173"), "2");
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertNull(response.getHeader("X-Resume-Offset"));
+		assertEquals(export(request(), "2").getBody(), response.getBody());
+	}
+
+	@Test
+	public void token_OutOfRange() throws Exception {
+		MockHttpResponse first = export(request(), VERSION);
+		int length = first.getBody().length();
+		MockHttpResponse response = export(request().header("X-Resume-Token", first.getHeader("X-Resume-Token")).header("X-Resume-Offset", Integer.toString(length + 1)), VERSION);
+		assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+		assertEquals("bytes */" + length, response.getHeader("Content-Range"));
+		assertNull(response.getHeader("X-Resume-Offset"));
+	}
+
+	@Test
+	public void token_InvalidOffset() throws Exception {
+		MockHttpResponse first = export(request(), VERSION);
+		MockHttpResponse response = export(request().header("X-Resume-Token", first.getHeader("X-Resume-Token")).header("X-Resume-Offset", "abc"), VERSION);
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertEquals("0", response.getHeader("X-Resume-Offset"));
+		assertEquals(first.getBody(), response.getBody());
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private static MockHttpRequest request() {
+		return new MockHttpRequest(new byte[0]);
+	}
+
+	private MockHttpResponse export(MockHttpRequest request, String version) throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("resumable", "true");
+		properties.setProperty("checkpoint-rows", "10");
+		CsvView view = new CsvView();
+		Classes.invoke(view, AbstractView.class, "setMeta", new ViewMeta(template, CsvView.class, properties));
+		view.setModel(new VersionedModel(persons, version));
+
+		MockHttpResponse response = new MockHttpResponse();
+		view.serialize(request.proxy(), response.proxy());
+		return response;
+	}
+}
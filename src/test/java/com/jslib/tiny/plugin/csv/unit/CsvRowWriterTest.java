@@ -0,0 +1,143 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jslib.api.csv.CsvDescriptor;
+import com.jslib.api.csv.CsvFactory;
+import com.jslib.api.csv.CsvWriter;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+import com.jslib.util.Classes;
+
+/**
+ * Rows encoded by compiled binder should be byte for byte equal to reference CSV writer output, header line included.
+ */
+public class CsvRowWriterTest {
+	private static final String HEADER = "\"NAME\",\"AGE\"\r\n";
+
+	private CsvFactory csvFactory;
+	private CsvDescriptor<Person> descriptor;
+	private Object binder;
+
+	@Before
+	public void beforeTest() throws Exception {
+		csvFactory = Classes.loadService(CsvFactory.class);
+		CsvConfig config = new CsvConfig();
+		config.config(new ConfigBuilder("<csv><repository path='fixture' files-pattern='person.xml' /></csv>").build());
+		descriptor = config.getDescriptor(Person.class);
+
+		Method getBinder = CsvConfig.class.getDeclaredMethod("getBinder", Class.class);
+		getBinder.setAccessible(true);
+		binder = getBinder.invoke(config, Person.class);
+		// guard against silent fallback to reference path, that would make comparisons meaningless
+		assertNotNull(binder);
+	}
+
+	@Test
+	public void write_Reference() throws Exception {
+		List<Person> persons = new ArrayList<>();
+		persons.add(new Person("John Doe", 54));
+		persons.add(new Person("Lion, \"The Little Cat\"", 4));
+		persons.add(new Person("\"", 0));
+		persons.add(new Person("Iulian\r\nRotaru", 55));
+		persons.add(new Person("line\nfeed and carriage\rreturn", 1));
+		persons.add(new Person("Ren\u00e9e \u20ac \ud83d\ude00", 2));
+		persons.add(new Person("", -1));
+		persons.add(new Person("negative", -54));
+		persons.add(new Person("minimum", Integer.MIN_VALUE));
+		persons.add(new Person("maximum", Integer.MAX_VALUE));
+
+		byte[] reference = writeReference(persons);
+		assertArrayEquals(reference, write(persons));
+		// second writer uses cached header
+		assertArrayEquals(reference, write(persons));
+	}
+
+	@Test
+	public void write_CachedHeader() throws Exception {
+		write(Arrays.asList(new Person("John Doe", 54)));
+		byte[] header = (byte[]) invoke(binder, "headerBytes");
+		assertEquals(HEADER, new String(header, StandardCharsets.UTF_8));
+
+		// second writer instance takes header from binder, not from reference writer
+		Method setHeader = binder.getClass().getDeclaredMethod("headerBytes", byte[].class);
+		setHeader.setAccessible(true);
+		setHeader.invoke(binder, (Object) "CACHED\r\n".getBytes(StandardCharsets.UTF_8));
+		try {
+			assertEquals("CACHED\r\n\"Jane Doe\",\"50\"\r\n", new String(write(Arrays.asList(new Person("Jane Doe", 50))), StandardCharsets.UTF_8));
+		} finally {
+			setHeader.invoke(binder, (Object) header);
+		}
+	}
+
+	@Test
+	public void write_LargeRows() throws Exception {
+		// rows larger than buffer capacity and many rows, so that buffer is drained while writing
+		List<Person> persons = new ArrayList<>();
+		char[] name = new char[20000];
+		Arrays.fill(name, '\u20ac');
+		persons.add(new Person(new String(name), 1));
+		for (int i = 0; i < 1000; ++i) {
+			persons.add(new Person("Person \"" + i + "\"", -i));
+		}
+		assertArrayEquals(writeReference(persons), write(persons));
+	}
+
+	@Test
+	public void write_Empty() throws Exception {
+		assertEquals(HEADER, new String(write(new ArrayList<>()), StandardCharsets.UTF_8));
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private byte[] writeReference(List<Person> persons) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+		CsvWriter<Person> csvWriter = csvFactory.getWriter(descriptor, writer);
+		for (Person person : persons) {
+			csvWriter.write(person);
+		}
+		csvWriter.close();
+		return bytes.toByteArray();
+	}
+
+	private byte[] write(List<Person> persons) throws Exception {
+		Class<?> writerClass = Class.forName("com.jslib.tiny.plugin.csv.CsvRowWriter");
+		Constructor<?> constructor = writerClass.getDeclaredConstructor(CsvFactory.class, CsvDescriptor.class, binder.getClass(), OutputStream.class);
+		constructor.setAccessible(true);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Object writer = constructor.newInstance(csvFactory, descriptor, binder, bytes);
+
+		Method write = writerClass.getDeclaredMethod("write", Object.class);
+		write.setAccessible(true);
+		for (Person person : persons) {
+			write.invoke(writer, person);
+		}
+		invoke(writer, "close");
+		return bytes.toByteArray();
+	}
+
+	private static Object invoke(Object object, String name) throws Exception {
+		Method method = object.getClass().getDeclaredMethod(name);
+		method.setAccessible(true);
+		return method.invoke(object);
+	}
+}
@@ -0,0 +1,227 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jslib.container.mvc.AbstractView;
+import com.jslib.container.mvc.ViewMeta;
+import com.jslib.lang.BugError;
+import com.jslib.tiny.plugin.csv.CsvView;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+import com.jslib.util.Classes;
+
+/**
+ * Sorted export should be indistinguishable from exporting a model already sorted, stable, in memory, whatever the number
+ * of spilled runs.
+ */
+public class CsvSorterTest {
+	private static final String TEMPLATE = "" + //
+			"<?xml version='1.0' encoding='UTF-8'?>" + //
+			"<csv class='com.jslib.tiny.plugin.csv.unit.fixture.Person' header='%s' delimiter=',' null-value='null' %s>" + //
+			"	<column field='name' />" + //
+			"	<column field='age' />" + //
+			"</csv>";
+
+	private static final String HEADER = "\"NAME\",\"AGE\"\r\n";
+
+	private static final String ITEM_TEMPLATE = "" + //
+			"<?xml version='1.0' encoding='UTF-8'?>" + //
+			"<csv class='com.jslib.tiny.plugin.csv.unit.CsvSorterTest$Item' header='true' delimiter=',' sort='rank' sort-run-size='10'>" + //
+			"	<column field='name' />" + //
+			"</csv>";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void sort_SingleRun() throws Exception {
+		List<Person> persons = persons(100);
+		String sorted = export(template(true, "sort='age' sort-run-size='1000'"), persons, null);
+		assertEquals(export(template(true, ""), sortByAge(persons, false), null), sorted);
+	}
+
+	@Test
+	public void sort_MultipleRuns() throws Exception {
+		// rows with equal ages are spread over many runs and should keep model order
+		List<Person> persons = persons(1000);
+		String sorted = export(template(true, "sort='age' sort-run-size='7'"), persons, null);
+		assertEquals(export(template(true, ""), sortByAge(persons, false), null), sorted);
+		assertTrue(sorted.startsWith(HEADER));
+	}
+
+	@Test
+	public void sort_MultipleRunsDescending() throws Exception {
+		List<Person> persons = persons(1000);
+		String sorted = export(template(false, "sort='age desc' sort-run-size='10'"), persons, null);
+		assertEquals(export(template(false, ""), sortByAge(persons, true), null), sorted);
+	}
+
+	@Test
+	public void sort_MultiplePasses() throws Exception {
+		// more runs than merge fan-in: runs are merged in intermediate passes, still stable, and all run files deleted
+		File sortDir = folder.newFolder("sort");
+		List<Person> persons = persons(5000);
+		String sorted = export(template(true, "sort='age' sort-run-size='1'"), persons, sortDir);
+		assertEquals(export(template(true, ""), sortByAge(persons, false), null), sorted);
+		assertEquals(0, sortDir.list().length);
+	}
+
+	@Test
+	public void sort_MixedKeyTypes() throws Exception {
+		File sortDir = folder.newFolder("sort");
+		File template = new File(folder.getRoot(), "item.xml");
+		Files.write(template.toPath(), ITEM_TEMPLATE.getBytes(StandardCharsets.UTF_8));
+		List<Item> items = new ArrayList<>();
+		for (int i = 0; i < 100; ++i) {
+			items.add(new Item("Item " + i, i < 50 ? (Object) i : (Object) ("" + i)));
+		}
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		try {
+			view(template, items, sortDir).serialize(stream);
+			fail("Mixed sort key types should be rejected.");
+		} catch (BugError e) {
+			assertTrue(e.getMessage().contains("Mixed"));
+		}
+		// rejected while rows are consumed, before anything is written
+		assertEquals(0, stream.size());
+		assertEquals(0, sortDir.list().length);
+	}
+
+	@Test
+	public void sort_ExactRunSize() throws Exception {
+		// rows count multiple of run size: last run is full but still merged
+		List<Person> persons = persons(100);
+		String sorted = export(template(true, "sort='age' sort-run-size='10'"), persons, null);
+		assertEquals(export(template(true, ""), sortByAge(persons, false), null), sorted);
+	}
+
+	@Test
+	public void sort_EmptyModel() throws Exception {
+		assertEquals(HEADER, export(template(true, "sort='age' sort-run-size='10'"), Collections.emptyList(), null));
+		assertEquals("", export(template(false, "sort='age' sort-run-size='10'"), Collections.emptyList(), null));
+	}
+
+	@Test
+	public void sort_SortDir() throws Exception {
+		File sortDir = folder.newFolder("sort");
+		List<Person> persons = persons(100);
+		List<Integer> runFiles = new ArrayList<>();
+		// model iterator records run files count while rows are consumed
+		Iterable<Person> model = () -> new Iterator<Person>() {
+			private final Iterator<Person> iterator = persons.iterator();
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Person next() {
+				runFiles.add(sortDir.list().length);
+				return iterator.next();
+			}
+		};
+
+		String sorted = export(template(true, "sort='age' sort-run-size='10'"), model, sortDir);
+		assertEquals(export(template(true, ""), sortByAge(persons, false), null), sorted);
+		assertEquals(9, (int) runFiles.get(runFiles.size() - 1));
+		// run files are deleted after merge
+		assertEquals(0, sortDir.list().length);
+	}
+
+	@Test
+	public void sort_OutputFailure() throws Exception {
+		File sortDir = folder.newFolder("sort");
+		CsvView view = view(template(true, "sort='age' sort-run-size='10'"), persons(100), sortDir);
+		OutputStream stream = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+		};
+		try {
+			view.serialize(stream);
+			fail("Output failure should be propagated.");
+		} catch (IOException expected) {
+		}
+		assertEquals(0, sortDir.list().length);
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private File template(boolean header, String attributes) throws Exception {
+		File template = new File(folder.getRoot(), String.format("person-%s-%d.xml", header, attributes.hashCode()));
+		Files.write(template.toPath(), String.format(TEMPLATE, header, attributes).getBytes(StandardCharsets.UTF_8));
+		return template;
+	}
+
+	private static String export(File template, Object model, File sortDir) throws Exception {
+		CsvView view = view(template, model, sortDir);
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		view.serialize(stream);
+		return new String(stream.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static CsvView view(File template, Object model, File sortDir) throws Exception {
+		Properties properties = new Properties();
+		if (sortDir != null) {
+			properties.setProperty("sort-dir", sortDir.getPath());
+		}
+		CsvView view = new CsvView();
+		Classes.invoke(view, AbstractView.class, "setMeta", new ViewMeta(template, CsvView.class, properties));
+		view.setModel(model);
+		return view;
+	}
+
+	private static List<Person> persons(int count) {
+		List<Person> persons = new ArrayList<>();
+		for (int i = 0; i < count; ++i) {
+			persons.add(new Person("Person " + i, (i * 7) % 13));
+		}
+		return persons;
+	}
+
+	/** Row type with sort field declared too general to tell its key type. */
+	public static class Item {
+		private final String name;
+		private final Object rank;
+
+		public Item(String name, Object rank) {
+			this.name = name;
+			this.rank = rank;
+		}
+	}
+
+	/** Stable in memory sort, as reference for sorted export. */
+	private static List<Person> sortByAge(List<Person> persons, boolean descending) {
+		List<Person> sorted = new ArrayList<>(persons);
+		Comparator<Person> comparator = Comparator.comparingInt(Person::getAge);
+		sorted.sort(descending ? comparator.reversed() : comparator);
+		return sorted;
+	}
+}
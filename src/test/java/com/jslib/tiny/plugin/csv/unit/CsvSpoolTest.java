@@ -0,0 +1,79 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.CsvStreamArgumentsReader;
+import com.jslib.tiny.plugin.csv.ParallelCsvReader;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpRequest;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+
+public class CsvSpoolTest {
+	@Test
+	public void split_EscapeNewLine() throws Exception {
+		assertSplits("fixture/escape-new-line.csv");
+	}
+
+	@Test
+	public void split_PersonsWithComments() throws Exception {
+		assertSplits("fixture/persons.csv");
+	}
+
+	@Test
+	public void split_LiteralQuotes() throws Exception {
+		List<String> persons = assertSplits("fixture/literal-quotes.csv");
+		assertEquals(7, persons.size());
+		assertEquals("Multi\r\nline \"quoted\", text:5", persons.get(3));
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	/**
+	 * Read CSV file split into chunks of every size from one byte to file length and compare with serial read, that is, a
+	 * single chunk.
+	 */
+	private static List<String> assertSplits(String path) throws Exception {
+		byte[] csv = Files.readAllBytes(new File(path).toPath());
+		List<String> expected = read(csv, Long.MAX_VALUE);
+		for (int chunkSize = 1; chunkSize <= csv.length; ++chunkSize) {
+			assertEquals("chunk size " + chunkSize, expected, read(csv, chunkSize));
+		}
+		return expected;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<String> read(byte[] csv, long chunkSize) throws Exception {
+		CsvConfig config = new CsvConfig();
+		config.config(new ConfigBuilder(String.format("<csv><repository path='fixture' files-pattern='person.xml' /><import parallelism='2' chunk-size='%d' ordered='true' /></csv>", chunkSize)).build());
+		CsvStreamArgumentsReader reader = new CsvStreamArgumentsReader(config);
+
+		List<String> persons = new ArrayList<>();
+		try {
+			ParallelCsvReader<Person> parallelReader = (ParallelCsvReader<Person>) reader.read(new MockHttpRequest(csv).proxy(), parameters())[0];
+			for (Person person : parallelReader) {
+				persons.add(person.getName() + ":" + person.getAge());
+			}
+		} finally {
+			reader.clean();
+		}
+		return persons;
+	}
+
+	private static Type[] parameters() throws NoSuchMethodException {
+		return CsvSpoolTest.class.getDeclaredMethod("importPersons", ParallelCsvReader.class).getGenericParameterTypes();
+	}
+
+	/** Controller method signature, for formal parameters. */
+	static void importPersons(ParallelCsvReader<Person> persons) {
+	}
+}
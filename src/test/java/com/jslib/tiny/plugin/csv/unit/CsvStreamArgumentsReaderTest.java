@@ -0,0 +1,100 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jslib.api.csv.CsvReader;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.lang.IllegalArgumentException;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.CsvStreamArgumentsReader;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpRequest;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+
+public class CsvStreamArgumentsReaderTest {
+	private static final String CSV = "name,age\r\nJohn Doe,54\r\nJane Doe,50\r\n";
+
+	private CsvStreamArgumentsReader reader;
+
+	@Before
+	public void beforeTest() throws Exception {
+		CsvConfig config = new CsvConfig();
+		config.config(new ConfigBuilder("<csv><repository path='fixture' files-pattern='person.xml' /></csv>").build());
+		reader = new CsvStreamArgumentsReader(config);
+	}
+
+	@Test
+	public void read_Identity() throws Exception {
+		assertEquals("[John Doe:54, Jane Doe:50]", read(null, CSV.getBytes(StandardCharsets.UTF_8)));
+		assertEquals("[John Doe:54, Jane Doe:50]", read("identity", CSV.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void read_Gzip() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (OutputStream stream = new GZIPOutputStream(bytes)) {
+			stream.write(CSV.getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals("[John Doe:54, Jane Doe:50]", read("gzip", bytes.toByteArray()));
+		assertEquals("[John Doe:54, Jane Doe:50]", read(" X-GZIP ", bytes.toByteArray()));
+	}
+
+	@Test
+	public void read_Deflate() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (OutputStream stream = new DeflaterOutputStream(bytes)) {
+			stream.write(CSV.getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals("[John Doe:54, Jane Doe:50]", read("deflate", bytes.toByteArray()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void read_NotSupportedEncoding() throws Exception {
+		read("br", CSV.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	@SuppressWarnings("unchecked")
+	private String read(String contentEncoding, byte[] body) throws IOException {
+		MockHttpRequest request = new MockHttpRequest(body);
+		if (contentEncoding != null) {
+			request.header("Content-Encoding", contentEncoding);
+		}
+		List<String> persons = new ArrayList<>();
+		try {
+			CsvReader<Person> csvReader = (CsvReader<Person>) reader.read(request.proxy(), parameters())[0];
+			for (Person person : csvReader) {
+				persons.add(person.getName() + ":" + person.getAge());
+			}
+		} finally {
+			reader.clean();
+		}
+		return persons.toString();
+	}
+
+	private static Type[] parameters() {
+		try {
+			return CsvStreamArgumentsReaderTest.class.getDeclaredMethod("importPersons", CsvReader.class).getGenericParameterTypes();
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Controller method signature, for formal parameters. */
+	static void importPersons(CsvReader<Person> persons) {
+	}
+}
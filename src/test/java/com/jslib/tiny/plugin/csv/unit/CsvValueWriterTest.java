@@ -0,0 +1,80 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jslib.lang.BugError;
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.CsvValueWriter;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpResponse;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+
+public class CsvValueWriterTest {
+	private static final String CONTENT_TYPE = "text/csv;charset=UTF-8;header=present";
+	private static final String PERSONS = "\"NAME\",\"AGE\"\r\n\"John Doe\",\"54\"\r\n\"Jane Doe\",\"50\"\r\n";
+
+	private CsvValueWriter writer;
+	private MockHttpResponse response;
+
+	@Before
+	public void beforeTest() throws Exception {
+		CsvConfig config = new CsvConfig();
+		config.config(new ConfigBuilder(String.format("<csv><repository path='%s' files-pattern='person.xml' /></csv>", new File("fixture").getAbsolutePath())).build());
+		writer = new CsvValueWriter(config);
+		response = new MockHttpResponse();
+	}
+
+	@Test
+	public void write_List() throws IOException {
+		writer.write(response.proxy(), Arrays.asList(new Person("John Doe", 54), new Person("Jane Doe", 50)));
+		assertEquals(CONTENT_TYPE, response.getContentType());
+		assertEquals(PERSONS, response.getBody());
+	}
+
+	@Test
+	public void write_Stream() throws IOException {
+		writer.write(response.proxy(), Stream.of(new Person("John Doe", 54), new Person("Jane Doe", 50)));
+		assertEquals(CONTENT_TYPE, response.getContentType());
+		assertEquals(PERSONS, response.getBody());
+	}
+
+	@Test
+	public void write_Subclass() throws IOException {
+		List<Person> value = new ArrayList<>();
+		value.add(new Person("John Doe", 54) {});
+		value.add(new Person("Jane Doe", 50) {});
+		writer.write(response.proxy(), value);
+		assertEquals(CONTENT_TYPE, response.getContentType());
+		assertEquals(PERSONS, response.getBody());
+	}
+
+	@Test
+	public void write_EmptyList() throws IOException {
+		writer.write(response.proxy(), Collections.emptyList());
+		assertEquals(CONTENT_TYPE, response.getContentType());
+		assertEquals("", response.getBody());
+	}
+
+	@Test
+	public void write_EmptyArray() throws IOException {
+		writer.write(response.proxy(), new Person[0]);
+		assertEquals(CONTENT_TYPE, response.getContentType());
+		assertEquals("\"NAME\",\"AGE\"\r\n", response.getBody());
+	}
+
+	@Test(expected = BugError.class)
+	public void write_InvalidValue() throws IOException {
+		writer.write(response.proxy(), new Person("John Doe", 54));
+	}
+}
@@ -1,15 +1,24 @@
 package com.jslib.tiny.plugin.csv.unit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
+import java.util.stream.Stream;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -19,18 +28,20 @@ import com.jslib.container.mvc.ViewMeta;
 import com.jslib.io.WriterOutputStream;
 import com.jslib.lang.BugError;
 import com.jslib.tiny.plugin.csv.CsvView;
+import com.jslib.tiny.plugin.csv.RowSupplier;
 import com.jslib.tiny.plugin.csv.unit.fixture.Person;
 import com.jslib.util.Classes;
 
 public class CsvViewTest {
 	private CsvView view;
+	private ViewMeta meta;
 
 	@Before
 	public void beforeTest() throws Exception {
 		view = new CsvView();
 
 		File template = new File("fixture/person.xml");
-		ViewMeta meta = new ViewMeta(template, CsvView.class, new Properties());
+		meta = new ViewMeta(template, CsvView.class, new Properties());
 		Classes.invoke(view, AbstractView.class, "setMeta", meta);
 	}
 
@@ -55,6 +66,30 @@ public class CsvViewTest {
 		assertEquals("\"NAME\",\"AGE\"\r\n\"John Doe\",\"54\"\r\n\"Grand Doe, \"\"Elder\"\"\",\"77\"\r\n", response.toString());
 	}
 
+	@Test
+	public void serialize_Iterator() throws IOException {
+		Iterator<Person> model = Arrays.asList(new Person("John Doe", 54), new Person("Jane Doe", 50)).iterator();
+		view.setModel(model);
+		assertEquals("\"NAME\",\"AGE\"\r\n\"John Doe\",\"54\"\r\n\"Jane Doe\",\"50\"\r\n", exportModel());
+	}
+
+	@Test
+	public void serialize_Stream() throws IOException {
+		boolean[] closed = new boolean[1];
+		Stream<Person> model = Stream.of(new Person("John Doe", 54), new Person("Jane Doe", 50)).onClose(() -> closed[0] = true);
+		view.setModel(model);
+		assertEquals("\"NAME\",\"AGE\"\r\n\"John Doe\",\"54\"\r\n\"Jane Doe\",\"50\"\r\n", exportModel());
+		assertTrue(closed[0]);
+	}
+
+	@Test
+	public void serialize_RowSupplier() throws IOException {
+		MockRowSupplier model = new MockRowSupplier(new Person("John Doe", 54), new Person("Jane Doe", 50));
+		view.setModel(model);
+		assertEquals("\"NAME\",\"AGE\"\r\n\"John Doe\",\"54\"\r\n\"Jane Doe\",\"50\"\r\n", exportModel());
+		assertTrue(model.closed);
+	}
+
 	@Test(expected = BugError.class)
 	public void serialize_NullModel() throws IOException {
 		view.setModel(null);
@@ -66,4 +101,98 @@ public class CsvViewTest {
 		view.setModel(new Person());
 		view.serialize(new FileOutputStream("fixture/fake"));
 	}
+
+	@Test
+	public void serialize_Metrics() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("com.jslib.csv:type=ViewExport,name=" + ObjectName.quote(meta.getName()));
+		long operations = server.isRegistered(name) ? (Long) server.getAttribute(name, "Operations") : 0;
+		long rows = server.isRegistered(name) ? (Long) server.getAttribute(name, "Rows") : 0;
+
+		view.setModel(Arrays.asList(new Person("John Doe", 54), new Person("Jane Doe", 50)));
+		exportModel();
+
+		assertEquals(operations + 1, server.getAttribute(name, "Operations"));
+		assertEquals(rows + 2, server.getAttribute(name, "Rows"));
+		assertEquals(0L, server.getAttribute(name, "ActiveStreams"));
+	}
+
+	@Test
+	public void serialize_FlushRows() throws Exception {
+		// 100 rows flushed every 10 rows, plus flush on close
+		assertEquals(flushes(null, null) + 10, flushes("10", null));
+		assertEquals(flushes(null, null) + 3, flushes("30", null));
+	}
+
+	@Test
+	public void serialize_FlushBytes() throws Exception {
+		// every row has 17 bytes so 170 bytes are reached every 10 rows; header bytes count too
+		assertEquals(flushes(null, null) + 10, flushes(null, "170"));
+		assertEquals(flushes(null, null) + 1, flushes(null, "1700"));
+	}
+
+	@Test
+	public void serialize_FlushRowsOrBytes() throws Exception {
+		// first reached interval triggers flush and resets both counters
+		assertEquals(flushes(null, "170"), flushes("50", "170"));
+		assertEquals(flushes("10", null), flushes("10", "1700"));
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private String exportModel() throws IOException {
+		StringWriter response = new StringWriter();
+		OutputStream stream = new WriterOutputStream(response);
+		view.serialize(stream);
+		stream.close();
+		return response.toString();
+	}
+
+	/** Export 100 rows of equal length with given flush properties and return target stream flushes count. */
+	private static int flushes(String flushRows, String flushBytes) throws Exception {
+		Properties properties = new Properties();
+		if (flushRows != null) {
+			properties.setProperty("flush-rows", flushRows);
+		}
+		if (flushBytes != null) {
+			properties.setProperty("flush-bytes", flushBytes);
+		}
+		CsvView view = new CsvView();
+		Classes.invoke(view, AbstractView.class, "setMeta", new ViewMeta(new File("fixture/person.xml"), CsvView.class, properties));
+		List<Person> model = new ArrayList<>();
+		for (int i = 0; i < 100; ++i) {
+			model.add(new Person(String.format("Person %02d", i), i % 10));
+		}
+		view.setModel(model);
+
+		int[] flushes = new int[1];
+		OutputStream stream = new ByteArrayOutputStream() {
+			@Override
+			public void flush() {
+				++flushes[0];
+			}
+		};
+		view.serialize(stream);
+		return flushes[0];
+	}
+
+	private static class MockRowSupplier implements RowSupplier<Person> {
+		private final Iterator<Person> rows;
+		boolean closed;
+
+		public MockRowSupplier(Person... rows) {
+			this.rows = Arrays.asList(rows).iterator();
+		}
+
+		@Override
+		public Person next() throws IOException {
+			return rows.hasNext() ? rows.next() : null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+		}
+	}
 }
@@ -0,0 +1,125 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jslib.lang.ConfigBuilder;
+import com.jslib.tiny.plugin.csv.CsvConfig;
+import com.jslib.tiny.plugin.csv.CsvStreamArgumentsReader;
+import com.jslib.tiny.plugin.csv.ParallelCsvReader;
+import com.jslib.tiny.plugin.csv.unit.fixture.MockHttpRequest;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+
+public class ParallelCsvReaderTest {
+	private static final int ROWS_COUNT = 1000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void read_Ordered() throws Exception {
+		CsvStreamArgumentsReader reader = reader(true);
+		ParallelCsvReader<Person> persons = read(reader);
+
+		List<String> names = new ArrayList<>();
+		for (Person person : persons) {
+			names.add(person.getName());
+		}
+		reader.clean();
+
+		assertEquals(names(), names);
+	}
+
+	@Test
+	public void read_Unordered() throws Exception {
+		CsvStreamArgumentsReader reader = reader(false);
+		ParallelCsvReader<Person> persons = read(reader);
+
+		List<String> names = new ArrayList<>();
+		for (Person person : persons) {
+			names.add(person.getName());
+		}
+		reader.clean();
+
+		// chunks are delivered in completion order but every record is delivered exactly once
+		List<String> expected = names();
+		Collections.sort(expected);
+		Collections.sort(names);
+		assertEquals(expected, names);
+	}
+
+	@Test
+	public void close_DeleteSpool() throws Exception {
+		CsvStreamArgumentsReader reader = reader(true);
+		ParallelCsvReader<Person> persons = read(reader);
+		assertEquals(1, folder.getRoot().list().length);
+
+		// close before iteration completes cancels pending chunks and still deletes spool file
+		Iterator<Person> iterator = persons.iterator();
+		assertEquals("Person 0", iterator.next().getName());
+		reader.clean();
+		assertEquals(0, folder.getRoot().list().length);
+	}
+
+	@Test
+	public void close_EmptyStream() throws Exception {
+		CsvStreamArgumentsReader reader = reader(true);
+		@SuppressWarnings("unchecked")
+		ParallelCsvReader<Person> persons = (ParallelCsvReader<Person>) reader.read(new MockHttpRequest(new byte[0]).proxy(), parameters())[0];
+		assertTrue(!persons.iterator().hasNext());
+		reader.clean();
+		assertEquals(0, folder.getRoot().list().length);
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private CsvStreamArgumentsReader reader(boolean ordered) throws Exception {
+		String descriptor = String.format("<csv><repository path='fixture' files-pattern='person.xml' /><import parallelism='4' chunk-size='256' ordered='%s' spool-dir='%s' /></csv>", ordered, folder.getRoot().getAbsolutePath());
+		CsvConfig config = new CsvConfig();
+		config.config(new ConfigBuilder(descriptor).build());
+		return new CsvStreamArgumentsReader(config);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ParallelCsvReader<Person> read(CsvStreamArgumentsReader reader) throws IOException {
+		StringBuilder csv = new StringBuilder("name,age\r\n");
+		for (int i = 0; i < ROWS_COUNT; ++i) {
+			csv.append("Person ").append(i).append(',').append(i % 100).append("\r\n");
+		}
+		MockHttpRequest request = new MockHttpRequest(csv.toString().getBytes(StandardCharsets.UTF_8));
+		return (ParallelCsvReader<Person>) reader.read(request.proxy(), parameters())[0];
+	}
+
+	private static List<String> names() {
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < ROWS_COUNT; ++i) {
+			names.add("Person " + i);
+		}
+		return names;
+	}
+
+	private static Type[] parameters() {
+		try {
+			return ParallelCsvReaderTest.class.getDeclaredMethod("importPersons", ParallelCsvReader.class).getGenericParameterTypes();
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Controller method signature, for formal parameters. */
+	static void importPersons(ParallelCsvReader<Person> persons) {
+	}
+}
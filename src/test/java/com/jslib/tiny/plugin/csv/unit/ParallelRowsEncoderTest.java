@@ -0,0 +1,98 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jslib.container.mvc.AbstractView;
+import com.jslib.container.mvc.ViewMeta;
+import com.jslib.tiny.plugin.csv.CsvView;
+import com.jslib.tiny.plugin.csv.unit.fixture.Person;
+import com.jslib.util.Classes;
+
+public class ParallelRowsEncoderTest {
+	private static final String TEMPLATE = "" + //
+			"<?xml version='1.0' encoding='UTF-8'?>" + //
+			"<csv class='com.jslib.tiny.plugin.csv.unit.fixture.Person' header='%s' delimiter=',' null-value='null' %s>" + //
+			"	<column field='name' />" + //
+			"	<column field='age' />" + //
+			"</csv>";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void write_Header() throws Exception {
+		assertParallel(true, persons(25000));
+	}
+
+	@Test
+	public void write_NoHeader() throws Exception {
+		assertParallel(false, persons(25000));
+	}
+
+	@Test
+	public void write_SingleRange() throws Exception {
+		assertParallel(true, persons(10));
+		assertParallel(false, persons(10));
+	}
+
+	@Test
+	public void write_WideRows() throws Exception {
+		// rows larger than range bytes limit are encoded one per range
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < 200000; ++i) {
+			name.append((char) ('a' + i % 26));
+		}
+		List<Person> persons = new ArrayList<>();
+		for (int i = 0; i < 50; ++i) {
+			persons.add(new Person(i + name.toString(), i));
+		}
+		assertParallel(true, persons);
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private void assertParallel(boolean header, List<Person> persons) throws Exception {
+		String serial = export(template(header, ""), persons);
+		String parallel = export(template(header, "parallel-threshold='1'"), persons);
+		assertTrue(serial.length() > 0);
+		assertEquals(serial, parallel);
+		assertEquals(header, parallel.startsWith("\"NAME\",\"AGE\"\r\n"));
+	}
+
+	private File template(boolean header, String attributes) throws Exception {
+		File template = new File(folder.getRoot(), String.format("person-%s-%d.xml", header, attributes.length()));
+		Files.write(template.toPath(), String.format(TEMPLATE, header, attributes).getBytes(StandardCharsets.UTF_8));
+		return template;
+	}
+
+	private static String export(File template, List<Person> persons) throws Exception {
+		CsvView view = new CsvView();
+		Classes.invoke(view, AbstractView.class, "setMeta", new ViewMeta(template, CsvView.class, new Properties()));
+		view.setModel(persons);
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		view.serialize(stream);
+		return new String(stream.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static List<Person> persons(int count) {
+		List<Person> persons = new ArrayList<>();
+		for (int i = 0; i < count; ++i) {
+			persons.add(new Person(i % 7 == 0 ? "Doe, \"Junior\" " + i : "Person " + i, i % 100));
+		}
+		return persons;
+	}
+}
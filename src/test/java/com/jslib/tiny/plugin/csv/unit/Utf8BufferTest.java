@@ -0,0 +1,136 @@
+package com.jslib.tiny.plugin.csv.unit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * UTF-8 buffer should produce the same bytes as standard UTF-8 encoder, with quotes doubled for escaped values, and the same
+ * digits as {@link Long#toString(long)}.
+ */
+public class Utf8BufferTest {
+	private Object buffer;
+
+	@Before
+	public void beforeTest() throws Exception {
+		// small capacity so that tests exercise buffer growing
+		Constructor<?> constructor = Class.forName("com.jslib.tiny.plugin.csv.Utf8Buffer").getDeclaredConstructor(int.class);
+		constructor.setAccessible(true);
+		buffer = constructor.newInstance(4);
+	}
+
+	@Test
+	public void appendEscaped_Ascii() throws Exception {
+		assertEscaped("John Doe");
+		assertEscaped("");
+		assertEscaped("a,b;c\td");
+	}
+
+	@Test
+	public void appendEscaped_Quotes() throws Exception {
+		invoke("appendEscaped", String.class, "Lion, \"The Little Cat\"");
+		assertEquals("Lion, \"\"The Little Cat\"\"", string());
+		invoke("clear");
+		invoke("appendEscaped", String.class, "\"\"");
+		assertEquals("\"\"\"\"", string());
+	}
+
+	@Test
+	public void appendEscaped_LineBreaks() throws Exception {
+		assertEscaped("Iulian\r\nRotaru");
+		assertEscaped("\n\r\n\r");
+	}
+
+	@Test
+	public void appendEscaped_MultiByte() throws Exception {
+		// two and three bytes characters
+		assertEscaped("Ren\u00e9e \u00df \u20ac \u4e2d\u6587");
+	}
+
+	@Test
+	public void appendEscaped_SurrogatePairs() throws Exception {
+		assertEscaped("\ud83d\ude00");
+		assertEscaped("smile \ud83d\ude00 and \ud834\udd1e clef");
+	}
+
+	@Test
+	public void appendEscaped_UnpairedSurrogates() throws Exception {
+		// replaced by question mark, as standard encoder does
+		assertEscaped("\ud83d");
+		assertEscaped("a\ude00b");
+		assertEscaped("\ud83da\ude00");
+	}
+
+	@Test
+	public void appendEscaped_Char() throws Exception {
+		for (char c : new char[] { 'a', '"', '\u00e9', '\u20ac', '\ud83d' }) {
+			invoke("clear");
+			invoke("appendEscaped", char.class, c);
+			String expected = c == '"' ? "\"\"" : String.valueOf(c);
+			assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), bytes());
+		}
+	}
+
+	@Test
+	public void append_Long() throws Exception {
+		long[] values = { 0, 1, -1, 9, 10, -10, 99, 100, 123456789, -123456789, Integer.MAX_VALUE, Integer.MIN_VALUE, -Integer.MAX_VALUE, 999999999999999999L, 1000000000000000000L, Long.MAX_VALUE, -Long.MAX_VALUE, Long.MIN_VALUE };
+		for (long value : values) {
+			invoke("clear");
+			invoke("append", long.class, value);
+			assertEquals(Long.toString(value), string());
+		}
+	}
+
+	@Test
+	public void append_Sequence() throws Exception {
+		invoke("append", long.class, -54L);
+		invoke("appendEscaped", String.class, ",\"\u20ac\"");
+		invoke("append", long.class, Long.MIN_VALUE);
+		assertEquals("-54,\"\"\u20ac\"\"" + Long.MIN_VALUE, string());
+	}
+
+	@Test
+	public void truncate() throws Exception {
+		invoke("appendEscaped", String.class, "John");
+		int size = (Integer) invoke("size");
+		invoke("appendEscaped", String.class, "partial row");
+		invoke("truncate", int.class, size);
+		invoke("append", long.class, 54L);
+		assertEquals("John54", string());
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// UTILITY METHODS
+
+	private void assertEscaped(String value) throws Exception {
+		invoke("clear");
+		invoke("appendEscaped", String.class, value);
+		assertArrayEquals(value.getBytes(StandardCharsets.UTF_8), bytes());
+	}
+
+	private byte[] bytes() throws Exception {
+		return (byte[]) invoke("toByteArray");
+	}
+
+	private String string() throws Exception {
+		return new String(bytes(), StandardCharsets.UTF_8);
+	}
+
+	private Object invoke(String name) throws Exception {
+		Method method = buffer.getClass().getDeclaredMethod(name);
+		method.setAccessible(true);
+		return method.invoke(buffer);
+	}
+
+	private Object invoke(String name, Class<?> type, Object argument) throws Exception {
+		Method method = buffer.getClass().getDeclaredMethod(name, type);
+		method.setAccessible(true);
+		return method.invoke(buffer, argument);
+	}
+}
@@ -0,0 +1,149 @@
+package com.jslib.tiny.plugin.csv.unit.fixture;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * HTTP request mock with given body and headers. Every {@link #proxy()} call creates a new request replaying the same body,
+ * so that a mock can be reused by concurrent clients. Methods not used by CSV plugin and multipart parser return default
+ * values.
+ * <p>
+ * This fixture is also used by benchmark and load test modules, via plugin tests JAR.
+ */
+public class MockHttpRequest {
+	/** Boundary for multipart bodies created by {@link #multipartBody(Map)}. */
+	public static final String BOUNDARY = "----csv-mock-boundary";
+
+	/**
+	 * Create <code>multipart/form-data</code> body with a single file part, named <code>file</code>, carrying given CSV
+	 * content.
+	 * 
+	 * @param csv CSV content.
+	 * @return multipart body.
+	 */
+	public static byte[] multipartBody(byte[] csv) {
+		return multipartBody(Collections.singletonMap("file", csv));
+	}
+
+	/**
+	 * Create <code>multipart/form-data</code> body with a file part for every map entry, in map iteration order. Map key is
+	 * part field name and file name is field name with <code>.csv</code> extension.
+	 * 
+	 * @param files CSV content mapped by field name.
+	 * @return multipart body.
+	 */
+	public static byte[] multipartBody(Map<String, byte[]> files) {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		for (Map.Entry<String, byte[]> file : files.entrySet()) {
+			String partHeader = "--" + BOUNDARY + "\r\n" + //
+					"Content-Disposition: form-data; name=\"" + file.getKey() + "\"; filename=\"" + file.getKey() + ".csv\"\r\n" + //
+					"Content-Type: text/csv\r\n\r\n";
+			body.writeBytes(partHeader.getBytes(StandardCharsets.US_ASCII));
+			body.writeBytes(file.getValue());
+			body.writeBytes("\r\n".getBytes(StandardCharsets.US_ASCII));
+		}
+		body.writeBytes(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+		return body.toByteArray();
+	}
+
+	/**
+	 * Create POST request mock replaying multipart body created by {@link #multipartBody(Map)}.
+	 * 
+	 * @param body multipart body.
+	 * @return request mock.
+	 */
+	public static MockHttpRequest multipart(byte[] body) {
+		return new MockHttpRequest(body).header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY);
+	}
+
+	private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	private final byte[] body;
+
+	public MockHttpRequest(byte[] body) {
+		this.body = body;
+	}
+
+	public MockHttpRequest header(String name, String value) {
+		headers.put(name, value);
+		return this;
+	}
+
+	public HttpServletRequest proxy() {
+		ServletInputStream stream = new MockInputStream(new ByteArrayInputStream(body));
+		return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "getHeader":
+				return headers.get((String) args[0]);
+			case "getHeaders":
+				String header = headers.get((String) args[0]);
+				return Collections.enumeration(header != null ? Collections.singletonList(header) : Collections.emptyList());
+			case "getHeaderNames":
+				return Collections.enumeration(headers.keySet());
+			case "getContentType":
+				return headers.get("Content-Type");
+			case "getContentLength":
+				return body.length;
+			case "getContentLengthLong":
+				return (long) body.length;
+			case "getMethod":
+				return "POST";
+			case "getRequestURI":
+				return "/";
+			case "getInputStream":
+				return stream;
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "equals":
+				return proxy == args[0];
+			case "toString":
+				return "MockHttpRequest";
+			}
+			Class<?> type = method.getReturnType();
+			return type == boolean.class ? false : type == int.class ? 0 : type == long.class ? 0L : null;
+		});
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private static class MockInputStream extends ServletInputStream {
+		private final ByteArrayInputStream body;
+
+		public MockInputStream(ByteArrayInputStream body) {
+			this.body = body;
+		}
+
+		@Override
+		public int read() {
+			return body.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			return body.read(b, off, len);
+		}
+
+		@Override
+		public boolean isFinished() {
+			return body.available() == 0;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setReadListener(ReadListener readListener) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.jslib.tiny.plugin.csv.unit.fixture;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * HTTP response mock collecting status, headers and body. Methods not used by CSV plugin return default values.
+ */
+public class MockHttpResponse {
+	private final Map<String, String> headers = new HashMap<>();
+	private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+	private final ServletOutputStream stream = new MockOutputStream(body);
+	private int status = HttpServletResponse.SC_OK;
+	private String contentType;
+
+	public HttpServletResponse proxy() {
+		return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HttpServletResponse.class }, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "setContentType":
+				contentType = (String) args[0];
+				return null;
+			case "setHeader":
+			case "addHeader":
+				headers.put((String) args[0], (String) args[1]);
+				return null;
+			case "setContentLengthLong":
+				headers.put("Content-Length", Long.toString((Long) args[0]));
+				return null;
+			case "setStatus":
+				status = (Integer) args[0];
+				return null;
+			case "getStatus":
+				return status;
+			case "getOutputStream":
+				return stream;
+			case "isCommitted":
+				return body.size() > 0;
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "equals":
+				return proxy == args[0];
+			case "toString":
+				return "MockHttpResponse";
+			}
+			Class<?> type = method.getReturnType();
+			return type == boolean.class ? false : type == int.class ? 0 : type == long.class ? 0L : null;
+		});
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public String getHeader(String name) {
+		return headers.get(name);
+	}
+
+	public byte[] getBytes() {
+		return body.toByteArray();
+	}
+
+	public String getBody() {
+		return new String(body.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private static class MockOutputStream extends ServletOutputStream {
+		private final ByteArrayOutputStream body;
+
+		public MockOutputStream(ByteArrayOutputStream body) {
+			this.body = body;
+		}
+
+		@Override
+		public void write(int b) {
+			body.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			body.write(b, off, len);
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.jslib.tiny.plugin.csv.unit.fixture;
+
+public class Product {
+	private final String name;
+	private final int price;
+
+	public Product() {
+		this.name = null;
+		this.price = 0;
+	}
+
+	public Product(String name, int price) {
+		this.name = name;
+		this.price = price;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getPrice() {
+		return price;
+	}
+}